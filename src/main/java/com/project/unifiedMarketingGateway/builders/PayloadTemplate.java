@@ -0,0 +1,99 @@
+package com.project.unifiedMarketingGateway.builders;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * JSON payload serialized once per (channel, media type, request) with a hole for the recipient.
+ * <p>
+ * The payload is built with a unique placeholder recipient and serialized by Jackson once; the
+ * bytes before and after the placeholder are kept. Each send then only JSON-escapes the
+ * recipient and writes {@code prefix + "recipient" + suffix} into a single buffer taken from
+ * the connection's buffer factory, instead of building and serializing a new map.
+ */
+public final class PayloadTemplate {
+
+    private static final byte QUOTE = '"';
+
+    private final byte[] prefix;
+    private final byte[] suffix;
+
+    private PayloadTemplate(byte[] prefix, byte[] suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @param payloadForRecipient the builder used for regular (per-recipient) payloads; it must
+     *                            put the recipient into the payload exactly once, as a string
+     */
+    public static PayloadTemplate compile(ObjectMapper objectMapper, Function<String, Map<String, Object>> payloadForRecipient) {
+        String placeholder = "umg-recipient-" + UUID.randomUUID();
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(payloadForRecipient.apply(placeholder));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Payload cannot be serialized: " + e.getOriginalMessage(), e);
+        }
+
+        byte[] hole = ("\"" + placeholder + "\"").getBytes(StandardCharsets.UTF_8);
+        int at = indexOf(json, hole, 0);
+        if (at < 0 || indexOf(json, hole, at + 1) >= 0) {
+            throw new IllegalStateException("Payload must contain the recipient exactly once");
+        }
+
+        byte[] prefix = new byte[at];
+        System.arraycopy(json, 0, prefix, 0, at);
+        byte[] suffix = new byte[json.length - at - hole.length];
+        System.arraycopy(json, at + hole.length, suffix, 0, suffix.length);
+        return new PayloadTemplate(prefix, suffix);
+    }
+
+    /** Request body for one recipient, written straight into the outgoing request's buffer. */
+    public BodyInserter<PayloadTemplate, ClientHttpRequest> bodyFor(String recipient) {
+        return new BodyInserter<>() {
+            @Override
+            public Mono<Void> insert(ClientHttpRequest request, Context context) {
+                byte[] escaped = JsonStringEncoder.getInstance().quoteAsUTF8(recipient);
+                int length = prefix.length + escaped.length + suffix.length + 2;
+
+                DataBuffer buffer = request.bufferFactory().allocateBuffer(length);
+                buffer.write(prefix).write(QUOTE).write(escaped).write(QUOTE).write(suffix);
+
+                request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                request.getHeaders().setContentLength(length);
+                return request.writeWith(Mono.just(buffer));
+            }
+        };
+    }
+
+    /** The JSON for one recipient as a String; meant for logging and tests. */
+    public String render(String recipient) {
+        String escaped = new String(JsonStringEncoder.getInstance().quoteAsString(recipient));
+        return new String(prefix, StandardCharsets.UTF_8) + "\"" + escaped + "\"" + new String(suffix, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle, int from) {
+        outer:
+        for (int i = from; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -1,6 +1,8 @@
 package com.project.unifiedMarketingGateway.builders;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.unifiedMarketingGateway.enums.MediaType;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -13,6 +15,9 @@ import static com.project.unifiedMarketingGateway.enums.MediaType.TEXT;
 @Service
 public class TelegramPayloadBuilder {
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     public Map<String, Object> buildTextPayload(String chatId, String textMessage)
     {
         return buildPayloadObject(chatId, String.valueOf(TEXT).toLowerCase(), textMessage, null);
@@ -28,6 +33,21 @@ public class TelegramPayloadBuilder {
         return buildPayloadObject(chatId, VIDEO, imageUrl, caption);
     }
 
+    public PayloadTemplate buildTextTemplate(String textMessage)
+    {
+        return PayloadTemplate.compile(objectMapper, chatId -> buildTextPayload(chatId, textMessage));
+    }
+
+    public PayloadTemplate buildImageTemplate(String imageUrl, String caption)
+    {
+        return PayloadTemplate.compile(objectMapper, chatId -> buildImagePayload(chatId, imageUrl, caption));
+    }
+
+    public PayloadTemplate buildVideoTemplate(String videoUrl, String caption)
+    {
+        return PayloadTemplate.compile(objectMapper, chatId -> buildVideoPayload(chatId, videoUrl, caption));
+    }
+
     private Map<String, Object> buildPayloadObject(String chatId, String mediaType, String mediaValue, String caption)
     {
         Map<String, Object> payload = new HashMap<>();
@@ -1,5 +1,7 @@
 package com.project.unifiedMarketingGateway.builders;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
@@ -12,6 +14,9 @@ public class WhatsappPayloadBuilder {
     private final static String WHATSAPP = "whatsapp";
     private final static String INDIVIDUAL = "individual";
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     public Map<String, Object> buildTextPayload(String recipient, String textMessage) {
         return Map.of(
                 "messaging_product", WHATSAPP,
@@ -49,4 +54,52 @@ public class WhatsappPayloadBuilder {
                 )
         );
     }
+
+    /** Image message referencing media uploaded to the phone number ({@code image.id}). */
+    public Map<String, Object> buildImageIdPayload(String recipient, String mediaId, String caption) {
+        return Map.of(
+                "messaging_product", WHATSAPP,
+                "recipient_type", INDIVIDUAL,
+                "to", recipient,
+                "type", String.valueOf(IMAGE).toLowerCase(),
+                "image", Map.of(
+                        "id", mediaId,
+                        "caption", caption
+                )
+        );
+    }
+
+    /** Video message referencing media uploaded to the phone number ({@code video.id}). */
+    public Map<String, Object> buildVideoIdPayload(String recipient, String mediaId, String caption) {
+        return Map.of(
+                "messaging_product", WHATSAPP,
+                "recipient_type", INDIVIDUAL,
+                "to", recipient,
+                "type", String.valueOf(VIDEO).toLowerCase(),
+                "video", Map.of(
+                        "id", mediaId,
+                        "caption", caption
+                )
+        );
+    }
+
+    public PayloadTemplate buildTextTemplate(String textMessage) {
+        return PayloadTemplate.compile(objectMapper, recipient -> buildTextPayload(recipient, textMessage));
+    }
+
+    public PayloadTemplate buildImageTemplate(String imageUrl, String caption) {
+        return PayloadTemplate.compile(objectMapper, recipient -> buildImagePayload(recipient, imageUrl, caption));
+    }
+
+    public PayloadTemplate buildVideoTemplate(String videoUrl, String caption) {
+        return PayloadTemplate.compile(objectMapper, recipient -> buildVideoPayload(recipient, videoUrl, caption));
+    }
+
+    public PayloadTemplate buildImageIdTemplate(String mediaId, String caption) {
+        return PayloadTemplate.compile(objectMapper, recipient -> buildImageIdPayload(recipient, mediaId, caption));
+    }
+
+    public PayloadTemplate buildVideoIdTemplate(String mediaId, String caption) {
+        return PayloadTemplate.compile(objectMapper, recipient -> buildVideoIdPayload(recipient, mediaId, caption));
+    }
 }
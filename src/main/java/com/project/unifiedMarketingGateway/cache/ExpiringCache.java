@@ -0,0 +1,110 @@
+package com.project.unifiedMarketingGateway.cache;
+
+import lombok.Getter;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Small in-memory cache with a time-to-live per entry and an upper bound on the number of
+ * entries. Once the bound is reached, each put evicts the least recently used entry, in
+ * constant time.
+ * <p>
+ * {@link #getOrLoad(Object, Supplier)} is single-flight: concurrent misses for the same key
+ * share one load, so a fan-out that starts with an empty cache triggers the expensive call
+ * once. Failed or empty loads are not cached.
+ */
+public class ExpiringCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAtNanos) {}
+
+    @Getter
+    private final String name;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier nanoClock;
+
+    /** Access-ordered, so the eldest entry is the least recently used one. Guarded by itself. */
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    public ExpiringCache(String name, Duration ttl, int maxSize) {
+        this(name, ttl, maxSize, System::nanoTime);
+    }
+
+    ExpiringCache(String name, Duration ttl, int maxSize, LongSupplier nanoClock) {
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = Math.max(1, maxSize);
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > ExpiringCache.this.maxSize;
+            }
+        };
+    }
+
+    public V getIfPresent(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtNanos() - nanoClock.getAsLong() <= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value();
+        }
+    }
+
+    public void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, nanoClock.getAsLong() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the cached value, or runs {@code loader} once for all concurrent callers of the
+     * same key and caches its value.
+     */
+    public Mono<V> getOrLoad(K key, Supplier<Mono<V>> loader) {
+        return Mono.defer(() -> {
+            V cached = getIfPresent(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            AtomicReference<Mono<V>> self = new AtomicReference<>();
+            Mono<V> load = inFlight.computeIfAbsent(key, k -> {
+                Mono<V> created = Mono.defer(loader)
+                        .doOnNext(value -> put(k, value))
+                        // before waiters see the outcome, so one that loads again starts a new load
+                        .doOnTerminate(() -> inFlight.remove(k, self.get()))
+                        .cache();
+                self.set(created);
+                return created;
+            });
+            return load;
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.project.unifiedMarketingGateway.configs;
+
+import com.project.unifiedMarketingGateway.cache.ExpiringCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public ExpiringCache<String, String> telegramFileIdCache(
+            @Value("${telegram.fileIdCache.ttlMinutes:1440}") long ttlMinutes,
+            @Value("${telegram.fileIdCache.maxSize:10000}") int maxSize) {
+        return new ExpiringCache<>("telegram-file-id", Duration.ofMinutes(ttlMinutes), maxSize);
+    }
+
+    /** Meta keeps uploaded media for 30 days; the default TTL retires ids well before that. */
+    @Bean
+    public ExpiringCache<String, String> whatsappMediaIdCache(
+            @Value("${whatsapp.mediaIdCache.ttlHours:600}") long ttlHours,
+            @Value("${whatsapp.mediaIdCache.maxSize:1000}") int maxSize) {
+        return new ExpiringCache<>("whatsapp-media-id", Duration.ofHours(ttlHours), maxSize);
+    }
+
+    @Bean
+    public ExpiringCache<String, String> telegramChatBindingCache(
+            @Value("${telegram.chatBindingCache.ttlMinutes:60}") long ttlMinutes,
+            @Value("${telegram.chatBindingCache.maxSize:100000}") int maxSize) {
+        return new ExpiringCache<>("telegram-chat-binding", Duration.ofMinutes(ttlMinutes), maxSize);
+    }
+
+    /** Resolved chain per request id, {@link FallbackChain#NONE} for requests without one. */
+    @Bean
+    public ExpiringCache<String, FallbackChain> fallbackPlanCache(
+            @Value("${fallback.planCache.ttlMinutes:1440}") long ttlMinutes,
+            @Value("${fallback.planCache.maxSize:10000}") int maxSize) {
+        return new ExpiringCache<>("fallback-plan", Duration.ofMinutes(ttlMinutes), maxSize);
+    }
+}
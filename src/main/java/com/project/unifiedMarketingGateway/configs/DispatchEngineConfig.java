@@ -0,0 +1,90 @@
+package com.project.unifiedMarketingGateway.configs;
+
+import com.project.unifiedMarketingGateway.dispatch.AdaptiveConcurrencyLimiter;
+import com.project.unifiedMarketingGateway.dispatch.DispatchEngine;
+import com.project.unifiedMarketingGateway.enums.Priority;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.retryHandler.SmsReactiveRetryHandler;
+import com.project.unifiedMarketingGateway.retryHandler.TelegramReactiveRetryHandler;
+import com.project.unifiedMarketingGateway.retryHandler.WhatsappReactiveRetryHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+import static com.project.unifiedMarketingGateway.enums.ClientType.SMS;
+import static com.project.unifiedMarketingGateway.enums.ClientType.TELEGRAM;
+import static com.project.unifiedMarketingGateway.enums.ClientType.WHATSAPP;
+
+/**
+ * One dispatch engine per channel. {@code <channel>.maxConcurrency} is the starting point of
+ * the adaptive limit, which then moves between {@code <channel>.concurrency.min} and
+ * {@code <channel>.concurrency.max}. Priority lane weights are shared by all channels.
+ */
+@Configuration
+public class DispatchEngineConfig {
+
+    @Value("${dispatch.priorityWeights.high:8}")
+    private int highWeight;
+
+    @Value("${dispatch.priorityWeights.normal:3}")
+    private int normalWeight;
+
+    @Value("${dispatch.priorityWeights.bulk:1}")
+    private int bulkWeight;
+
+    @Bean
+    public DispatchEngine telegramDispatchEngine(
+            @Value("${telegram.maxConcurrency:5}") int maxConcurrency,
+            @Value("${telegram.concurrency.min:1}") int minLimit,
+            @Value("${telegram.concurrency.max:64}") int maxLimit,
+            @Value("${telegram.concurrency.latencyTolerance:2.0}") double latencyTolerance,
+            @Value("${telegram.concurrency.backoffRatio:0.7}") double backoffRatio,
+            @Value("${telegram.dispatch.queueCapacity:10000}") int queueCapacity,
+            TelegramReactiveRetryHandler retryHandler,
+            MetricsService metricsService) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(TELEGRAM.getValue(),
+                maxConcurrency, minLimit, maxLimit, latencyTolerance, backoffRatio, retryHandler::isOverload);
+        return register(new DispatchEngine(TELEGRAM.getValue(), limiter, queueCapacity, laneWeights()), metricsService);
+    }
+
+    @Bean
+    public DispatchEngine whatsappDispatchEngine(
+            @Value("${whatsapp.maxConcurrency:5}") int maxConcurrency,
+            @Value("${whatsapp.concurrency.min:1}") int minLimit,
+            @Value("${whatsapp.concurrency.max:64}") int maxLimit,
+            @Value("${whatsapp.concurrency.latencyTolerance:2.0}") double latencyTolerance,
+            @Value("${whatsapp.concurrency.backoffRatio:0.7}") double backoffRatio,
+            @Value("${whatsapp.dispatch.queueCapacity:10000}") int queueCapacity,
+            WhatsappReactiveRetryHandler retryHandler,
+            MetricsService metricsService) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(WHATSAPP.getValue(),
+                maxConcurrency, minLimit, maxLimit, latencyTolerance, backoffRatio, retryHandler::isOverload);
+        return register(new DispatchEngine(WHATSAPP.getValue(), limiter, queueCapacity, laneWeights()), metricsService);
+    }
+
+    @Bean
+    public DispatchEngine smsDispatchEngine(
+            @Value("${sms.maxConcurrency:5}") int maxConcurrency,
+            @Value("${sms.concurrency.min:1}") int minLimit,
+            @Value("${sms.concurrency.max:32}") int maxLimit,
+            @Value("${sms.concurrency.latencyTolerance:2.0}") double latencyTolerance,
+            @Value("${sms.concurrency.backoffRatio:0.7}") double backoffRatio,
+            @Value("${sms.dispatch.queueCapacity:10000}") int queueCapacity,
+            SmsReactiveRetryHandler retryHandler,
+            MetricsService metricsService) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(SMS.getValue(),
+                maxConcurrency, minLimit, maxLimit, latencyTolerance, backoffRatio, retryHandler::isOverload);
+        return register(new DispatchEngine(SMS.getValue(), limiter, queueCapacity, laneWeights()), metricsService);
+    }
+
+    private Map<Priority, Integer> laneWeights() {
+        return Map.of(Priority.HIGH, highWeight, Priority.NORMAL, normalWeight, Priority.BULK, bulkWeight);
+    }
+
+    private DispatchEngine register(DispatchEngine engine, MetricsService metricsService) {
+        metricsService.registerDispatchEngine(engine);
+        return engine;
+    }
+}
@@ -0,0 +1,83 @@
+package com.project.unifiedMarketingGateway.configs;
+
+import com.project.unifiedMarketingGateway.enums.ClientType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The ordered channels a send moves through, written {@code Whatsapp:10,Telegram:5,SMS}: a hop
+ * that has not delivered within its timeout (minutes) or has failed falls through to the next
+ * one. The last hop needs no timeout.
+ */
+public record FallbackChain(List<Hop> hops) {
+
+    /** One channel of a chain; {@code timeout} is zero when the hop has none. */
+    public record Hop(String channel, Duration timeout) {}
+
+    /** No fallback at all. */
+    public static final FallbackChain NONE = new FallbackChain(List.of());
+
+    public static FallbackChain parse(String spec) {
+        List<Hop> hops = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String hop = part.trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+            int colon = hop.indexOf(':');
+            String channel = channelOf(colon < 0 ? hop : hop.substring(0, colon).trim());
+            Duration timeout = colon < 0 ? Duration.ZERO
+                    : Duration.ofMinutes(Long.parseLong(hop.substring(colon + 1).trim()));
+            if (hops.stream().anyMatch(h -> h.channel().equals(channel))) {
+                throw new IllegalArgumentException("Fallback chain '" + spec + "' visits " + channel + " twice");
+            }
+            hops.add(new Hop(channel, timeout));
+        }
+        if (hops.isEmpty()) {
+            throw new IllegalArgumentException("Empty fallback chain");
+        }
+        return new FallbackChain(List.copyOf(hops));
+    }
+
+    /** The hops after {@code channel}, empty when the chain ends there or does not contain it. */
+    public List<Hop> after(String channel) {
+        for (int i = 0; i < hops.size(); i++) {
+            if (hops.get(i).channel().equals(channel)) {
+                return hops.subList(i + 1, hops.size());
+            }
+        }
+        return List.of();
+    }
+
+    /** The timeout of the hop on {@code channel}, if it has one and a hop follows it. */
+    public Optional<Duration> timeoutOf(String channel) {
+        for (int i = 0; i < hops.size() - 1; i++) {
+            Hop hop = hops.get(i);
+            if (hop.channel().equals(channel) && !hop.timeout().isZero()) {
+                return Optional.of(hop.timeout());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Inverse of {@link #parse(String)}. */
+    public String spec() {
+        List<String> parts = new ArrayList<>(hops.size());
+        for (Hop hop : hops) {
+            parts.add(hop.timeout().isZero() ? hop.channel() : hop.channel() + ":" + hop.timeout().toMinutes());
+        }
+        return String.join(",", parts);
+    }
+
+    private static String channelOf(String name) {
+        for (ClientType type : ClientType.values()) {
+            if (type.getValue().equalsIgnoreCase(name) || type.name().equalsIgnoreCase(name)) {
+                return type.getValue();
+            }
+        }
+        throw new IllegalArgumentException("Unknown fallback channel " + name);
+    }
+}
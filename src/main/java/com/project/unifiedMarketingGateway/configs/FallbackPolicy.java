@@ -1,34 +1,146 @@
 package com.project.unifiedMarketingGateway.configs;
 
+import com.project.unifiedMarketingGateway.cache.ExpiringCache;
 import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.entity.FallbackPlan;
 import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.repository.FallbackPlanRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
-import static com.project.unifiedMarketingGateway.enums.ClientType.SMS;
-import static com.project.unifiedMarketingGateway.enums.ClientType.WHATSAPP;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Where a send goes when its channel fails it. A request names one of the chains under
+ * {@code fallback.chains} (e.g. one per tenant) or gets {@code fallback.defaultChain}; the
+ * chain is resolved once when the request is accepted ({@link #planFor}) and stored, so the
+ * decisions for its sends are lookups of that plan rather than a re-evaluation per row. A
+ * fallback send keeps the request id, so once it fails in turn the same plan moves it on to
+ * the hop after its own channel.
+ */
 @Component
 public class FallbackPolicy {
 
-    public boolean shouldFallback(DeliveryStateEntity state) {
+    @Autowired
+    FallbackPlanRepository planRepository;
 
-        if (!WHATSAPP.getValue().equals(state.getChannel())) {
-            return false;
+    @Autowired
+    @Qualifier("fallbackPlanCache")
+    ExpiringCache<String, FallbackChain> planCache;
+
+    @Autowired
+    Environment environment;
+
+    @Value("${fallback.defaultChain:Whatsapp:30,SMS}")
+    String defaultChainSpec;
+
+    @Value("${whatsapp.fallbackRouting.isEnabled:false}")
+    boolean isFallBackRoutingEnabled;
+
+    private FallbackChain defaultChain;
+    private Map<String, FallbackChain> chains = Map.of();
+
+    @PostConstruct
+    void loadChains() {
+        defaultChain = FallbackChain.parse(defaultChainSpec);
+        Map<String, FallbackChain> named = new LinkedHashMap<>();
+        Binder.get(environment)
+                .bind("fallback.chains", Bindable.mapOf(String.class, String.class))
+                .orElse(Map.of())
+                .forEach((name, spec) -> named.put(name, FallbackChain.parse(spec)));
+        chains = Map.copyOf(named);
+    }
+
+    /** True for a configured chain name, and for no name (the default chain). */
+    public boolean hasChain(String name) {
+        return name == null || chains.containsKey(name);
+    }
+
+    /** The default chain followed by the named ones. */
+    public List<FallbackChain> allChains() {
+        List<FallbackChain> all = new ArrayList<>(chains.size() + 1);
+        all.add(defaultChain);
+        all.addAll(chains.values());
+        return all;
+    }
+
+    /**
+     * Resolves the chain of a new request on {@code channel} and stores it. A chain that has no
+     * hop after {@code channel} leaves the request without a plan, as does disabled routing.
+     */
+    public void planFor(String requestId, String channel, String chainName) {
+        if (!isFallBackRoutingEnabled) {
+            return;
+        }
+        FallbackChain chain = chainName == null ? defaultChain : chains.get(chainName);
+        if (chain == null) {
+            throw new IllegalArgumentException("Unknown fallback chain " + chainName);
+        }
+        if (chain.after(channel).isEmpty()) {
+            chain = FallbackChain.NONE;
+        } else {
+            planRepository.save(FallbackPlan.builder()
+                    .requestId(requestId)
+                    .chain(chain.spec())
+                    .createdAtEpochMillis(System.currentTimeMillis())
+                    .build());
         }
+        planCache.put(requestId, chain);
+    }
+
+    /** The stored chain of a request, {@link FallbackChain#NONE} if it has none. */
+    public FallbackChain planOf(String requestId) {
+        if (!isFallBackRoutingEnabled) {
+            return FallbackChain.NONE;
+        }
+        FallbackChain chain = planCache.getIfPresent(requestId);
+        if (chain == null) {
+            chain = planRepository.findById(requestId)
+                    .map(plan -> FallbackChain.parse(plan.getChain()))
+                    .orElse(FallbackChain.NONE);
+            planCache.put(requestId, chain);
+        }
+        return chain;
+    }
+
+    /** The hops a send of the request on {@code channel} can still fall back to, in order. */
+    public List<FallbackChain.Hop> nextHops(String requestId, String channel) {
+        return planOf(requestId).after(channel);
+    }
+
+    /**
+     * How long a send of the request on {@code channel} gets to be delivered before it falls
+     * through to the next hop; 0 when its hop has no timeout or is the last one.
+     */
+    public long hopTimeoutMillis(String requestId, String channel) {
+        return planOf(requestId).timeoutOf(channel).map(Duration::toMillis).orElse(0L);
+    }
+
+    public boolean shouldFallback(DeliveryStateEntity state) {
 
         if (Boolean.TRUE.equals(state.getFallbackTriggered())) {
             return false;
         }
 
-        return state.getStatus() == DeliveryStatus.FAILED
-                || state.getStatus() == DeliveryStatus.SENT;
+        return shouldFallback(state.getRequestId(), state.getChannel(), state.getStatus());
     }
 
-    public String fallbackChannel(String channel) {
-        if (!WHATSAPP.getValue().equals(channel)) {
-            return SMS.getValue();
+    public boolean shouldFallback(String requestId, String channel, DeliveryStatus status) {
+
+        if (status != DeliveryStatus.FAILED && status != DeliveryStatus.SENT) {
+            return false;
         }
-        throw new IllegalArgumentException("No fallback for channel " + channel);
+
+        return !nextHops(requestId, channel).isEmpty();
     }
 }
-
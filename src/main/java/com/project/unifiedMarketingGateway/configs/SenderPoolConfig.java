@@ -0,0 +1,132 @@
+package com.project.unifiedMarketingGateway.configs;
+
+import com.project.unifiedMarketingGateway.connectors.TelegramHttpConnector;
+import com.project.unifiedMarketingGateway.connectors.TwilioSmsConnector;
+import com.project.unifiedMarketingGateway.connectors.WhatsappHttpConnector;
+import com.project.unifiedMarketingGateway.enums.WhatsappMessagingTier;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.rateLimiter.SendRateLimiter;
+import com.project.unifiedMarketingGateway.senderPool.PooledSender;
+import com.project.unifiedMarketingGateway.senderPool.RecipientBudget;
+import com.project.unifiedMarketingGateway.senderPool.SenderPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.project.unifiedMarketingGateway.enums.ClientType.SMS;
+import static com.project.unifiedMarketingGateway.enums.ClientType.TELEGRAM;
+import static com.project.unifiedMarketingGateway.enums.ClientType.WHATSAPP;
+
+/**
+ * Provider identities per channel. Every identity gets its own {@link SendRateLimiter} built
+ * from the channel's {@code rateLimit} settings, since providers enforce those limits per
+ * identity (bot, phone number, from-number) and not per account.
+ */
+@Configuration
+public class SenderPoolConfig {
+
+    /**
+     * {@code telegram.bot.tokens} is a comma separated list of bot tokens; a single
+     * {@code telegram.bot.token} is used when it is not set.
+     */
+    @Bean
+    public SenderPool telegramSenderPool(
+            @Value("${telegram.bot.tokens:${telegram.bot.token:PLEASE_SET_SECRETS}}") List<String> botTokens,
+            @Value("${telegram.rateLimit.global.permitsPerSecond:30}") double globalRate,
+            @Value("${telegram.rateLimit.global.burst:30}") int globalBurst,
+            @Value("${telegram.rateLimit.perRecipient.permitsPerSecond:1}") double perRecipientRate,
+            @Value("${telegram.rateLimit.perRecipient.burst:1}") int perRecipientBurst,
+            @Value("${telegram.rateLimit.resume.rampSeconds:10}") long resumeRampSeconds,
+            @Value("${telegram.rateLimit.resume.startFraction:0.1}") double resumeStartFraction,
+            MetricsService metricsService) {
+        List<PooledSender> bots = botTokens.stream()
+                .map(String::trim)
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .map(token -> {
+                    String botId = TelegramHttpConnector.botId(token);
+                    SendRateLimiter limiter = new SendRateLimiter(TELEGRAM.getValue() + "/" + botId,
+                            globalRate, globalBurst, perRecipientRate, perRecipientBurst,
+                            Duration.ofSeconds(resumeRampSeconds), resumeStartFraction);
+                    return new PooledSender(TELEGRAM.getValue(), botId, token, limiter);
+                })
+                .toList();
+        SenderPool pool = new SenderPool(TELEGRAM.getValue(), bots);
+        metricsService.registerSenderPool(pool);
+        return pool;
+    }
+
+    /**
+     * One sender per phone number of {@link WhatsappHttpConnector}. The throughput and the
+     * messaging tier of each number can be set under {@code whatsapp.phoneNumbers.<id>};
+     * numbers without their own settings use {@code whatsapp.rateLimit.global} and are
+     * treated as unlimited. Tier budgets are counted per node, so each node gets
+     * 1/{@code whatsapp.budget.nodes} of its number's tier.
+     */
+    @Bean
+    public SenderPool whatsappSenderPool(
+            WhatsappHttpConnector connector,
+            Environment environment,
+            @Value("${whatsapp.rateLimit.global.permitsPerSecond:80}") double globalRate,
+            @Value("${whatsapp.rateLimit.global.burst:80}") int globalBurst,
+            @Value("${whatsapp.rateLimit.perRecipient.permitsPerSecond:0.2}") double perRecipientRate,
+            @Value("${whatsapp.rateLimit.perRecipient.burst:3}") int perRecipientBurst,
+            @Value("${whatsapp.rateLimit.resume.rampSeconds:10}") long resumeRampSeconds,
+            @Value("${whatsapp.rateLimit.resume.startFraction:0.1}") double resumeStartFraction,
+            @Value("${whatsapp.health.unhealthyAfterFailures:5}") int unhealthyAfterFailures,
+            @Value("${whatsapp.health.cooldownSeconds:60}") long cooldownSeconds,
+            @Value("${whatsapp.budget.nodes:1}") int budgetNodes,
+            MetricsService metricsService) {
+        int nodes = Math.max(1, budgetNodes);
+        List<PooledSender> numbers = connector.getPhoneNumberIds().stream()
+                .map(phoneNumberId -> {
+                    String prefix = "whatsapp.phoneNumbers." + phoneNumberId + ".";
+                    double rate = environment.getProperty(prefix + "permitsPerSecond", Double.class, globalRate);
+                    int burst = environment.getProperty(prefix + "burst", Integer.class, globalBurst);
+                    WhatsappMessagingTier tier = environment.getProperty(prefix + "tier",
+                            WhatsappMessagingTier.class, WhatsappMessagingTier.UNLIMITED);
+                    SendRateLimiter limiter = new SendRateLimiter(WHATSAPP.getValue() + "/" + phoneNumberId,
+                            rate, burst, perRecipientRate, perRecipientBurst,
+                            Duration.ofSeconds(resumeRampSeconds), resumeStartFraction);
+                    RecipientBudget budget = tier.getDailyRecipientLimit() > 0
+                            ? new RecipientBudget(Math.max(1, tier.getDailyRecipientLimit() / nodes), Duration.ofHours(24))
+                            : null;
+                    return new PooledSender(WHATSAPP.getValue(), phoneNumberId, phoneNumberId, limiter, budget,
+                            unhealthyAfterFailures, Duration.ofSeconds(cooldownSeconds));
+                })
+                .toList();
+        SenderPool pool = new SenderPool(WHATSAPP.getValue(), numbers);
+        metricsService.registerSenderPool(pool);
+        return pool;
+    }
+
+    /**
+     * One sender per from-number of {@link TwilioSmsConnector}. Carriers pace each number
+     * separately (about 1 message/second for a long code), so {@code sms.rateLimit.global}
+     * is the pace of a single number and the pool's throughput is that times its size.
+     */
+    @Bean
+    public SenderPool smsSenderPool(
+            TwilioSmsConnector connector,
+            @Value("${sms.rateLimit.global.permitsPerSecond:1}") double perNumberRate,
+            @Value("${sms.rateLimit.global.burst:1}") int perNumberBurst,
+            @Value("${sms.rateLimit.perRecipient.permitsPerSecond:0}") double perRecipientRate,
+            @Value("${sms.rateLimit.perRecipient.burst:1}") int perRecipientBurst,
+            @Value("${sms.rateLimit.resume.rampSeconds:10}") long resumeRampSeconds,
+            @Value("${sms.rateLimit.resume.startFraction:0.1}") double resumeStartFraction,
+            MetricsService metricsService) {
+        List<PooledSender> numbers = connector.getFromNumbers().stream()
+                .map(fromNumber -> new PooledSender(SMS.getValue(), fromNumber, fromNumber,
+                        new SendRateLimiter(SMS.getValue() + "/" + fromNumber,
+                                perNumberRate, perNumberBurst, perRecipientRate, perRecipientBurst,
+                                Duration.ofSeconds(resumeRampSeconds), resumeStartFraction)))
+                .toList();
+        SenderPool pool = new SenderPool(SMS.getValue(), numbers);
+        metricsService.registerSenderPool(pool);
+        return pool;
+    }
+}
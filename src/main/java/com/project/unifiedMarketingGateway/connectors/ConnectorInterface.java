@@ -1,5 +1,6 @@
 package com.project.unifiedMarketingGateway.connectors;
 
+import com.project.unifiedMarketingGateway.builders.PayloadTemplate;
 import reactor.core.publisher.Mono;
 
 import java.util.Map;
@@ -7,4 +8,7 @@ import java.util.Map;
 public interface ConnectorInterface {
 
     public Mono<String> sendMarketingRequest(String method, Map<String, Object> payload) ;
+
+    /** Same as {@link #sendMarketingRequest} with the body rendered from a pre-serialized template. */
+    public Mono<String> sendMarketingRequest(String method, PayloadTemplate template, String recipient) ;
 }
@@ -0,0 +1,97 @@
+package com.project.unifiedMarketingGateway.connectors;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Builds the WebClient of a provider connector on its own Reactor Netty connection pool.
+ * <p>
+ * Every connector gets a dedicated, named {@link ConnectionProvider} so one slow provider
+ * cannot starve the others. Pool gauges (active / idle / pending connections, acquire time)
+ * and client timings (connect, TLS handshake, time to first byte, response time) are
+ * published to Micrometer's global registry, which Spring Boot bridges to the application
+ * {@code MeterRegistry}, tagged with the pool name.
+ * <p>
+ * Settings are read from {@code <prefix>.http.*}:
+ * <pre>
+ *   pool.maxConnections, pool.pendingAcquireMaxCount, pool.pendingAcquireTimeoutMs,
+ *   pool.maxIdleTimeSeconds, pool.maxLifeTimeSeconds, pool.evictInBackgroundSeconds,
+ *   connectTimeoutMs, responseTimeoutSeconds, keepAlive, http2
+ * </pre>
+ */
+@Slf4j
+@Component
+public class ProviderWebClientFactory {
+
+    private final Environment environment;
+
+    public ProviderWebClientFactory(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * @param prefix      configuration prefix of the channel, e.g. {@code telegram}
+     * @param baseUrl     provider base url
+     * @param uriTagValue maps a request uri to a low-cardinality metrics tag; must strip secrets
+     *                    and ids (bot tokens, account sids, ...) from the path
+     */
+    public WebClient.Builder builder(String prefix, String baseUrl, Function<String, String> uriTagValue) {
+        return builder(prefix, baseUrl, uriTagValue, UnaryOperator.identity());
+    }
+
+    /**
+     * Same as {@link #builder(String, String, Function)}, with {@code customizer} applied to the
+     * configured Reactor Netty client, e.g. to set its name resolver.
+     */
+    public WebClient.Builder builder(String prefix, String baseUrl, Function<String, String> uriTagValue,
+                                     UnaryOperator<HttpClient> customizer) {
+        ConnectionProvider provider = ConnectionProvider.builder(prefix + "-http")
+                .maxConnections(intProperty(prefix, "pool.maxConnections", 200))
+                .pendingAcquireMaxCount(intProperty(prefix, "pool.pendingAcquireMaxCount", 2000))
+                .pendingAcquireTimeout(Duration.ofMillis(longProperty(prefix, "pool.pendingAcquireTimeoutMs", 10_000)))
+                .maxIdleTime(Duration.ofSeconds(longProperty(prefix, "pool.maxIdleTimeSeconds", 30)))
+                .maxLifeTime(Duration.ofSeconds(longProperty(prefix, "pool.maxLifeTimeSeconds", 300)))
+                .evictInBackground(Duration.ofSeconds(longProperty(prefix, "pool.evictInBackgroundSeconds", 30)))
+                .metrics(true)
+                .build();
+
+        boolean keepAlive = environment.getProperty(prefix + ".http.keepAlive", Boolean.class, true);
+        boolean http2 = environment.getProperty(prefix + ".http.http2", Boolean.class, false);
+
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, intProperty(prefix, "connectTimeoutMs", 5000))
+                .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .keepAlive(keepAlive)
+                .responseTimeout(Duration.ofSeconds(longProperty(prefix, "responseTimeoutSeconds", 15)))
+                .metrics(true, uriTagValue);
+        if (http2) {
+            // negotiated through ALPN, falls back to HTTP/1.1 when the server does not offer h2
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        httpClient = customizer.apply(httpClient);
+
+        log.info("{} http client: pool={} http2={} keepAlive={}", prefix, provider.name(), http2, keepAlive);
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient));
+    }
+
+    private int intProperty(String prefix, String key, int defaultValue) {
+        return environment.getProperty(prefix + ".http." + key, Integer.class, defaultValue);
+    }
+
+    private long longProperty(String prefix, String key, long defaultValue) {
+        return environment.getProperty(prefix + ".http." + key, Long.class, defaultValue);
+    }
+}
@@ -0,0 +1,98 @@
+package com.project.unifiedMarketingGateway.connectors;
+
+import io.netty.resolver.AbstractAddressResolver;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Promise;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Name resolution for HTTP clients that fetch caller-supplied urls: a host is refused when any
+ * of its addresses is on a loopback, link-local (cloud metadata) or private network.
+ * <p>
+ * The check runs on the addresses the connection is then made to, so a host cannot pass a check
+ * with a public address and be re-resolved to a private one for the fetch (DNS rebinding).
+ * Lookups block, so they run on the bounded elastic scheduler rather than the event loop.
+ */
+class PublicAddressResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+
+    interface Lookup {
+        InetAddress[] lookup(String host) throws UnknownHostException;
+    }
+
+    private final Lookup lookup;
+
+    PublicAddressResolverGroup(Lookup lookup) {
+        this.lookup = lookup;
+    }
+
+    static boolean isPrivate(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return address.isAnyLocalAddress()
+                || address.isLoopbackAddress()
+                || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress()
+                || address.isMulticastAddress()
+                // IPv6 unique local fc00::/7
+                || (address instanceof Inet6Address && (bytes[0] & 0xfe) == 0xfc)
+                // IPv4 carrier-grade NAT 100.64.0.0/10
+                || (address instanceof Inet4Address && (bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64);
+    }
+
+    @Override
+    protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+        return new AbstractAddressResolver<>(executor) {
+            @Override
+            protected boolean doIsResolved(InetSocketAddress address) {
+                // ip literals may arrive resolved, they are checked all the same
+                return false;
+            }
+
+            @Override
+            protected void doResolve(InetSocketAddress unresolved, Promise<InetSocketAddress> promise) {
+                Schedulers.boundedElastic().schedule(() -> {
+                    try {
+                        promise.trySuccess(resolvePublic(unresolved).get(0));
+                    } catch (Exception e) {
+                        promise.tryFailure(e);
+                    }
+                });
+            }
+
+            @Override
+            protected void doResolveAll(InetSocketAddress unresolved, Promise<List<InetSocketAddress>> promise) {
+                Schedulers.boundedElastic().schedule(() -> {
+                    try {
+                        promise.trySuccess(resolvePublic(unresolved));
+                    } catch (Exception e) {
+                        promise.tryFailure(e);
+                    }
+                });
+            }
+        };
+    }
+
+    private List<InetSocketAddress> resolvePublic(InetSocketAddress unresolved) throws UnknownHostException {
+        String host = unresolved.getHostString();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (InetAddress address : lookup.lookup(host)) {
+            if (isPrivate(address)) {
+                throw new IllegalArgumentException("Host resolves to a private address: " + host);
+            }
+            addresses.add(new InetSocketAddress(address, unresolved.getPort()));
+        }
+        if (addresses.isEmpty()) {
+            throw new UnknownHostException(host);
+        }
+        return addresses;
+    }
+}
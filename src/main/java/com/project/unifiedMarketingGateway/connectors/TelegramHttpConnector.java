@@ -1,5 +1,6 @@
 package com.project.unifiedMarketingGateway.connectors;
 
+import com.project.unifiedMarketingGateway.builders.PayloadTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
@@ -18,9 +19,11 @@ public class TelegramHttpConnector implements ConnectorInterface{
 
     private final WebClient webClient;
 
-    public TelegramHttpConnector(@Value("${telegram.baseUrl}") String baseUrl) {
-        this.webClient = WebClient.builder()
-                .baseUrl(baseUrl)
+    public TelegramHttpConnector(@Value("${telegram.baseUrl}") String baseUrl,
+            ProviderWebClientFactory webClientFactory) {
+        // the bot token is part of the path, keep it out of the metric tags
+        this.webClient = webClientFactory.builder("telegram", baseUrl,
+                        uri -> uri.replaceFirst("/bot[^/]+/", "/bot{token}/"))
                 .build();
     }
 
@@ -34,7 +37,35 @@ public class TelegramHttpConnector implements ConnectorInterface{
                 .bodyToMono(String.class);
     }
 
+    @Override
+    public Mono<String> sendMarketingRequest(String method, PayloadTemplate template, String recipient) {
+        return sendMarketingRequest(botToken, method, template, recipient);
+    }
+
+    /** Sends as the bot owning {@code token}, for callers picking a bot from the pool. */
+    public Mono<String> sendMarketingRequest(String token, String method, PayloadTemplate template, String recipient) {
+        return webClient.post()
+                .uri(apiPath(token, method))
+                .body(template.bodyFor(recipient))
+                .retrieve()
+                .bodyToMono(String.class);
+    }
+
+    public String getBotId() {
+        return botId(botToken);
+    }
+
+    /** Numeric bot id, i.e. the part of the token before the colon. */
+    public static String botId(String token) {
+        int colon = token.indexOf(':');
+        return colon > 0 ? token.substring(0, colon) : token;
+    }
+
     private String apiPath(String method) {
-        return "/bot" + botToken + "/" + method;
+        return apiPath(botToken, method);
+    }
+
+    private String apiPath(String token, String method) {
+        return "/bot" + token + "/" + method;
     }
 }
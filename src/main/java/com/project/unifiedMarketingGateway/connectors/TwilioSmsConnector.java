@@ -1,32 +1,95 @@
 package com.project.unifiedMarketingGateway.connectors;
 
-import com.twilio.Twilio;
-import com.twilio.rest.api.v2010.account.Message;
-import com.twilio.type.PhoneNumber;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.util.List;
+
+/**
+ * Non-blocking client for the Twilio Messages REST API
+ * ({@code POST /2010-04-01/Accounts/{AccountSid}/Messages.json}).
+ * <p>
+ * Runs on Reactor Netty with its own connection pool ({@code sms.http.*}, see
+ * {@link ProviderWebClientFactory}), so an SMS in flight holds a pooled connection instead of
+ * a platform thread. Errors surface as WebClient exceptions, like the
+ * Telegram and WhatsApp connectors.
+ */
 @Slf4j
 @Service
 public class TwilioSmsConnector {
 
-    private final String fromNumber;
+    private static final String MESSAGES_PATH = "/2010-04-01/Accounts/{accountSid}/Messages.json";
+
+    private final String accountSid;
+
+    /** Sender numbers of the account; the first one is the default sender. */
+    @Getter
+    private final List<String> fromNumbers;
+
+    private final WebClient webClient;
 
     public TwilioSmsConnector(
+            @Value("${sms.twilio.baseUrl:https://api.twilio.com}") String baseUrl,
             @Value("${sms.twilio.accountSid:PLEASE_SET_SECRETS}") String accountSid,
             @Value("${sms.twilio.authToken:PLEASE_SET_SECRETS}") String authToken,
-            @Value("${sms.twilio.fromNumber:PLEASE_SET_SECRETS}") String fromNumber
+            @Value("${sms.twilio.fromNumbers:${sms.twilio.fromNumber:PLEASE_SET_SECRETS}}") List<String> fromNumbers,
+            ProviderWebClientFactory webClientFactory
     ) {
-        Twilio.init(accountSid, authToken);
-        this.fromNumber = fromNumber;
+        this.accountSid = accountSid;
+        this.fromNumbers = fromNumbers.stream()
+                .map(String::trim)
+                .filter(number -> !number.isEmpty())
+                .distinct()
+                .toList();
+        if (this.fromNumbers.isEmpty()) {
+            throw new IllegalArgumentException("At least one sms from number is required");
+        }
+
+        this.webClient = webClientFactory.builder("sms", baseUrl,
+                        uri -> uri.replaceFirst("/Accounts/[^/]+/", "/Accounts/{accountSid}/"))
+                .defaultHeaders(headers -> headers.setBasicAuth(accountSid, authToken))
+                .build();
+    }
+
+    /**
+     * Sends one SMS from the default number and emits the Twilio message SID.
+     */
+    public Mono<String> sendSms(String to, String text) {
+        return sendSms(fromNumbers.get(0), to, text);
     }
 
-    public Message sendSms(String to, String text) {
-        return Message.creator(
-                new PhoneNumber(to),
-                new PhoneNumber(fromNumber),
-                text
-        ).create();
+    /**
+     * Sends one SMS from {@code fromNumber} and emits the Twilio message SID.
+     */
+    public Mono<String> sendSms(String fromNumber, String to, String text) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("To", to);
+        form.add("From", fromNumber);
+        form.add("Body", text);
+
+        return webClient.post()
+                .uri(MESSAGES_PATH, accountSid)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromFormData(form))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(json -> {
+                    // the message was accepted at this point, so never turn a missing sid into a (retried) error
+                    String sid = json.path("sid").asText("");
+                    if (sid.isEmpty()) {
+                        log.warn("Twilio accepted SMS to {} but returned no sid", to);
+                    }
+                    return sid;
+                });
     }
-}
\ No newline at end of file
+}
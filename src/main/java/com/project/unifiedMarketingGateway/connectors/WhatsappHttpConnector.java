@@ -1,23 +1,28 @@
 package com.project.unifiedMarketingGateway.connectors;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.project.unifiedMarketingGateway.builders.PayloadTemplate;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import reactor.core.publisher.Mono;
 
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
-import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
-
-import java.util.Map;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
@@ -26,31 +31,186 @@ public class WhatsappHttpConnector implements ConnectorInterface {
     @Value("${whatsapp.accessToken:PLEASE_SET_SECRETS}")
     private String accessToken;
 
-    private final WebClient webClient;
+    /** Business phone numbers of the WABA; the first one is the default sender. */
+    @Getter
+    private final List<String> phoneNumberIds;
+
+    // one client per phone number (its id is in the base url), all on one connection pool
+    private final Map<String, WebClient> webClients = new LinkedHashMap<>();
 
+    // downloads campaign assets before upload, on its own pool (whatsapp.media.http.*); unless
+    // whatsapp.media.allowPrivateHosts is on, it refuses loopback / private network targets
+    private final WebClient mediaFetchClient;
+
+    // hosts (and their subdomains) assets may come from; any public host when empty
+    private final List<String> allowedMediaHosts;
+
+    @Autowired
     public WhatsappHttpConnector(@Value("${whatsapp.baseUrl:https://graph.facebook.com}") String baseUrl,
             @Value("${whatsapp.api-version:v20.0}") String apiVersion,
-            @Value("${whatsapp.phone-number-id:PLEASE_SET_SECRETS}") String phoneNumberId) {
+            @Value("${whatsapp.phone-number-ids:${whatsapp.phone-number-id:PLEASE_SET_SECRETS}}") List<String> phoneNumberIds,
+            @Value("${whatsapp.media.maxUploadBytes:16777216}") int maxUploadBytes,
+            @Value("${whatsapp.media.allowedHosts:}") List<String> allowedMediaHosts,
+            @Value("${whatsapp.media.allowPrivateHosts:false}") boolean allowPrivateMediaHosts,
+            ProviderWebClientFactory webClientFactory) {
+        this(baseUrl, apiVersion, phoneNumberIds, maxUploadBytes, allowedMediaHosts, allowPrivateMediaHosts,
+                webClientFactory, InetAddress::getAllByName);
+    }
 
-        // final base url becomes: https://graph.facebook.com/v20.0/{phone_number_id}
-        String fullBaseUrl = baseUrl + "/" + apiVersion + "/" + phoneNumberId;
+    WhatsappHttpConnector(String baseUrl, String apiVersion, List<String> phoneNumberIds, int maxUploadBytes,
+            List<String> allowedMediaHosts, boolean allowPrivateMediaHosts, ProviderWebClientFactory webClientFactory,
+            PublicAddressResolverGroup.Lookup mediaHostLookup) {
+        this.phoneNumberIds = phoneNumberIds.stream()
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .distinct()
+                .toList();
+        if (this.phoneNumberIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one whatsapp phone number id is required");
+        }
 
-        this.webClient = WebClient.builder()
-                .baseUrl(fullBaseUrl)
+        // final base url becomes: https://graph.facebook.com/v20.0/{phone_number_id}
+        String versionUrl = baseUrl + "/" + apiVersion;
+        WebClient.Builder builder = webClientFactory.builder("whatsapp", versionUrl,
+                uri -> uri.replaceFirst("/" + Pattern.quote(apiVersion) + "/[^/]+", "/" + apiVersion + "/{phoneNumberId}"));
+        for (String phoneNumberId : this.phoneNumberIds) {
+            webClients.put(phoneNumberId, builder.clone().baseUrl(versionUrl + "/" + phoneNumberId).build());
+        }
+        // private targets are refused by the resolver the fetch connects with, so a host is resolved only once
+        this.mediaFetchClient = webClientFactory.builder("whatsapp.media", null, uri -> "/asset",
+                        client -> allowPrivateMediaHosts ? client : client.resolver(new PublicAddressResolverGroup(mediaHostLookup)))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxUploadBytes))
                 .build();
+        this.allowedMediaHosts = allowedMediaHosts.stream()
+                .map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .filter(host -> !host.isEmpty())
+                .toList();
     }
 
-    @Override
-    public Mono<String> sendMarketingRequest(String method, Map<String, Object> payload) {
-        String path = (method == null || method.isBlank()) ? "/messages" :
-                (method.startsWith("/") ? method : "/" + method);
+    /**
+     * Downloads the asset at {@code mediaUrl} and uploads it to the phone number's
+     * {@code /media} endpoint. Emits the media id to reference in messages.
+     */
+    public Mono<String> uploadMedia(String mediaUrl) {
+        return uploadMedia(getPhoneNumberId(), mediaUrl);
+    }
+
+    /** Same as {@link #uploadMedia(String)}, uploading to {@code phoneNumberId}. */
+    public Mono<String> uploadMedia(String phoneNumberId, String mediaUrl) {
+        WebClient webClient = clientFor(phoneNumberId);
+        return checkedMediaUri(mediaUrl)
+                .flatMap(uri -> mediaFetchClient.get()
+                        .uri(uri)
+                        .retrieve()
+                        .toEntity(byte[].class)
+                        // a refused private address surfaces as a connection error
+                        .onErrorMap(WebClientRequestException.class,
+                                e -> e.getCause() instanceof IllegalArgumentException refused ? refused : e))
+                .flatMap(asset -> uploadMedia(webClient, asset, fileName(mediaUrl)));
+    }
+
+    /**
+     * The url of a caller-supplied asset, if the gateway may fetch it: http(s) only, and a host
+     * from {@code whatsapp.media.allowedHosts} when that is set. Addresses on a loopback,
+     * link-local (cloud metadata) or private network are refused when the fetch resolves the
+     * host, unless {@code whatsapp.media.allowPrivateHosts} is on. Redirects are not followed.
+     */
+    private Mono<URI> checkedMediaUri(String mediaUrl) {
+        return Mono.fromCallable(() -> {
+            URI uri = URI.create(mediaUrl);
+            String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+            if (!scheme.equals("http") && !scheme.equals("https")) {
+                throw new IllegalArgumentException("Media url must be http or https: " + mediaUrl);
+            }
+            String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+            if (host.isEmpty()) {
+                throw new IllegalArgumentException("Media url has no host: " + mediaUrl);
+            }
+            if (!allowedMediaHosts.isEmpty()
+                    && allowedMediaHosts.stream().noneMatch(allowed -> host.equals(allowed) || host.endsWith("." + allowed))) {
+                throw new IllegalArgumentException("Media host is not allowed: " + host);
+            }
+            return uri;
+        });
+    }
+
+    private Mono<String> uploadMedia(WebClient webClient, ResponseEntity<byte[]> asset, String fileName) {
+        if (asset.getBody() == null || asset.getBody().length == 0) {
+            return Mono.error(new IllegalStateException("Media download returned an empty body"));
+        }
+        MediaType contentType = asset.getHeaders().getContentType();
+        // Graph wants the bare mime type, without charset or other parameters
+        String mimeType = contentType == null
+                ? MediaType.APPLICATION_OCTET_STREAM_VALUE
+                : contentType.getType() + "/" + contentType.getSubtype();
+
+        MultipartBodyBuilder multipart = new MultipartBodyBuilder();
+        multipart.part("messaging_product", "whatsapp");
+        multipart.part("type", mimeType);
+        multipart.part("file", new ByteArrayResource(asset.getBody()))
+                .filename(fileName)
+                .contentType(MediaType.parseMediaType(mimeType));
 
         return webClient.post()
-                .uri(path)
+                .uri("/media")
+                .headers(headers -> headers.setBearerAuth(accessToken))
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(multipart.build()))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .flatMap(json -> Mono.justOrEmpty(json.path("id").asText(null)))
+                .switchIfEmpty(Mono.error(new IllegalStateException("Media upload response did not contain an id")));
+    }
+
+    private String fileName(String mediaUrl) {
+        String path = URI.create(mediaUrl).getPath();
+        if (path == null || path.isBlank() || path.endsWith("/")) {
+            return "media";
+        }
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /** The default sender, i.e. the first configured phone number. */
+    public String getPhoneNumberId() {
+        return phoneNumberIds.get(0);
+    }
+
+    @Override
+    public Mono<String> sendMarketingRequest(String method, Map<String, Object> payload) {
+        return clientFor(getPhoneNumberId()).post()
+                .uri(messagesPath(method))
                 .contentType(MediaType.APPLICATION_JSON)
                 .headers(headers -> headers.setBearerAuth(accessToken))
                 .bodyValue(payload)
                 .retrieve()
                 .bodyToMono(String.class);
     }
+
+    @Override
+    public Mono<String> sendMarketingRequest(String method, PayloadTemplate template, String recipient) {
+        return sendMarketingRequest(getPhoneNumberId(), method, template, recipient);
+    }
+
+    /** Sends from {@code phoneNumberId}, for callers picking a number from the pool. */
+    public Mono<String> sendMarketingRequest(String phoneNumberId, String method, PayloadTemplate template, String recipient) {
+        return clientFor(phoneNumberId).post()
+                .uri(messagesPath(method))
+                .headers(headers -> headers.setBearerAuth(accessToken))
+                .body(template.bodyFor(recipient))
+                .retrieve()
+                .bodyToMono(String.class);
+    }
+
+    private WebClient clientFor(String phoneNumberId) {
+        WebClient webClient = webClients.get(phoneNumberId);
+        if (webClient == null) {
+            throw new IllegalArgumentException("Unknown whatsapp phone number id " + phoneNumberId);
+        }
+        return webClient;
+    }
+
+    private String messagesPath(String method) {
+        return (method == null || method.isBlank()) ? "/messages" :
+                (method.startsWith("/") ? method : "/" + method);
+    }
 }
@@ -25,4 +25,11 @@ public class Constants {
     public static final String ERROR_INVALID_MEDIA_TYPE_LIST_FOR_SMS = "Invalid Media type for SMS";
     public static final String ERROR_TEXT_MESSAGE_SIZE_LIMIT = "Text message must be max 1600 characters.";
     public static final String SEND_SMS_METHOD = "send_sms";
+    public static final String FALLBACK_TEXT_MESSAGE = "Fallback message";
+    public static final String RECIPIENT = "recipient";
+    public static final String ERROR_INVALID_BULK_REQUEST = "Invalid bulk request body";
+    public static final String ERROR_BULK_REQUEST_TIMED_OUT = "Bulk request timed out, recipients not sent yet were released";
+    public static final String ERROR_DISPATCH_QUEUE_FULL = "Dispatch queue is full, retry later";
+    public static final String ERROR_SENDER_BUDGET_EXHAUSTED = "Every sender has used up its recipient budget";
+    public static final String ERROR_UNKNOWN_FALLBACK_CHAIN = "Unknown fallback chain";
 }
@@ -1,7 +1,10 @@
 package com.project.unifiedMarketingGateway.controllers;
 
+import com.project.unifiedMarketingGateway.builders.SendNotificationResponseBuilder;
 import com.project.unifiedMarketingGateway.enums.ClientType;
 import com.project.unifiedMarketingGateway.enums.MediaType;
+import com.project.unifiedMarketingGateway.ingestion.NdjsonBulkRequestReader;
+import com.project.unifiedMarketingGateway.models.BulkNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationResponse;
 import com.project.unifiedMarketingGateway.processor.sms.SmsRequestProcessor;
@@ -9,12 +12,22 @@ import com.project.unifiedMarketingGateway.processor.telegram.TelegramRequestPro
 import com.project.unifiedMarketingGateway.processor.whatsapp.WhatsappRequestProcessor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.project.unifiedMarketingGateway.constants.Constants.ERROR_BULK_REQUEST_TIMED_OUT;
+import static com.project.unifiedMarketingGateway.constants.Constants.ERROR_INVALID_BULK_REQUEST;
 
 
 @Slf4j
@@ -27,6 +40,13 @@ public class SendNotificationController {
     WhatsappRequestProcessor whatsappRequestProcessor;
     @Autowired
     SmsRequestProcessor smsRequestProcessor;
+    @Autowired
+    NdjsonBulkRequestReader bulkRequestReader;
+    @Autowired
+    SendNotificationResponseBuilder responseBuilder;
+
+    @Value("${bulk.requestTimeoutMinutes:1440}")
+    long bulkRequestTimeoutMinutes;
 
     @PostMapping(
             value = "/sendNotification",
@@ -53,4 +73,54 @@ public class SendNotificationController {
 
         return response;
     }
+
+    /**
+     * Streaming variant of /sendNotification without the recipient cap. The body is NDJSON:
+     * the first line is the request envelope, every following line one recipient.
+     * The body is read as the send pipeline asks for more recipients, so a slow
+     * pipeline slows the upload down instead of buffering recipients on the heap.
+     * <p>
+     * The response is written once the last recipient is queued, which can take hours, so the
+     * request runs under {@code bulk.requestTimeoutMinutes} rather than the servlet async
+     * default. A timeout or a dropped connection cancels the pipeline, which releases the
+     * claims of the recipients that were not sent yet.
+     */
+    @PostMapping(
+            value = "/sendNotification/bulk",
+            consumes = org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE,
+            produces = org.springframework.http.MediaType.APPLICATION_JSON_VALUE
+    )
+    public DeferredResult<SendNotificationResponse> sendBulkNotification(@RequestHeader ClientType clientType,
+            InputStream body) {
+        // zero or less: no timeout
+        DeferredResult<SendNotificationResponse> result =
+                new DeferredResult<>(Math.max(TimeUnit.MINUTES.toMillis(bulkRequestTimeoutMinutes), 0L));
+
+        Disposable pipeline = processBulk(clientType, body).subscribe(result::setResult, result::setErrorResult);
+        result.onTimeout(() -> {
+            log.warn("SendNotificationController::sendBulkNotification timed out after {} minutes", bulkRequestTimeoutMinutes);
+            pipeline.dispose();
+            result.setResult(responseBuilder.buildFailureResponse(ERROR_BULK_REQUEST_TIMED_OUT, null));
+        });
+        result.onError(err -> pipeline.dispose());
+        result.onCompletion(pipeline::dispose);
+        return result;
+    }
+
+    private Mono<SendNotificationResponse> processBulk(ClientType clientType, InputStream body) {
+        BulkNotificationRequest bulkRequest;
+        try {
+            bulkRequest = bulkRequestReader.read(body);
+        } catch (IOException e) {
+            log.warn("SendNotificationController::sendBulkNotification unreadable envelope: {}", e.toString());
+            return Mono.just(responseBuilder.buildFailureResponse(ERROR_INVALID_BULK_REQUEST + ": " + e.getMessage(), null));
+        }
+        log.debug("SendNotificationController::sendBulkNotification envelope: {}", bulkRequest.getEnvelope());
+
+        return switch (clientType) {
+            case TELEGRAM -> telegramRequestProcessor.processBulkNotificationRequest(bulkRequest.getEnvelope(), bulkRequest.getRecipients());
+            case WHATSAPP -> whatsappRequestProcessor.processBulkNotificationRequest(bulkRequest.getEnvelope(), bulkRequest.getRecipients());
+            case SMS -> smsRequestProcessor.processBulkNotificationRequest(bulkRequest.getEnvelope(), bulkRequest.getRecipients());
+        };
+    }
 }
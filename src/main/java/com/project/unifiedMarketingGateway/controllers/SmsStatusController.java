@@ -1,6 +1,6 @@
 package com.project.unifiedMarketingGateway.controllers;
 
-import com.project.unifiedMarketingGateway.repository.SmsMessageRepository;
+import com.project.unifiedMarketingGateway.store.messageStore.SmsMessageStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -17,14 +17,14 @@ import java.util.Map;
 public class SmsStatusController {
 
     @Autowired
-    SmsMessageRepository smsMessageRepository;
+    SmsMessageStore smsMessageStore;
 
     @GetMapping(
             value = "/{sid}",
             produces = org.springframework.http.MediaType.APPLICATION_JSON_VALUE
     )
     public ResponseEntity<?> getSmsStatus(@PathVariable String sid) {
-        return smsMessageRepository.findBySid(sid)
+        return smsMessageStore.findBySid(sid)
                 .<ResponseEntity<?>>map(ResponseEntity::ok)
                 .orElseGet(() ->
                         ResponseEntity.status(HttpStatus.NOT_FOUND)
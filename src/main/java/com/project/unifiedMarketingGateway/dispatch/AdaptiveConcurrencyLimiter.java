@@ -0,0 +1,148 @@
+package com.project.unifiedMarketingGateway.dispatch;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * AIMD concurrency limit for one channel, fed with the latency and outcome of every
+ * provider attempt.
+ * <p>
+ * While the short-term latency stays within {@code latencyTolerance} times the long-term
+ * baseline, the limit grows by roughly one per limit's worth of successful samples
+ * (only when the limit is actually being used). On a 429/5xx, or when the short-term
+ * latency spikes above the tolerance, the limit is multiplied by {@code backoffRatio},
+ * at most once per smoothed round trip so a burst of failures counts as one signal.
+ * <p>
+ * Listeners registered with {@link #onLimitIncrease(Runnable)} run whenever the whole-number
+ * limit grows, so a dispatcher can start the extra workers without waiting for a task to finish.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_RTT_ALPHA = 0.2;
+    private static final double BASELINE_RTT_ALPHA = 0.01;
+
+    @Getter
+    private final String channel;
+    @Getter
+    private final int minLimit;
+    @Getter
+    private final int maxLimit;
+
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final Predicate<Throwable> isOverload;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Runnable> limitIncreaseListeners = new CopyOnWriteArrayList<>();
+
+    private double limit;
+    private double shortRttNanos;
+    private double baselineRttNanos;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimiter(String channel, int initialLimit, int minLimit, int maxLimit,
+                                      double latencyTolerance, double backoffRatio,
+                                      Predicate<Throwable> isOverload) {
+        this(channel, initialLimit, minLimit, maxLimit, latencyTolerance, backoffRatio, isOverload, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(String channel, int initialLimit, int minLimit, int maxLimit,
+                               double latencyTolerance, double backoffRatio,
+                               Predicate<Throwable> isOverload, LongSupplier nanoClock) {
+        this.channel = channel;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.isOverload = isOverload;
+        this.nanoClock = nanoClock;
+        this.limit = clamp(initialLimit);
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+    }
+
+    /** A limiter that never moves, for engines that are not adaptive. */
+    public static AdaptiveConcurrencyLimiter fixed(String channel, int limit) {
+        return new AdaptiveConcurrencyLimiter(channel, limit, limit, limit, Double.MAX_VALUE, 1.0, t -> false);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public void onLimitIncrease(Runnable listener) {
+        limitIncreaseListeners.add(listener);
+    }
+
+    /**
+     * Times one provider attempt and feeds the outcome into the limit. Wrap only the
+     * provider call itself (not rate-limiter waits or retry back-off).
+     */
+    public <T> Mono<T> measure(Mono<T> attempt) {
+        return Mono.defer(() -> {
+            long start = nanoClock.getAsLong();
+            int concurrent = inFlight.incrementAndGet();
+            return attempt
+                    .doOnSuccess(v -> onSample(nanoClock.getAsLong() - start, concurrent, false))
+                    .doOnError(err -> onSample(nanoClock.getAsLong() - start, concurrent, isOverload.test(err)))
+                    .doFinally(s -> inFlight.decrementAndGet());
+        });
+    }
+
+    void onSample(long rttNanos, int concurrent, boolean overload) {
+        // listeners run outside the lock, they usually read the limit again
+        if (update(rttNanos, concurrent, overload)) {
+            limitIncreaseListeners.forEach(Runnable::run);
+        }
+    }
+
+    /** Returns true if the whole-number limit grew. */
+    private synchronized boolean update(long rttNanos, int concurrent, boolean overload) {
+        long now = nanoClock.getAsLong();
+        if (overload) {
+            decrease(now, "provider throttling");
+            return false;
+        }
+
+        if (baselineRttNanos == 0) {
+            baselineRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+        } else {
+            shortRttNanos += SHORT_RTT_ALPHA * (rttNanos - shortRttNanos);
+            baselineRttNanos += BASELINE_RTT_ALPHA * (rttNanos - baselineRttNanos);
+        }
+
+        if (shortRttNanos > baselineRttNanos * latencyTolerance) {
+            decrease(now, "latency spike");
+        } else if (concurrent * 2 >= limit) {
+            // additive increase: about +1 per full window of samples, and only when the limit is in use
+            int previous = (int) limit;
+            limit = clamp(limit + 1.0 / limit);
+            return (int) limit > previous;
+        }
+        return false;
+    }
+
+    private void decrease(long now, String reason) {
+        if (now - lastDecreaseNanos < Math.max(shortRttNanos, 1)) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double previous = limit;
+        limit = clamp(limit * backoffRatio);
+        if ((int) previous != (int) limit) {
+            log.info("{} concurrency limit {} -> {} ({})", channel, (int) previous, (int) limit, reason);
+        }
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
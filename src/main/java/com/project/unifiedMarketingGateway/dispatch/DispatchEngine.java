@@ -0,0 +1,242 @@
+package com.project.unifiedMarketingGateway.dispatch;
+
+import com.project.unifiedMarketingGateway.enums.Priority;
+import com.project.unifiedMarketingGateway.metrics.dto.SendResultDTO;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Long-lived, per-channel dispatcher shared by every API request of that channel.
+ * <p>
+ * Sends are queued as lazy tasks in a bounded queue and executed by at most
+ * {@link AdaptiveConcurrencyLimiter#getLimit()} workers, so the number of provider calls in
+ * flight is capped no matter how many requests arrive. When the queue is full, producers wait (without
+ * holding a thread) until a worker frees a slot, which pushes backpressure up to the
+ * request that is feeding recipients. Waiting producers are admitted in arrival order, and a
+ * new producer never overtakes one that is already waiting.
+ * <p>
+ * There is one queue (lane) per {@link Priority}. Free workers pick the next lane with
+ * smooth weighted round-robin over the non-empty lanes, so a HIGH send never queues behind
+ * a campaign, and a BULK lane still gets every slot the other lanes leave unused.
+ */
+@Slf4j
+public class DispatchEngine {
+
+    @Getter
+    private final String channel;
+    @Getter
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    @Getter
+    private final int queueCapacity;
+
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    public DispatchEngine(String channel, int workerConcurrency, int queueCapacity) {
+        this(channel, AdaptiveConcurrencyLimiter.fixed(channel, workerConcurrency), queueCapacity, Map.of());
+    }
+
+    /**
+     * @param laneWeights scheduling weight per priority; missing entries use {@link Priority#getDefaultWeight()}
+     */
+    public DispatchEngine(String channel, AdaptiveConcurrencyLimiter concurrencyLimiter, int queueCapacity,
+                          Map<Priority, Integer> laneWeights) {
+        this.channel = channel;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        for (Priority priority : Priority.values()) {
+            int weight = laneWeights.getOrDefault(priority, priority.getDefaultWeight());
+            lanes.put(priority, new Lane(Math.max(1, weight), this.queueCapacity));
+        }
+        // a grown limit frees worker slots that no finishing task would claim
+        concurrencyLimiter.onLimitIncrease(this::drain);
+    }
+
+    /**
+     * Queues one send. The returned Mono completes once the task is in the queue,
+     * which may be later than subscription if the queue is currently full.
+     */
+    public Mono<Void> submit(Priority priority, Supplier<Mono<SendResultDTO>> task) {
+        Lane lane = lanes.get(priority);
+        return Mono.create(sink -> offer(lane, task, sink));
+    }
+
+    public Mono<Void> submit(Supplier<Mono<SendResultDTO>> task) {
+        return submit(Priority.NORMAL, task);
+    }
+
+    /**
+     * Queues every task of the stream, requesting the next one only after the previous
+     * one was accepted. Emits the number of queued tasks.
+     */
+    public Mono<Long> submitAll(Priority priority, Flux<Supplier<Mono<SendResultDTO>>> tasks) {
+        return tasks.concatMap(task -> submit(priority, task).thenReturn(1L))
+                .count();
+    }
+
+    public Mono<Long> submitAll(Flux<Supplier<Mono<SendResultDTO>>> tasks) {
+        return submitAll(Priority.NORMAL, tasks);
+    }
+
+    /** True if {@code tasks} more sends fit into the lane right now. */
+    public boolean hasCapacityFor(Priority priority, int tasks) {
+        return lanes.get(priority).queue.remainingCapacity() >= tasks;
+    }
+
+    public boolean hasCapacityFor(int tasks) {
+        return hasCapacityFor(Priority.NORMAL, tasks);
+    }
+
+    public int getQueueDepth(Priority priority) {
+        return lanes.get(priority).queue.size();
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes.values()) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getWorkerConcurrency() {
+        return concurrencyLimiter.getLimit();
+    }
+
+    private void offer(Lane lane, Supplier<Mono<SendResultDTO>> task, MonoSink<Void> sink) {
+        boolean accepted;
+        synchronized (lane) {
+            // only take a free slot directly if nobody is waiting for one
+            accepted = lane.waitingProducers.isEmpty() && lane.queue.offer(task);
+            if (!accepted) {
+                lane.waitingProducers.add(new WaitingProducer(task, sink));
+            }
+        }
+        if (accepted) {
+            sink.success();
+        } else {
+            // a worker may have freed a slot between the failed offer and the registration
+            lane.admitWaitingProducers();
+        }
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (inFlight.get() < concurrencyLimiter.getLimit()) {
+                Lane lane = nextLane();
+                if (lane == null) {
+                    break;
+                }
+                Supplier<Mono<SendResultDTO>> task = lane.queue.poll();
+                inFlight.incrementAndGet();
+                lane.admitWaitingProducers();
+                execute(task);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Smooth weighted round-robin over the non-empty lanes. Only called from the drain loop,
+     * which is serialised by {@code wip}.
+     */
+    private Lane nextLane() {
+        Lane best = null;
+        int totalWeight = 0;
+        for (Lane lane : lanes.values()) {
+            if (lane.queue.isEmpty()) {
+                lane.currentWeight = 0;
+                continue;
+            }
+            lane.currentWeight += lane.weight;
+            totalWeight += lane.weight;
+            if (best == null || lane.currentWeight > best.currentWeight) {
+                best = lane;
+            }
+        }
+        if (best != null) {
+            best.currentWeight -= totalWeight;
+        }
+        return best;
+    }
+
+    private void execute(Supplier<Mono<SendResultDTO>> task) {
+        Mono.defer(task)
+                // tasks do their idempotency / delivery-state bookkeeping synchronously
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(
+                        result -> {
+                            if (result.isSuccess()) {
+                                log.info("[{}] {} sent successfully", result.getChatId(), channel);
+                            } else {
+                                log.warn("[{}] {} send failed: {}", result.getChatId(), channel, result.getErrorMessage());
+                            }
+                        },
+                        err -> {
+                            log.error("{} dispatch task error (should not cancel others): {}", channel, err.toString());
+                            onTaskDone();
+                        },
+                        this::onTaskDone
+                );
+    }
+
+    private void onTaskDone() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private record WaitingProducer(Supplier<Mono<SendResultDTO>> task, MonoSink<Void> sink) {
+    }
+
+    private static final class Lane {
+        private final int weight;
+        private final BlockingQueue<Supplier<Mono<SendResultDTO>>> queue;
+        /** Producers waiting for a free slot, oldest first. Guarded by the lane's monitor. */
+        private final Queue<WaitingProducer> waitingProducers = new ArrayDeque<>();
+        private int currentWeight;
+
+        private Lane(int weight, int capacity) {
+            this.weight = weight;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /** Moves waiting producers into the queue, oldest first, while it has free slots. */
+        private void admitWaitingProducers() {
+            List<MonoSink<Void>> admitted = new ArrayList<>();
+            synchronized (this) {
+                WaitingProducer next;
+                while ((next = waitingProducers.peek()) != null && queue.offer(next.task())) {
+                    waitingProducers.poll();
+                    admitted.add(next.sink());
+                }
+            }
+            // completed outside the lock: completion lets the producer offer its next task
+            admitted.forEach(MonoSink::success);
+        }
+    }
+}
@@ -1,18 +1,25 @@
 package com.project.unifiedMarketingGateway.entity;
 
 import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.enums.IdempotencyStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Objects;
+
 @Entity
 @Table(
         name = "delivery_state",
         indexes = {
-                @Index(name = "idx_delivery_request", columnList = "requestId"),
-                @Index(name = "idx_delivery_channel", columnList = "channel")
+                @Index(name = "idx_delivery_channel", columnList = "channel"),
+                // also serves the lookups by requestId, its leading column
+                @Index(name = "uk_delivery_key", columnList = "requestId,channel,recipient,mediaType", unique = true),
+                @Index(name = "idx_delivery_provider_msg", columnList = "providerMessageId"),
+                // keyset pages of one reconciliation partition
+                @Index(name = "idx_delivery_partition_status_updated", columnList = "partitionId,status,updatedAtEpochMillis,id")
         }
 )
 @Data
@@ -22,7 +29,8 @@ import lombok.NoArgsConstructor;
 public class DeliveryStateEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "delivery_state_seq")
+    @SequenceGenerator(name = "delivery_state_seq", sequenceName = "delivery_state_seq", allocationSize = 50)
     private Long id;
 
     private String requestId;
@@ -30,15 +38,29 @@ public class DeliveryStateEntity {
     private String recipient;
     private String mediaType;
 
+    // reconciliation partition, see partitionOf
+    private Integer partitionId;
+
     @Enumerated(EnumType.STRING)
     private DeliveryStatus status;
 
     private String providerMessageId; // telegram msg id, wamid, twilio sid
     private String failureReason;
+    private String errorCode;
+
+    // claim state of the send; the source of truth in unified storage mode
+    @Enumerated(EnumType.STRING)
+    private IdempotencyStatus idempotencyStatus;
 
     private long createdAtEpochMillis;
     private Long updatedAtEpochMillis;
     private Boolean fallbackTriggered;
     private String fallbackChannel;
-}
 
+    /**
+     * The reconciliation partition of a send: a hash of its key, stable across nodes.
+     */
+    public static int partitionOf(String requestId, String channel, String recipient, String mediaType, int partitions) {
+        return Math.floorMod(Objects.hash(requestId, channel, recipient, mediaType), partitions);
+    }
+}
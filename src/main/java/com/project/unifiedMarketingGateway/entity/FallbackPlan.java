@@ -0,0 +1,29 @@
+package com.project.unifiedMarketingGateway.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The fallback chain of a request, resolved once when the request is accepted so every node
+ * routes its sends the same way, whatever the chain configuration is by then.
+ */
+@Entity
+@Table(name = "fallback_plan")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FallbackPlan {
+
+    @Id
+    private String requestId;
+
+    // FallbackChain.spec()
+    private String chain;
+    private long createdAtEpochMillis;
+}
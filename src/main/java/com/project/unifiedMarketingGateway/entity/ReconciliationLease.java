@@ -0,0 +1,29 @@
+package com.project.unifiedMarketingGateway.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ownership of one reconciliation partition of delivery_state. A partition belongs to
+ * {@code owner} until {@code expiresAtEpochMillis}; the owner renews it well before then,
+ * and any node may take it over once it has expired.
+ */
+@Entity
+@Table(name = "reconciliation_lease")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationLease {
+
+    @Id
+    private Integer partitionId;
+
+    private String owner;
+    private long expiresAtEpochMillis;
+}
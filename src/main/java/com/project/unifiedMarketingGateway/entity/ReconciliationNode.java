@@ -0,0 +1,27 @@
+package com.project.unifiedMarketingGateway.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A gateway node taking part in reconciliation, alive while its heartbeat is recent. The
+ * number of live nodes sets each node's fair share of the partitions.
+ */
+@Entity
+@Table(name = "reconciliation_node")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationNode {
+
+    @Id
+    private String nodeId;
+
+    private long heartbeatAtEpochMillis;
+}
@@ -16,7 +16,8 @@ import lombok.NoArgsConstructor;
 public class SmsMessageEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sms_message_seq")
+    @SequenceGenerator(name = "sms_message_seq", sequenceName = "sms_message_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "sid", unique = true)
@@ -0,0 +1,28 @@
+package com.project.unifiedMarketingGateway.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The bot a Telegram chat talks to. A bot can only message chats that started it, so once a
+ * chat is bound every later send to it goes through the same bot.
+ */
+@Entity
+@Table(name = "telegram_chat_binding")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TelegramChatBinding {
+
+    @Id
+    private String chatId;
+
+    private String botId;
+    private long boundAtEpochMillis;
+}
@@ -16,7 +16,8 @@ import lombok.*;
 public class WhatsappMessageEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "whatsapp_message_seq")
+    @SequenceGenerator(name = "whatsapp_message_seq", sequenceName = "whatsapp_message_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "wa_message_id", unique = true, length = 128)
@@ -0,0 +1,31 @@
+package com.project.unifiedMarketingGateway.enums;
+
+/**
+ * Dispatch lane of a send. HIGH is meant for transactional traffic (OTPs, alerts),
+ * BULK for campaigns that should only use leftover provider capacity.
+ */
+public enum Priority {
+    HIGH("HIGH", 8),
+    NORMAL("NORMAL", 3),
+    BULK("BULK", 1);
+
+    private final String value;
+    private final int defaultWeight;
+
+    Priority(String value, int defaultWeight) {
+        this.value = value;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    public static Priority orDefault(Priority priority, Priority fallback) {
+        return priority != null ? priority : fallback;
+    }
+}
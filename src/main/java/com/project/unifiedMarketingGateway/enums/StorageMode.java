@@ -0,0 +1,14 @@
+package com.project.unifiedMarketingGateway.enums;
+
+/**
+ * Where the send path keeps its per-recipient records ({@code storage.mode}).
+ */
+public enum StorageMode {
+    /** Separate idempotency_record, delivery_state, whatsapp_message and sms_message writes. */
+    SPLIT,
+    /**
+     * One delivery_state row per send attempt carries the idempotency status, the delivery
+     * state and the provider message id; the channel message queries are served from it.
+     */
+    UNIFIED
+}
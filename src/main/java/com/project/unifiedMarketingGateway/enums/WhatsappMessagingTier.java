@@ -0,0 +1,24 @@
+package com.project.unifiedMarketingGateway.enums;
+
+/**
+ * Messaging limit tier of a WhatsApp business phone number: how many unique users it may
+ * start business-initiated conversations with in a rolling 24 hours.
+ */
+public enum WhatsappMessagingTier {
+    TIER_250(250),
+    TIER_1K(1_000),
+    TIER_10K(10_000),
+    TIER_100K(100_000),
+    UNLIMITED(0);
+
+    private final int dailyRecipientLimit;
+
+    WhatsappMessagingTier(int dailyRecipientLimit) {
+        this.dailyRecipientLimit = dailyRecipientLimit;
+    }
+
+    /** Unique recipients per rolling 24 hours, 0 when unlimited. */
+    public int getDailyRecipientLimit() {
+        return dailyRecipientLimit;
+    }
+}
@@ -0,0 +1,97 @@
+package com.project.unifiedMarketingGateway.ingestion;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.unifiedMarketingGateway.models.BulkNotificationRequest;
+import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.project.unifiedMarketingGateway.constants.Constants.RECIPIENT;
+
+/**
+ * Reads a bulk notification body in NDJSON form:
+ * <pre>
+ * {"mediaTypeList":["TEXT"],"textMessage":"hello"}
+ * "111"
+ * 222
+ * {"recipient":"333"}
+ * </pre>
+ * The first line is the {@link SendNotificationRequest} envelope, every following line
+ * is one recipient. Recipients are pulled one token at a time with Jackson's streaming
+ * parser, so only as many recipients as downstream has requested are ever held in memory.
+ */
+@Slf4j
+@Component
+public class NdjsonBulkRequestReader {
+
+    @Autowired ObjectMapper objectMapper;
+
+    public BulkNotificationRequest read(InputStream body) throws IOException {
+        JsonParser parser = objectMapper.createParser(body);
+
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new JsonParseException(parser, "Bulk request must start with a JSON envelope object");
+        }
+        SendNotificationRequest envelope = objectMapper.readValue(parser, SendNotificationRequest.class);
+
+        Flux<String> streamed = Flux.<String, JsonParser>generate(
+                        () -> parser,
+                        this::emitNextRecipient,
+                        this::closeQuietly)
+                // parser reads block on the servlet input stream
+                .subscribeOn(Schedulers.boundedElastic());
+
+        // recipients listed inline on the envelope line are dispatched first
+        Flux<String> recipients = envelope.getRecipientList() == null
+                ? streamed
+                : Flux.concat(Flux.fromIterable(envelope.getRecipientList()), streamed);
+
+        return new BulkNotificationRequest(envelope, recipients);
+    }
+
+    private JsonParser emitNextRecipient(JsonParser parser, SynchronousSink<String> sink) {
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                sink.complete();
+                return parser;
+            }
+            switch (token) {
+                case VALUE_STRING, VALUE_NUMBER_INT -> sink.next(parser.getText());
+                case START_OBJECT -> {
+                    JsonNode node = parser.readValueAsTree();
+                    JsonNode recipient = node.get(RECIPIENT);
+                    if (recipient == null || recipient.isNull()) {
+                        sink.error(new JsonParseException(parser, "Bulk recipient object without \"" + RECIPIENT + "\" field"));
+                    } else {
+                        sink.next(recipient.asText());
+                    }
+                }
+                default -> sink.error(new JsonParseException(parser, "Unexpected token " + token + " in bulk recipient stream"));
+            }
+        } catch (IOException e) {
+            sink.error(e);
+        }
+        return parser;
+    }
+
+    private void closeQuietly(JsonParser parser) {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            log.debug("Failed to close bulk request parser: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.project.unifiedMarketingGateway.jobs;
+
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory index of when each in-flight send becomes stuck: a min-heap ({@link DelayQueue})
+ * of deadlines keyed by expiry, fed by every delivery state transition. A send in QUEUED, SENT
+ * or DELIVERED expires {@code reconciliation.timeout.<status>} minutes after its last
+ * transition, or sooner for a SENT whose fallback hop has a shorter timeout; any later
+ * transition replaces the deadline and terminal states drop it.
+ * <p>
+ * One daemon thread sleeps until the earliest deadline and hands it to the expiry handler
+ * (the reconciliation job, which re-checks the row in the database). Replaced deadlines stay
+ * in the heap until they come up and are skipped then.
+ */
+@Slf4j
+@Component
+public class DeliveryDeadlineIndex {
+
+    public record Key(String requestId, String channel, String recipient, String mediaType) {}
+
+    /** {@code timeoutMillis} is the timeout the deadline was set with, from the last transition. */
+    public record Deadline(Key key, DeliveryStatus status, long timeoutMillis, long expiresAtMillis) {}
+
+    private final class Entry implements Delayed {
+        final Deadline deadline;
+
+        Entry(Deadline deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline.expiresAtMillis() - clock.getAsLong(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline.expiresAtMillis(), ((Entry) other).deadline.expiresAtMillis());
+        }
+    }
+
+    private final long queuedTimeoutMs;
+    private final long sentTimeoutMs;
+    private final long deliveredTimeoutMs;
+    private final LongSupplier clock;
+
+    private final DelayQueue<Entry> heap = new DelayQueue<>();
+    private final Map<Key, Entry> current = new ConcurrentHashMap<>();
+
+    @Getter
+    private volatile boolean started;
+    private volatile Thread worker;
+
+    @Autowired
+    public DeliveryDeadlineIndex(
+            @Value("${reconciliation.timeout.queued:5}") int queuedMinutes,
+            @Value("${reconciliation.timeout.sent:30}") int sentMinutes,
+            @Value("${reconciliation.timeout.delivered:1440}") int deliveredMinutes
+    ) {
+        this(Duration.ofMinutes(queuedMinutes), Duration.ofMinutes(sentMinutes), Duration.ofMinutes(deliveredMinutes),
+                System::currentTimeMillis);
+    }
+
+    DeliveryDeadlineIndex(Duration queuedTimeout, Duration sentTimeout, Duration deliveredTimeout, LongSupplier clock) {
+        this.queuedTimeoutMs = queuedTimeout.toMillis();
+        this.sentTimeoutMs = sentTimeout.toMillis();
+        this.deliveredTimeoutMs = deliveredTimeout.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Records a transition of {@code key} to {@code status} at {@code updatedAtMillis}: sets
+     * the send's deadline, or drops it when {@code status} cannot get stuck. The same status
+     * seen again with an update time no later than the tracked one is ignored.
+     */
+    public void track(Key key, DeliveryStatus status, long updatedAtMillis) {
+        track(key, status, updatedAtMillis, 0);
+    }
+
+    /**
+     * As {@link #track(Key, DeliveryStatus, long)}, with the timeout of the send's fallback hop:
+     * a SENT send that has one expires after the shorter of it and the SENT timeout.
+     */
+    public void track(Key key, DeliveryStatus status, long updatedAtMillis, long hopTimeoutMillis) {
+        long timeout = timeoutFor(status);
+        if (timeout <= 0) {
+            current.remove(key);
+            return;
+        }
+        if (status == DeliveryStatus.SENT && hopTimeoutMillis > 0) {
+            timeout = Math.min(timeout, hopTimeoutMillis);
+        }
+        Entry entry = new Entry(new Deadline(key, status, timeout, updatedAtMillis + timeout));
+        Entry previous = current.get(key);
+        if (previous != null && previous.deadline.status() == status
+                && previous.deadline.expiresAtMillis() >= entry.deadline.expiresAtMillis()) {
+            return;
+        }
+        current.put(key, entry);
+        heap.add(entry);
+    }
+
+    public long timeoutFor(DeliveryStatus status) {
+        return switch (status) {
+            case QUEUED -> queuedTimeoutMs;
+            case SENT -> sentTimeoutMs;
+            case DELIVERED -> deliveredTimeoutMs;
+            default -> 0;
+        };
+    }
+
+    /** Sends with a live deadline. */
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * Starts handing expired deadlines to {@code onExpiry}, each at its expiry time. Deadlines
+     * tracked before the call are kept and fire as soon as they are due.
+     */
+    public synchronized void start(Consumer<Deadline> onExpiry) {
+        if (started) {
+            return;
+        }
+        started = true;
+        worker = new Thread(() -> run(onExpiry), "delivery-deadlines");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    synchronized void stop() {
+        started = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Removes and returns the earliest live deadline that is due, or null when none is.
+     */
+    Deadline pollExpired() {
+        Entry entry;
+        while ((entry = heap.poll()) != null) {
+            if (current.remove(entry.deadline.key(), entry)) {
+                return entry.deadline;
+            }
+        }
+        return null;
+    }
+
+    private void run(Consumer<Deadline> onExpiry) {
+        while (started) {
+            try {
+                Entry entry = heap.take();
+                if (!current.remove(entry.deadline.key(), entry)) {
+                    continue; // replaced by a later transition
+                }
+                onExpiry.accept(entry.deadline);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Delivery deadline handler failed: {}", e.toString());
+            }
+        }
+    }
+}
@@ -1,19 +1,37 @@
 package com.project.unifiedMarketingGateway.jobs;
 
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
 import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
 import com.project.unifiedMarketingGateway.enums.ReconciliationResult;
 import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.processor.DeliveryStateWriteBuffer;
 import com.project.unifiedMarketingGateway.processor.FallbackRouter;
 import com.project.unifiedMarketingGateway.repository.DeliveryStateRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import org.springframework.data.domain.Limit;
+
 import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
+/**
+ * Detects sends stuck in QUEUED, SENT or DELIVERED. Each send is handled when its deadline in
+ * {@link DeliveryDeadlineIndex} expires; the periodic scan of the table only remains as a
+ * low-frequency safety net for deadlines the index never saw.
+ * <p>
+ * Only the partitions this node leases through {@link PartitionLeaseManager} are reconciled
+ * here. The index of a partition is loaded when its lease is taken and then kept current from
+ * local transitions plus, on every lease tick, the rows other nodes changed since the last one.
+ */
 @Slf4j
 @Component
 public class DeliveryReconciliationJob {
@@ -23,11 +41,27 @@ public class DeliveryReconciliationJob {
     MetricsService metricsService;
     @Autowired
     FallbackRouter fallbackRouter;
+    @Autowired
+    DeliveryStateWriteBuffer writeBuffer;
+    @Autowired
+    DeliveryDeadlineIndex deadlineIndex;
+    @Autowired
+    PartitionLeaseManager leaseManager;
+    @Autowired
+    FallbackPolicy fallbackPolicy;
+
+    private static final List<DeliveryStatus> IN_FLIGHT =
+            List.of(DeliveryStatus.QUEUED, DeliveryStatus.SENT, DeliveryStatus.DELIVERED);
 
     private final long queuedTimeoutMs;
     private final long sentTimeoutMs;
     private final long deliveredTimeoutMs;
 
+    @Value("${reconciliation.pageSize:500}")
+    int pageSize;
+
+    private volatile long caughtUpTo;
+
     public DeliveryReconciliationJob(
             DeliveryStateRepository repository,
             @Value("${reconciliation.timeout.queued:5}") int queuedMinutes,
@@ -40,8 +74,61 @@ public class DeliveryReconciliationJob {
         this.deliveredTimeoutMs = Duration.ofMinutes(deliveredMinutes).toMillis();
     }
 
-    @Scheduled(fixedDelay = 300000) // every 5 minutes
+    /**
+     * Takes the first partition leases, which loads their deadlines, then starts firing them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startDeadlines() {
+        writeBuffer.flush();
+        caughtUpTo = System.currentTimeMillis();
+        leaseManager.start(this::onLeaseTick);
+        log.info("Delivery deadline index rebuilt with {} in-flight sends", deadlineIndex.size());
+        deadlineIndex.start(this::onDeadline);
+    }
+
+    void onLeaseTick(Set<Integer> acquired) {
+        long now = System.currentTimeMillis();
+        // overlap one renew interval for rows written behind or stamped by a node whose clock lags
+        long since = caughtUpTo - leaseManager.renewIntervalMillis;
+        caughtUpTo = now;
+
+        for (Integer partitionId : leaseManager.heldPartitions()) {
+            long updatedAfter = acquired.contains(partitionId) ? Long.MIN_VALUE : since;
+            for (DeliveryStatus status : IN_FLIGHT) {
+                forEachPage(partitionId, status, updatedAfter, Long.MAX_VALUE,
+                        e -> deadlineIndex.track(key(e), e.getStatus(), e.getUpdatedAtEpochMillis(), hopTimeoutMillis(e)));
+            }
+        }
+    }
+
+    /**
+     * Handles one expired deadline once the row confirms it: a transition still in the write
+     * buffer or made by another path wins over the deadline.
+     */
+    void onDeadline(DeliveryDeadlineIndex.Deadline deadline) {
+        writeBuffer.flush();
+        DeliveryDeadlineIndex.Key key = deadline.key();
+        repository.findByRequestIdAndChannelAndRecipientAndMediaType(
+                        key.requestId(), key.channel(), key.recipient(), key.mediaType())
+                .filter(leaseManager::owns)
+                .filter(e -> e.getStatus() == deadline.status())
+                .filter(e -> e.getUpdatedAtEpochMillis() + deadline.timeoutMillis() <= System.currentTimeMillis())
+                .ifPresent(e -> handle(e, resultFor(e.getStatus())));
+    }
+
+    private long hopTimeoutMillis(DeliveryStateEntity e) {
+        return e.getStatus() == DeliveryStatus.SENT
+                ? fallbackPolicy.hopTimeoutMillis(e.getRequestId(), e.getChannel())
+                : 0;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${reconciliation.safetyNetIntervalMillis:3600000}",
+            initialDelayString = "${reconciliation.safetyNetIntervalMillis:3600000}"
+    )
     public void reconcile() {
+        // buffered transitions first, so no row is judged on a state it already left
+        writeBuffer.flush();
         long now = System.currentTimeMillis();
 
         reconcileQueued(now);
@@ -50,39 +137,57 @@ public class DeliveryReconciliationJob {
     }
 
     private void reconcileQueued(long now) {
-        repository.findByStatus(DeliveryStatus.QUEUED)
-                .stream()
-                .filter(e -> isExpired(e, now, queuedTimeoutMs))
-                .forEach(e ->
-                        handle(e, ReconciliationResult.STUCK_QUEUED)
-                );
+        reconcileExpired(DeliveryStatus.QUEUED, now - queuedTimeoutMs, ReconciliationResult.STUCK_QUEUED);
     }
 
     private void reconcileSent(long now) {
-        repository.findByStatus(DeliveryStatus.SENT)
-                .stream()
-                .filter(e -> isExpired(e, now, sentTimeoutMs))
-                .forEach(e ->
-                        handle(e, ReconciliationResult.STUCK_SENT)
-                );
+        reconcileExpired(DeliveryStatus.SENT, now - sentTimeoutMs, ReconciliationResult.STUCK_SENT);
     }
 
     private void reconcileDelivered(long now) {
-        repository.findByStatus(DeliveryStatus.DELIVERED)
-                .stream()
-                .filter(e -> isExpired(e, now, deliveredTimeoutMs))
-                .forEach(e ->
-                        handle(e, ReconciliationResult.STUCK_DELIVERED)
-                );
+        reconcileExpired(DeliveryStatus.DELIVERED, now - deliveredTimeoutMs, ReconciliationResult.STUCK_DELIVERED);
     }
 
-    private boolean isExpired(
-            DeliveryStateEntity e,
-            long now,
-            long timeout
-    ) {
-        Long updatedAt = e.getUpdatedAtEpochMillis();
-        return updatedAt != null && (now - updatedAt) > timeout;
+    /**
+     * Walks the rows of the held partitions in {@code status} not updated since
+     * {@code updatedBefore}.
+     */
+    private void reconcileExpired(DeliveryStatus status, long updatedBefore, ReconciliationResult result) {
+        for (Integer partitionId : leaseManager.heldPartitions()) {
+            forEachPage(partitionId, status, Long.MIN_VALUE, updatedBefore, e -> handle(e, result));
+        }
+    }
+
+    /**
+     * Walks the rows of one partition in {@code status} updated in [updatedAfter, updatedBefore),
+     * one keyset page of {@code reconciliation.pageSize} rows at a time.
+     */
+    private void forEachPage(int partitionId, DeliveryStatus status, long updatedAfter, long updatedBefore,
+                             Consumer<DeliveryStateEntity> action) {
+        long afterUpdatedAt = updatedAfter;
+        long afterId = Long.MIN_VALUE;
+        List<DeliveryStateEntity> page;
+        do {
+            page = repository.findExpiredPage(partitionId, status, updatedBefore, afterUpdatedAt, afterId, Limit.of(pageSize));
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                DeliveryStateEntity last = page.get(page.size() - 1);
+                afterUpdatedAt = last.getUpdatedAtEpochMillis();
+                afterId = last.getId();
+            }
+        } while (page.size() == pageSize);
+    }
+
+    private static ReconciliationResult resultFor(DeliveryStatus status) {
+        return switch (status) {
+            case QUEUED -> ReconciliationResult.STUCK_QUEUED;
+            case SENT -> ReconciliationResult.STUCK_SENT;
+            default -> ReconciliationResult.STUCK_DELIVERED;
+        };
+    }
+
+    private static DeliveryDeadlineIndex.Key key(DeliveryStateEntity e) {
+        return new DeliveryDeadlineIndex.Key(e.getRequestId(), e.getChannel(), e.getRecipient(), e.getMediaType());
     }
 
     private void handle(
@@ -0,0 +1,185 @@
+package com.project.unifiedMarketingGateway.jobs;
+
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.repository.ReconciliationLeaseRepository;
+import com.project.unifiedMarketingGateway.repository.ReconciliationNodeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Splits reconciliation of delivery_state across the gateway nodes sharing the database. Rows
+ * hash into {@code reconciliation.partitions} partitions, each owned through a lease row of
+ * reconciliation_lease; a node reconciles only the partitions it holds.
+ * <p>
+ * Every {@code reconciliation.lease.renewIntervalMillis} a node heartbeats, renews its leases
+ * and moves towards its fair share of the partitions (all of them divided by the live nodes):
+ * it gives back leases above the share, so a joining node finds free ones, and takes unowned or
+ * expired ones below it, so the partitions of a dead node move once its leases run out.
+ */
+@Slf4j
+@Component
+public class PartitionLeaseManager {
+
+    @Autowired
+    ReconciliationLeaseRepository leaseRepository;
+    @Autowired
+    ReconciliationNodeRepository nodeRepository;
+
+    @Value("${reconciliation.partitions:64}")
+    int partitions;
+
+    @Value("${reconciliation.lease.durationMillis:30000}")
+    long leaseMillis;
+
+    @Value("${reconciliation.lease.renewIntervalMillis:10000}")
+    long renewIntervalMillis;
+
+    @Getter
+    String nodeId = defaultNodeId();
+
+    LongSupplier clock = System::currentTimeMillis;
+
+    private volatile Set<Integer> held = Set.of();
+    private boolean seeded;
+
+    private Scheduler scheduler;
+    private Disposable ticker;
+
+    /**
+     * Takes the first leases, then keeps them on a timer. {@code onAcquired} gets the
+     * partitions newly taken on each tick, the first ones included.
+     */
+    public synchronized void start(Consumer<Set<Integer>> onAcquired) {
+        if (ticker != null) {
+            return;
+        }
+        onAcquired.accept(tick());
+        scheduler = Schedulers.newSingle("reconciliation-leases", true);
+        ticker = Flux.interval(Duration.ofMillis(renewIntervalMillis), scheduler)
+                .subscribe(t -> {
+                    try {
+                        onAcquired.accept(tick());
+                    } catch (Exception e) {
+                        log.error("Reconciliation lease tick failed on {}: {}", nodeId, e.toString());
+                    }
+                });
+    }
+
+    @PreDestroy
+    synchronized void stop() {
+        if (ticker == null) {
+            return;
+        }
+        ticker.dispose();
+        scheduler.dispose();
+        ticker = null;
+        held = Set.of();
+        leaseRepository.releaseAll(nodeId);
+        nodeRepository.deleteById(nodeId);
+        log.info("Released the reconciliation leases of {}", nodeId);
+    }
+
+    public boolean owns(int partitionId) {
+        return held.contains(partitionId);
+    }
+
+    public boolean owns(DeliveryStateEntity e) {
+        return e.getPartitionId() != null && owns(e.getPartitionId());
+    }
+
+    public boolean owns(DeliveryDeadlineIndex.Key key) {
+        return owns(DeliveryStateEntity.partitionOf(key.requestId(), key.channel(), key.recipient(), key.mediaType(), partitions));
+    }
+
+    public Set<Integer> heldPartitions() {
+        return held;
+    }
+
+    /**
+     * One round of heartbeat, renewal and rebalancing; returns the partitions taken in it.
+     */
+    synchronized Set<Integer> tick() {
+        long now = clock.getAsLong();
+        seed();
+        nodeRepository.heartbeat(nodeId, now);
+        leaseRepository.renew(nodeId, now, now + leaseMillis);
+
+        Set<Integer> current = new HashSet<>(leaseRepository.findHeld(nodeId, now));
+        long liveNodes = Math.max(1, nodeRepository.countByHeartbeatAtEpochMillisGreaterThanEqual(now - leaseMillis));
+        int fairShare = (int) ((partitions + liveNodes - 1) / liveNodes);
+
+        List<Integer> surplus = new ArrayList<>(current);
+        Collections.sort(surplus);
+        for (int i = surplus.size() - 1; i >= 0 && current.size() > fairShare; i--) {
+            leaseRepository.release(surplus.get(i), nodeId);
+            current.remove(surplus.get(i));
+        }
+
+        Set<Integer> acquired = new HashSet<>();
+        if (current.size() < fairShare) {
+            List<Integer> free = new ArrayList<>(leaseRepository.findAcquirable(partitions, now));
+            Collections.shuffle(free); // nodes starting together do not all race for the same rows
+            for (Integer partitionId : free) {
+                if (current.size() >= fairShare) {
+                    break;
+                }
+                if (leaseRepository.acquire(partitionId, nodeId, now, now + leaseMillis) == 1) {
+                    current.add(partitionId);
+                }
+            }
+        }
+        for (Integer partitionId : current) {
+            if (!held.contains(partitionId)) {
+                acquired.add(partitionId);
+            }
+        }
+
+        if (!acquired.isEmpty() || current.size() != held.size()) {
+            log.info("Node {} holds {} of {} reconciliation partitions ({} live nodes)",
+                    nodeId, current.size(), partitions, liveNodes);
+        }
+        held = Set.copyOf(current);
+        return acquired;
+    }
+
+    private void seed() {
+        if (seeded) {
+            return;
+        }
+        if (leaseRepository.count() < partitions) {
+            for (int partitionId = 0; partitionId < partitions; partitionId++) {
+                leaseRepository.insertIfAbsent(partitionId);
+            }
+        }
+        seeded = true;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -1,5 +1,12 @@
 package com.project.unifiedMarketingGateway.metrics;
 
+import com.project.unifiedMarketingGateway.dispatch.DispatchEngine;
+import com.project.unifiedMarketingGateway.enums.Priority;
+import com.project.unifiedMarketingGateway.processor.DeliveryStateWriteBuffer;
+import com.project.unifiedMarketingGateway.senderPool.PooledSender;
+import com.project.unifiedMarketingGateway.senderPool.RecipientBudget;
+import com.project.unifiedMarketingGateway.senderPool.SenderPool;
+import com.project.unifiedMarketingGateway.store.WriteBehindQueue;
 import io.micrometer.core.instrument.*;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +27,9 @@ public class MetricsService {
     public static final String TAG_CHANNEL = "channel";
     public static final String TAG_MEDIA = "media";
     public static final String TAG_STATUS = "status";
+    public static final String TAG_PRIORITY = "priority";
+    public static final String TAG_SENDER = "sender";
+    public static final String TAG_OUTCOME = "outcome";
 
     public static final String METRIC_SENDS_TOTAL = "umg.sends.total";
     public static final String METRIC_SENDS_SUCCESS = "umg.sends.success";
@@ -29,6 +39,18 @@ public class MetricsService {
     public static final String METRIC_WEBHOOK_EVENTS = "umg.webhook.events";
     public static final String METRIC_IN_FLIGHT = "umg.inflight.requests";
     public static final String METRIC_RECONCILIATION = "umg.inflight.reconciliation";
+    public static final String METRIC_DISPATCH_QUEUE_DEPTH = "umg.dispatch.queue.depth";
+    public static final String METRIC_DISPATCH_WORKERS_BUSY = "umg.dispatch.workers.busy";
+    public static final String METRIC_CONCURRENCY_LIMIT = "umg.concurrency.limit";
+    public static final String METRIC_THROTTLE_PAUSES = "umg.throttle.pauses";
+    public static final String METRIC_SENDER_SENDS = "umg.sender.sends";
+    public static final String METRIC_SENDER_THROTTLES = "umg.sender.throttles";
+    public static final String METRIC_SENDER_IN_FLIGHT = "umg.sender.inflight";
+    public static final String METRIC_SENDER_PAUSED = "umg.sender.paused";
+    public static final String METRIC_SENDER_HEALTHY = "umg.sender.healthy";
+    public static final String METRIC_SENDER_BUDGET_USED = "umg.sender.budget.used";
+    public static final String METRIC_DELIVERY_STATE_PENDING = "umg.delivery.state.pending";
+    public static final String METRIC_WRITE_BEHIND_DROPPED = "umg.writebehind.dropped";
 
     private final Map<String, AtomicInteger> inFlightByChannel = new ConcurrentHashMap<>();
 
@@ -59,6 +81,20 @@ public class MetricsService {
         registry.counter(METRIC_SEND_RETRIES, TAG_CHANNEL, safe(channel)).increment();
     }
 
+    public void incrementThrottlePause(String channel) {
+        registry.counter(METRIC_THROTTLE_PAUSES, TAG_CHANNEL, safe(channel)).increment();
+    }
+
+    /** Per provider identity (bot, phone number, ...) outcome of a send, after retries. */
+    public void incrementSenderSend(String channel, String senderId, boolean success) {
+        registry.counter(METRIC_SENDER_SENDS, TAG_CHANNEL, safe(channel), TAG_SENDER, safe(senderId),
+                TAG_OUTCOME, success ? "success" : "failure").increment();
+    }
+
+    public void incrementSenderThrottle(String channel, String senderId) {
+        registry.counter(METRIC_SENDER_THROTTLES, TAG_CHANNEL, safe(channel), TAG_SENDER, safe(senderId)).increment();
+    }
+
     public void recordHttpLatency(String channel, String media, Duration duration) {
         Timer.builder(METRIC_HTTP_LATENCY)
                 .description("HTTP call latency to provider")
@@ -97,6 +133,71 @@ public class MetricsService {
         registry.counter(METRIC_RECONCILIATION, TAG_CHANNEL, safe(channel), TAG_STATUS, safe(resultStatus)).increment();
     }
 
+    public void registerDispatchEngine(DispatchEngine engine) {
+        for (Priority priority : Priority.values()) {
+            Gauge.builder(METRIC_DISPATCH_QUEUE_DEPTH, engine, e -> e.getQueueDepth(priority))
+                    .description("Sends waiting in the channel dispatch queue")
+                    .tag(TAG_CHANNEL, safe(engine.getChannel()))
+                    .tag(TAG_PRIORITY, safe(priority.getValue()))
+                    .baseUnit("sends")
+                    .register(registry);
+        }
+        Gauge.builder(METRIC_DISPATCH_WORKERS_BUSY, engine, DispatchEngine::getInFlight)
+                .description("Dispatch workers currently executing a send")
+                .tag(TAG_CHANNEL, safe(engine.getChannel()))
+                .baseUnit("workers")
+                .register(registry);
+        Gauge.builder(METRIC_CONCURRENCY_LIMIT, engine, DispatchEngine::getWorkerConcurrency)
+                .description("Current adaptive concurrency limit of the channel")
+                .tag(TAG_CHANNEL, safe(engine.getChannel()))
+                .baseUnit("workers")
+                .register(registry);
+    }
+
+    public void registerSenderPool(SenderPool pool) {
+        for (PooledSender sender : pool.getSenders()) {
+            Gauge.builder(METRIC_SENDER_IN_FLIGHT, sender, PooledSender::getInFlight)
+                    .description("Sends currently assigned to the provider identity")
+                    .tag(TAG_CHANNEL, safe(pool.getChannel()))
+                    .tag(TAG_SENDER, safe(sender.getId()))
+                    .baseUnit("sends")
+                    .register(registry);
+            Gauge.builder(METRIC_SENDER_PAUSED, sender, s -> s.getRateLimiter().isPaused() ? 1 : 0)
+                    .description("1 while the provider throttles the identity")
+                    .tag(TAG_CHANNEL, safe(pool.getChannel()))
+                    .tag(TAG_SENDER, safe(sender.getId()))
+                    .register(registry);
+            Gauge.builder(METRIC_SENDER_HEALTHY, sender, s -> s.isHealthy() ? 1 : 0)
+                    .description("0 while the identity is out of rotation after repeated failures")
+                    .tag(TAG_CHANNEL, safe(pool.getChannel()))
+                    .tag(TAG_SENDER, safe(sender.getId()))
+                    .register(registry);
+            if (sender.getBudget() != null) {
+                Gauge.builder(METRIC_SENDER_BUDGET_USED, sender.getBudget(), RecipientBudget::getUsed)
+                        .description("Unique recipients counted against the identity's budget")
+                        .tag(TAG_CHANNEL, safe(pool.getChannel()))
+                        .tag(TAG_SENDER, safe(sender.getId()))
+                        .baseUnit("recipients")
+                        .register(registry);
+            }
+        }
+    }
+
+    public void registerDeliveryStateBuffer(DeliveryStateWriteBuffer buffer) {
+        Gauge.builder(METRIC_DELIVERY_STATE_PENDING, buffer, DeliveryStateWriteBuffer::getPendingCount)
+                .description("Delivery state transitions waiting for the next write-behind flush")
+                .baseUnit("states")
+                .register(registry);
+    }
+
+    public void registerWriteBehindQueue(WriteBehindQueue<?> queue) {
+        FunctionCounter.builder(METRIC_WRITE_BEHIND_DROPPED, queue, WriteBehindQueue::getDroppedCount)
+                .description("Buffered rows dropped because they could not be written on their own")
+                .tag("queue", safe(queue.getName()))
+                .baseUnit("rows")
+                .register(registry);
+    }
+
     private String safe(String s) {
         return (s == null || s.isBlank()) ? "unknown" : s.toLowerCase();
     }
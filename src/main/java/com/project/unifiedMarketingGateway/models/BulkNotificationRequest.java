@@ -0,0 +1,16 @@
+package com.project.unifiedMarketingGateway.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+
+/**
+ * A bulk request as read off the wire: the message envelope (text, media, media types)
+ * plus a lazily-read stream of recipients that is never materialised on the heap.
+ */
+@Getter
+@AllArgsConstructor
+public class BulkNotificationRequest {
+    private final SendNotificationRequest envelope;
+    private final Flux<String> recipients;
+}
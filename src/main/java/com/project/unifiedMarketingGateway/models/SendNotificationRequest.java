@@ -1,6 +1,7 @@
 package com.project.unifiedMarketingGateway.models;
 
 import com.project.unifiedMarketingGateway.enums.MediaType;
+import com.project.unifiedMarketingGateway.enums.Priority;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,4 +21,7 @@ public class SendNotificationRequest {
     String videoCaption;
     List<String> recipientList;
     List<MediaType> mediaTypeList;
+    Priority priority;
+    // name of a configured fallback chain; the default chain when absent
+    String fallbackChain;
 }
@@ -0,0 +1,8 @@
+package com.project.unifiedMarketingGateway.processor;
+
+/**
+ * A send has failed for good: its retries are exhausted, or the provider reported it FAILED.
+ * Published by {@link DeliveryStateService} so a fallback can start right away instead of on
+ * the next reconciliation.
+ */
+public record DeliveryFailedEvent(String requestId, String channel, String recipient, String mediaType, String reason) {}
@@ -1,21 +1,48 @@
 package com.project.unifiedMarketingGateway.processor;
 
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.contexts.SendContext;
 import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
 import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.jobs.DeliveryDeadlineIndex;
+import com.project.unifiedMarketingGateway.jobs.PartitionLeaseManager;
 import com.project.unifiedMarketingGateway.repository.DeliveryStateRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
-
+import java.util.Optional;
+
+/**
+ * Delivery state of every send. Transitions of the send path are written behind through
+ * {@link DeliveryStateWriteBuffer}; webhook updates go straight to the database. Every
+ * transition also moves the send's reconciliation deadline in {@link DeliveryDeadlineIndex}
+ * when this node holds the send's partition. A FAILED transition publishes a
+ * {@link DeliveryFailedEvent}.
+ */
 @Service
 public class DeliveryStateService {
 
     @Autowired
     DeliveryStateRepository repository;
 
+    @Autowired
+    DeliveryStateWriteBuffer writeBuffer;
+
+    @Autowired
+    DeliveryDeadlineIndex deadlineIndex;
+
+    @Autowired
+    PartitionLeaseManager leaseManager;
+
+    @Autowired
+    FallbackPolicy fallbackPolicy;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
     private static final Map<DeliveryStatus, Integer> PRECEDENCE = Map.of(
             DeliveryStatus.CREATED, 0,
             DeliveryStatus.QUEUED, 1,
@@ -25,50 +52,70 @@ public class DeliveryStateService {
             DeliveryStatus.FAILED, -1 // terminal but special
     );
 
-    @Transactional
     public void markQueued(SendContext ctx) {
-        upsert(ctx, DeliveryStatus.QUEUED, null, null);
+        writeBuffer.enqueue(ctx, DeliveryStatus.QUEUED, null, null);
+        track(ctx, DeliveryStatus.QUEUED);
     }
 
-    @Transactional
     public void markSent(SendContext ctx, String providerMessageId) {
-        upsert(ctx, DeliveryStatus.SENT, providerMessageId, null);
+        writeBuffer.enqueue(ctx, DeliveryStatus.SENT, providerMessageId, null);
+        track(ctx, DeliveryStatus.SENT);
     }
 
-    @Transactional
     public void markFailed(SendContext ctx, String reason) {
-        upsert(ctx, DeliveryStatus.FAILED, null, reason);
+        writeBuffer.enqueue(ctx, DeliveryStatus.FAILED, null, reason);
+        track(ctx, DeliveryStatus.FAILED);
+        eventPublisher.publishEvent(new DeliveryFailedEvent(
+                ctx.getRequestId(), ctx.getChannel(), ctx.getRecipient(), ctx.getMethod(), reason));
     }
 
-    private void upsert(
-            SendContext ctx,
-            DeliveryStatus status,
-            String providerMessageId,
-            String failureReason
-    ) {
-        DeliveryStateEntity entity = repository
-                .findByRequestIdAndChannelAndRecipientAndMediaType(
-                        ctx.getRequestId(),
-                        ctx.getChannel(),
-                        ctx.getRecipient(),
-                        ctx.getMethod()
-                )
-                .orElseGet(() ->
-                        DeliveryStateEntity.builder()
-                                .requestId(ctx.getRequestId())
-                                .channel(ctx.getChannel())
-                                .recipient(ctx.getRecipient())
-                                .mediaType(ctx.getMethod())
-                                .createdAtEpochMillis(System.currentTimeMillis())
-                                .build()
-                );
-
-        entity.setStatus(status);
-        entity.setProviderMessageId(providerMessageId);
-        entity.setFailureReason(failureReason);
-        entity.setUpdatedAtEpochMillis(System.currentTimeMillis());
-
-        repository.save(entity);
+    private void track(SendContext ctx, DeliveryStatus status) {
+        DeliveryDeadlineIndex.Key key =
+                new DeliveryDeadlineIndex.Key(ctx.getRequestId(), ctx.getChannel(), ctx.getRecipient(), ctx.getMethod());
+        if (leaseManager.owns(key)) {
+            deadlineIndex.track(key, status, System.currentTimeMillis(),
+                    hopTimeoutMillis(ctx.getRequestId(), ctx.getChannel(), status));
+        }
+    }
+
+    private void track(DeliveryStateEntity entity) {
+        if (!leaseManager.owns(entity)) {
+            return;
+        }
+        deadlineIndex.track(
+                new DeliveryDeadlineIndex.Key(entity.getRequestId(), entity.getChannel(), entity.getRecipient(), entity.getMediaType()),
+                entity.getStatus(),
+                entity.getUpdatedAtEpochMillis(),
+                hopTimeoutMillis(entity.getRequestId(), entity.getChannel(), entity.getStatus()));
+    }
+
+    // only a SENT send waits on its fallback hop; the other statuses keep their own timeouts
+    private long hopTimeoutMillis(String requestId, String channel, DeliveryStatus status) {
+        return status == DeliveryStatus.SENT ? fallbackPolicy.hopTimeoutMillis(requestId, channel) : 0;
+    }
+
+    /**
+     * The send of {@code channel} that got {@code providerMessageId}, including one whose
+     * state is still buffered.
+     */
+    public Optional<DeliveryStateEntity> findByProviderMessageId(String channel, String providerMessageId) {
+        Optional<DeliveryStateEntity> entity = repository.findByChannelAndProviderMessageId(channel, providerMessageId);
+        if (entity.isEmpty() && writeBuffer.getPendingCount() > 0 && writeBuffer.flush() > 0) {
+            entity = repository.findByChannelAndProviderMessageId(channel, providerMessageId);
+        }
+        return entity;
+    }
+
+    /**
+     * A webhook can beat the flush of the SENT state carrying its message id: on a miss the
+     * buffer is flushed and the lookup repeated.
+     */
+    private Optional<DeliveryStateEntity> findByProviderMessageId(String providerMessageId) {
+        Optional<DeliveryStateEntity> entity = repository.findByProviderMessageId(providerMessageId);
+        if (entity.isEmpty() && writeBuffer.getPendingCount() > 0 && writeBuffer.flush() > 0) {
+            entity = repository.findByProviderMessageId(providerMessageId);
+        }
+        return entity;
     }
 
     @Transactional
@@ -76,11 +123,15 @@ public class DeliveryStateService {
             String providerMessageId,
             String reason
     ) {
-        repository.findByProviderMessageId(providerMessageId)
+        findByProviderMessageId(providerMessageId)
                 .ifPresent(entity -> {
                     entity.setStatus(DeliveryStatus.FAILED);
                     entity.setFailureReason(reason);
                     entity.setUpdatedAtEpochMillis(System.currentTimeMillis());
+                    track(entity);
+                    // delivered to listeners once this transaction has committed
+                    eventPublisher.publishEvent(new DeliveryFailedEvent(entity.getRequestId(),
+                            entity.getChannel(), entity.getRecipient(), entity.getMediaType(), reason));
                 });
     }
 
@@ -89,7 +140,7 @@ public class DeliveryStateService {
             String providerMessageId,
             DeliveryStatus incomingStatus
     ) {
-        repository.findByProviderMessageId(providerMessageId)
+        findByProviderMessageId(providerMessageId)
                 .ifPresent(entity -> {
 
                     DeliveryStatus current = entity.getStatus();
@@ -101,6 +152,7 @@ public class DeliveryStateService {
 
                     entity.setStatus(incomingStatus);
                     entity.setUpdatedAtEpochMillis(System.currentTimeMillis());
+                    track(entity);
                 });
     }
 }
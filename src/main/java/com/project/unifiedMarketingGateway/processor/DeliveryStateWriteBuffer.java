@@ -0,0 +1,152 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import com.project.unifiedMarketingGateway.contexts.SendContext;
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateBatchRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind buffer for the send path's delivery state transitions.
+ * <p>
+ * Transitions are coalesced per (request, channel, recipient, media): only the latest state
+ * of a row is kept, so a QUEUED row that turns SENT before the next flush is written once.
+ * The buffer is flushed as JDBC batches every {@code deliveryState.writeBehind.flushIntervalMillis},
+ * as soon as {@code maxBatchSize} rows are pending, and synchronously on shutdown. Flushes
+ * run one at a time, so a later state of a row never lands before an earlier one.
+ * <p>
+ * Readers that need every transition on disk (reconciliation, status queries, webhooks)
+ * call {@link #flush()} first.
+ */
+@Slf4j
+@Component
+public class DeliveryStateWriteBuffer {
+
+    private record Key(String requestId, String channel, String recipient, String mediaType) {}
+
+    @Autowired
+    DeliveryStateBatchRepository batchRepository;
+
+    @Autowired
+    MetricsService metricsService;
+
+    @Value("${deliveryState.writeBehind.maxBatchSize:500}")
+    private int maxBatchSize;
+
+    @Value("${deliveryState.writeBehind.flushIntervalMillis:200}")
+    private long flushIntervalMillis;
+
+    private final Map<Key, DeliveryStateEntity> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean sizeFlushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    private Scheduler scheduler;
+    private Disposable ticker;
+
+    @PostConstruct
+    void start() {
+        scheduler = Schedulers.newSingle("delivery-state-flush", true);
+        ticker = Flux.interval(Duration.ofMillis(flushIntervalMillis), scheduler)
+                .subscribe(tick -> flushQuietly());
+        metricsService.registerDeliveryStateBuffer(this);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.dispose();
+        scheduler.dispose();
+        int flushed = flush();
+        log.info("Flushed {} buffered delivery states on shutdown", flushed);
+    }
+
+    /**
+     * Records the latest state of the send in {@code ctx}; written on the next flush.
+     */
+    public void enqueue(SendContext ctx, DeliveryStatus status, String providerMessageId, String failureReason) {
+        long now = System.currentTimeMillis();
+        Key key = new Key(ctx.getRequestId(), ctx.getChannel(), ctx.getRecipient(), ctx.getMethod());
+        pending.compute(key, (k, state) -> {
+            if (state == null) {
+                state = DeliveryStateEntity.builder()
+                        .requestId(k.requestId())
+                        .channel(k.channel())
+                        .recipient(k.recipient())
+                        .mediaType(k.mediaType())
+                        .createdAtEpochMillis(now)
+                        .build();
+            }
+            state.setStatus(status);
+            state.setProviderMessageId(providerMessageId);
+            state.setFailureReason(failureReason);
+            state.setUpdatedAtEpochMillis(now);
+            return state;
+        });
+
+        if (pending.size() >= maxBatchSize && sizeFlushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                sizeFlushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes every pending state, in batches of {@code maxBatchSize}, and returns how many were
+     * written. States of a batch that fails go back into the buffer unless a newer state of
+     * the same row arrived meanwhile.
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            int written = 0;
+            List<Key> keys = new ArrayList<>(pending.keySet());
+            for (int from = 0; from < keys.size(); from += maxBatchSize) {
+                Map<Key, DeliveryStateEntity> batch = new HashMap<>();
+                for (Key key : keys.subList(from, Math.min(keys.size(), from + maxBatchSize))) {
+                    DeliveryStateEntity state = pending.remove(key);
+                    if (state != null) {
+                        batch.put(key, state);
+                    }
+                }
+                try {
+                    batchRepository.upsertAll(batch.values());
+                    written += batch.size();
+                } catch (RuntimeException e) {
+                    batch.forEach(pending::putIfAbsent);
+                    throw e;
+                }
+            }
+            return written;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Delivery state flush failed, {} states kept for the next attempt: {}",
+                    pending.size(), e.toString());
+        }
+    }
+}
@@ -17,7 +17,11 @@ public class DeliveryStatusQueryService {
     @Autowired
     DeliveryStateRepository repository;
 
+    @Autowired
+    DeliveryStateWriteBuffer writeBuffer;
+
     public DeliveryStatusResponse getStatus(String requestId) {
+        writeBuffer.flush();
 
         List<DeliveryStateEntity> entities =
                 repository.findByRequestId(requestId);
@@ -1,53 +1,142 @@
 package com.project.unifiedMarketingGateway.processor;
 
+import com.project.unifiedMarketingGateway.configs.FallbackChain;
 import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
-import com.project.unifiedMarketingGateway.processor.sms.SmsRequestProcessor;
-import com.project.unifiedMarketingGateway.repository.DeliveryStateRepository;
-import jakarta.transaction.Transactional;
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateBatchRepository;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateBatchRepository.FallbackClaim;
+import com.project.unifiedMarketingGateway.store.WriteBehindQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Re-sends a message on the next channel of its request's fallback chain ({@link FallbackPolicy}).
+ * Triggered right away by a {@link DeliveryFailedEvent} and by reconciliation for sends stuck
+ * without a final state; either way a send falls back at most once, decided by the fallback
+ * marker on its delivery_state row. A next hop whose {@link FallbackSender} is degraded is
+ * skipped for the one after it, unless every remaining hop is degraded.
+ * <p>
+ * Candidates are collected for {@code fallback.batch.windowMillis} (or until
+ * {@code fallback.batch.maxSize} are pending), claimed in one batch, and sent as one SMS
+ * fan-out per original request and channel, so an outage turns into a few paced fan-outs instead of one
+ * standalone send per recipient.
+ */
 @Service
 @Slf4j
 public class FallbackRouter {
 
     @Autowired
-    DeliveryStateRepository deliveryRepo;
+    DeliveryStateBatchRepository batchRepository;
     @Autowired FallbackPolicy policy;
-    @Autowired SmsRequestProcessor smsProcessor;
+    @Autowired List<FallbackSender> fallbackSenders;
 
     @Value("${whatsapp.fallbackRouting.isEnabled:false}")
     boolean isFallBackRoutingEnabled;
 
-    @Transactional
+    @Value("${fallback.batch.maxSize:500}")
+    int maxBatchSize;
+
+    @Value("${fallback.batch.windowMillis:100}")
+    long windowMillis;
+
+    private WriteBehindQueue<FallbackClaim> candidates;
+    private Map<String, FallbackSender> senders;
+
+    @PostConstruct
+    void start() {
+        senders = new HashMap<>();
+        for (FallbackSender sender : fallbackSenders) {
+            senders.put(sender.fallbackChannel(), sender);
+        }
+        for (FallbackChain chain : policy.allChains()) {
+            for (FallbackChain.Hop hop : chain.hops().subList(1, chain.hops().size())) {
+                if (!senders.containsKey(hop.channel())) {
+                    throw new IllegalStateException("Fallback chain " + chain.spec()
+                            + " falls back to " + hop.channel() + ", which cannot take fallbacks");
+                }
+            }
+        }
+
+        candidates = new WriteBehindQueue<>("fallback", this::dispatchAll, maxBatchSize,
+                Duration.ofMillis(windowMillis));
+        candidates.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        candidates.stop();
+    }
+
+    // after the commit of a webhook update; right away for send-path failures outside a transaction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeliveryFailed(DeliveryFailedEvent event) {
+        if (!isFallBackRoutingEnabled || !policy.shouldFallback(event.requestId(), event.channel(), DeliveryStatus.FAILED)) {
+            return;
+        }
+        fallback(event.requestId(), event.channel(), event.recipient(), event.mediaType());
+    }
+
     public void attemptFallback(DeliveryStateEntity state) {
 
-        if (isFallBackRoutingEnabled && !policy.shouldFallback(state)) {
+        if (!isFallBackRoutingEnabled || !policy.shouldFallback(state)) {
+            return;
+        }
+
+        fallback(state.getRequestId(), state.getChannel(), state.getRecipient(), state.getMediaType());
+    }
+
+    /** Dispatches every pending candidate now; returns how many there were. */
+    int flush() {
+        return candidates.flush();
+    }
+
+    private void fallback(String requestId, String channel, String recipient, String mediaType) {
+        candidates.add(new FallbackClaim(requestId, channel, recipient, mediaType, nextChannel(requestId, channel)));
+    }
+
+    private String nextChannel(String requestId, String channel) {
+        List<FallbackChain.Hop> hops = policy.nextHops(requestId, channel);
+        for (FallbackChain.Hop hop : hops) {
+            if (!senders.get(hop.channel()).isDegraded()) {
+                return hop.channel();
+            }
+        }
+        return hops.get(0).channel();
+    }
+
+    /**
+     * Marks the fallback of the whole batch first; whoever loses the race for a send does
+     * nothing for it. The sends won are grouped by fallback channel and original request.
+     */
+    private void dispatchAll(List<FallbackClaim> batch) {
+        Map<String, Map<String, List<String>>> byChannel = new LinkedHashMap<>();
+        for (FallbackClaim claim : batchRepository.claimFallbackAll(batch)) {
+            byChannel.computeIfAbsent(claim.fallbackChannel(), c -> new LinkedHashMap<>())
+                    .computeIfAbsent(claim.requestId(), id -> new ArrayList<>())
+                    .add(claim.recipient());
+        }
+        if (byChannel.isEmpty()) {
+            log.debug("Fallback already triggered for all {} candidates", batch.size());
             return;
         }
 
-        String fallbackChannel = policy.fallbackChannel(state.getChannel());
-
-        log.warn(
-                "Triggering fallback: requestId={} recipient={} {} → {}",
-                state.getRequestId(),
-                state.getRecipient(),
-                state.getChannel(),
-                fallbackChannel
-        );
-
-        // Mark fallback immediately to prevent races
-        state.setFallbackTriggered(true);
-        state.setFallbackChannel(fallbackChannel);
-        deliveryRepo.save(state);
-
-        // Dispatch fallback (async, fire-and-forget)
-        smsProcessor.processFallback(
-                state.getRequestId(),
-                state.getRecipient()
-        );
+        byChannel.forEach((channel, byRequest) -> byRequest.forEach((requestId, recipients) -> {
+            log.warn("Triggering fallback: requestId={} recipients={} → {}", requestId, recipients.size(), channel);
+            // Dispatch fallback (async, fire-and-forget)
+            senders.get(channel).processFallback(requestId, recipients);
+        }));
     }
 }
@@ -0,0 +1,18 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import java.util.List;
+
+/**
+ * A channel that sends can fall back to, as a hop of a fallback chain.
+ */
+public interface FallbackSender {
+
+    /** The channel this sender sends on, a {@code ClientType} value. */
+    String fallbackChannel();
+
+    /** True while the channel cannot send right now; a chain then skips to its next hop. */
+    boolean isDegraded();
+
+    /** Re-sends the sends of {@code requestId} that fell back to this channel. */
+    void processFallback(String requestId, List<String> recipients);
+}
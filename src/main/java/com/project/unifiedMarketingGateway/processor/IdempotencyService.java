@@ -1,90 +1,219 @@
 package com.project.unifiedMarketingGateway.processor;
 
-import com.project.unifiedMarketingGateway.entity.IdempotencyRecord;
 import com.project.unifiedMarketingGateway.enums.IdempotencyStatus;
-import com.project.unifiedMarketingGateway.repository.IdempotencyRepository;
-import jakarta.transaction.Transactional;
+import com.project.unifiedMarketingGateway.enums.StorageMode;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.repository.IdempotencyClaimRepository;
+import com.project.unifiedMarketingGateway.repository.IdempotencyClaimRepository.Transition;
+import com.project.unifiedMarketingGateway.store.WriteBehindQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.Optional;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Guards each (request, channel, recipient, media) send so it runs once. Every operation is
+ * a conditional statement, without loading the row first. Fan-outs claim their recipients in
+ * chunks, one database batch per chunk. Completions are queued and applied in batches (and
+ * before the next claim); a completion lost in a crash leaves the key IN_PROGRESS, which only
+ * blocks re-sending something that was sent. Failures release the key for a retry, so they
+ * are written right away, visible to every node and never lost.
+ * <p>
+ * In unified storage mode the claim lives on the send's delivery_state row and is completed
+ * or released by the delivery state write, so {@link #markCompleted} and {@link #markFailed}
+ * have nothing left to do.
+ */
+@Slf4j
 @Service
 public class IdempotencyService {
 
-    @Autowired IdempotencyRepository repository;
+    @Autowired IdempotencyClaimRepository claimRepository;
+    @Autowired MetricsService metricsService;
 
-    @Transactional
+    @Getter
+    @Value("${idempotency.claimChunkSize:500}")
+    private int claimChunkSize;
+
+    @Value("${storage.mode:split}")
+    private StorageMode storageMode;
+
+    @Value("${storage.writeBehind.maxBatchSize:500}")
+    private int transitionBatchSize;
+
+    @Value("${storage.writeBehind.flushIntervalMillis:200}")
+    private long transitionFlushIntervalMillis;
+
+    @Value("${storage.writeBehind.maxAttempts:5}")
+    private int transitionMaxAttempts;
+
+    private WriteBehindQueue<Transition> transitions;
+
+    @PostConstruct
+    void start() {
+        transitions = new WriteBehindQueue<>("idempotency-transition", claimRepository::transitionAll,
+                transitionBatchSize, Duration.ofMillis(transitionFlushIntervalMillis), transitionMaxAttempts);
+        transitions.start();
+        metricsService.registerWriteBehindQueue(transitions);
+    }
+
+    @PreDestroy
+    void stop() {
+        transitions.stop();
+    }
+
+    /**
+     * True if the caller may send: first attempt, or a retry of a FAILED attempt. False while
+     * another attempt is IN_PROGRESS or after it COMPLETED.
+     */
     public boolean tryStart(
             String requestId,
             String channel,
             String recipient,
             String mediaType
     ) {
-        Optional<IdempotencyRecord> existing =
-                repository.findByRequestIdAndChannelAndRecipientAndMediaType(
-                        requestId, channel, recipient, mediaType
-                );
-
-        if (existing.isPresent()) {
-            IdempotencyRecord record = existing.get();
+        flushTransitions();
+        try {
+            return !claimRepository.claim(requestId, channel, mediaType, List.of(recipient)).isEmpty();
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent first attempt inserted the row between our match and insert: it owns the send
+            log.debug("[{}] Concurrent claim for {} lost: {}", requestId, recipient, e.getMostSpecificCause().getMessage());
+            return false;
+        }
+    }
 
-            if (record.getStatus() == IdempotencyStatus.COMPLETED) {
-                return false;
+    /**
+     * {@link #tryStart} for many recipients at once: returns the recipients the caller may
+     * send to, in input order. Duplicates, in progress and completed recipients are left out.
+     */
+    public List<String> tryStartAll(
+            String requestId,
+            String channel,
+            List<String> recipients,
+            String mediaType
+    ) {
+        if (recipients.isEmpty()) {
+            return List.of();
+        }
+        flushTransitions();
+        try {
+            return claimRepository.claim(requestId, channel, mediaType, recipients);
+        } catch (DataIntegrityViolationException e) {
+            // the chunk raced another claimer and was rolled back; settle it one recipient at a time
+            log.debug("[{}] Concurrent chunk claim, claiming {} recipients one by one", requestId, recipients.size());
+            List<String> claimed = new ArrayList<>();
+            for (String recipient : recipients) {
+                if (tryStart(requestId, channel, recipient, mediaType)) {
+                    claimed.add(recipient);
+                }
             }
+            return claimed;
+        }
+    }
 
-            if (record.getStatus() == IdempotencyStatus.IN_PROGRESS) {
-                return false;
-            }
+    /**
+     * Claims a stream of recipients in chunks of {@code idempotency.claimChunkSize} and emits
+     * the claimed ones. The database work runs on the bounded elastic scheduler.
+     */
+    public Flux<String> claimAll(
+            String requestId,
+            String channel,
+            Flux<String> recipients,
+            String mediaType
+    ) {
+        return recipients
+                .buffer(claimChunkSize)
+                .concatMap(chunk -> Mono.fromCallable(() -> tryStartAll(requestId, channel, chunk, mediaType))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .concatMapIterable(claimed -> claimed);
+    }
 
-            // FAILED → reuse the same row
-            record.setStatus(IdempotencyStatus.IN_PROGRESS);
-            record.setCreatedAtEpochMillis(System.currentTimeMillis());
-            record.setCompletedAtEpochMillis(null);
-            repository.save(record);
+    /**
+     * {@link #claimAll} that records the claimed recipients in {@code claims} as they are
+     * claimed, so they can be released if the request is cancelled before they are sent.
+     */
+    public Flux<String> claimAll(
+            String requestId,
+            String channel,
+            Flux<String> recipients,
+            String mediaType,
+            PendingClaims claims
+    ) {
+        return recipients
+                .buffer(claimChunkSize)
+                .concatMap(chunk -> Mono.fromCallable(() -> {
+                            List<String> claimed = tryStartAll(requestId, channel, chunk, mediaType);
+                            claims.claimed(claimed, mediaType);
+                            return claimed;
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .concatMapIterable(claimed -> claimed);
+    }
 
-            return true;
-        }
+    /** Tracks the claims of one request whose sends have not started yet. */
+    public PendingClaims pendingClaims(String requestId, String channel) {
+        return new PendingClaims(this, requestId, channel);
+    }
 
-        // First-ever attempt → insert
-        IdempotencyRecord record = IdempotencyRecord.builder()
-                .requestId(requestId)
-                .channel(channel)
-                .recipient(recipient)
-                .mediaType(mediaType)
-                .status(IdempotencyStatus.IN_PROGRESS)
-                .createdAtEpochMillis(System.currentTimeMillis())
-                .build();
-
-        repository.save(record);
-        return true;
+    /**
+     * Releases claims whose sends never started, e.g. because the request was cancelled.
+     * Unlike {@link #markFailed} this applies in every storage mode: nothing else settles them.
+     */
+    public void releaseClaims(
+            String requestId,
+            String channel,
+            String mediaType,
+            List<String> recipients,
+            String reason
+    ) {
+        if (recipients.isEmpty()) {
+            return;
+        }
+        flushTransitions();
+        claimRepository.release(requestId, channel, mediaType, recipients, reason);
     }
 
-    @Transactional
     public void markCompleted(
             String requestId,
             String channel,
             String recipient,
             String mediaType
     ) {
-        repository.findByRequestIdAndChannelAndRecipientAndMediaType(
-                requestId, channel, recipient, mediaType
-        ).ifPresent(record -> {
-            record.setStatus(IdempotencyStatus.COMPLETED);
-            record.setCompletedAtEpochMillis(System.currentTimeMillis());
-        });
+        if (storageMode == StorageMode.UNIFIED) {
+            return;
+        }
+        transitions.add(new Transition(requestId, channel, recipient, mediaType,
+                IdempotencyStatus.IN_PROGRESS, IdempotencyStatus.COMPLETED, System.currentTimeMillis()));
     }
 
-    @Transactional
     public void markFailed(
             String requestId,
             String channel,
             String recipient,
             String mediaType
     ) {
-        repository.findByRequestIdAndChannelAndRecipientAndMediaType(
-                requestId, channel, recipient, mediaType
-        ).ifPresent(record -> record.setStatus(IdempotencyStatus.FAILED));
+        if (storageMode == StorageMode.UNIFIED) {
+            return;
+        }
+        // queued completions first, so a completed key is not released by a late failure
+        flushTransitions();
+        claimRepository.transitionAll(List.of(new Transition(requestId, channel, recipient, mediaType,
+                IdempotencyStatus.IN_PROGRESS, IdempotencyStatus.FAILED, null)));
     }
-}
 
+    private void flushTransitions() {
+        if (transitions.getPendingCount() > 0) {
+            transitions.flush();
+        }
+    }
+}
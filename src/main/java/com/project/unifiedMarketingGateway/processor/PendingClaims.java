@@ -0,0 +1,92 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import com.project.unifiedMarketingGateway.metrics.dto.SendResultDTO;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Claims of one bulk request whose sends have not started yet. When the request is cancelled
+ * (the client went away, the async request timed out) or its recipient stream fails, the
+ * claims that were not sent are released, so retrying the request sends to those recipients
+ * instead of finding them IN_PROGRESS for good. A send that has started keeps its claim and
+ * settles it as usual; queued sends whose claim was released are skipped.
+ */
+@Slf4j
+public class PendingClaims {
+
+    static final String CANCELLED_REASON = "bulk request cancelled before the send started";
+
+    private record Key(String recipient, String mediaType) {}
+
+    private final IdempotencyService idempotencyService;
+    private final String requestId;
+    private final String channel;
+    /** Guarded by this. */
+    private final Set<Key> pending = new LinkedHashSet<>();
+    /** Guarded by this. */
+    private boolean released;
+
+    PendingClaims(IdempotencyService idempotencyService, String requestId, String channel) {
+        this.idempotencyService = idempotencyService;
+        this.requestId = requestId;
+        this.channel = channel;
+    }
+
+    /** Records newly claimed recipients; released right away once the request was cancelled. */
+    void claimed(List<String> recipients, String mediaType) {
+        synchronized (this) {
+            if (!released) {
+                for (String recipient : recipients) {
+                    pending.add(new Key(recipient, mediaType));
+                }
+                return;
+            }
+        }
+        release(mediaType, recipients);
+    }
+
+    /** Wraps the send of a claimed recipient so it only runs while the claim is still held. */
+    public Supplier<Mono<SendResultDTO>> task(String recipient, RecipientSender sender) {
+        return () -> start(recipient, sender.method())
+                ? sender.apply(recipient)
+                : Mono.just(new SendResultDTO(recipient, false, null, CANCELLED_REASON));
+    }
+
+    synchronized boolean start(String recipient, String mediaType) {
+        return pending.remove(new Key(recipient, mediaType));
+    }
+
+    /** Releases every claim whose send has not started; later claims are released as they come. */
+    public void releaseUnstarted() {
+        Map<String, List<String>> byMediaType = new LinkedHashMap<>();
+        synchronized (this) {
+            released = true;
+            for (Key key : pending) {
+                byMediaType.computeIfAbsent(key.mediaType(), m -> new ArrayList<>()).add(key.recipient());
+            }
+            pending.clear();
+        }
+        byMediaType.forEach(this::release);
+    }
+
+    private void release(String mediaType, List<String> recipients) {
+        if (recipients.isEmpty()) {
+            return;
+        }
+        try {
+            idempotencyService.releaseClaims(requestId, channel, mediaType, recipients, CANCELLED_REASON);
+            log.info("[{}] Released {} unsent {} {} claims", requestId, recipients.size(), channel, mediaType);
+        } catch (RuntimeException e) {
+            log.error("[{}] Failed to release {} unsent {} {} claims: {}",
+                    requestId, recipients.size(), channel, mediaType, e.toString());
+        }
+    }
+}
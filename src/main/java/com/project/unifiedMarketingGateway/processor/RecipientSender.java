@@ -0,0 +1,17 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import com.project.unifiedMarketingGateway.metrics.dto.SendResultDTO;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Per-recipient send function of one media type of a request, with the method its sends
+ * are tracked under (idempotency key, delivery state, metrics).
+ */
+public record RecipientSender(String method, Function<String, Mono<SendResultDTO>> send) {
+
+    public Mono<SendResultDTO> apply(String recipient) {
+        return send.apply(recipient);
+    }
+}
@@ -3,10 +3,19 @@ package com.project.unifiedMarketingGateway.processor;
 import com.project.unifiedMarketingGateway.enums.MediaType;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
 public interface RequestProcessorInterface {
 
     public SendNotificationResponse processNotificationRequest(SendNotificationRequest sendNotificationRequest);
+
+    /**
+     * Dispatches the envelope's media to every recipient of the stream. Recipients are
+     * consumed with backpressure, so the returned Mono completes once the whole stream
+     * has been handed to the send pipeline.
+     */
+    public Mono<SendNotificationResponse> processBulkNotificationRequest(SendNotificationRequest envelope, Flux<String> recipients);
 }
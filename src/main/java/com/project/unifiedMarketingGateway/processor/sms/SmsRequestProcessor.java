@@ -1,21 +1,28 @@
 package com.project.unifiedMarketingGateway.processor.sms;
 
 import com.project.unifiedMarketingGateway.builders.SendNotificationResponseBuilder;
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.connectors.TwilioSmsConnector;
 import com.project.unifiedMarketingGateway.contexts.SendContext;
+import com.project.unifiedMarketingGateway.dispatch.DispatchEngine;
+import com.project.unifiedMarketingGateway.enums.Priority;
 import com.project.unifiedMarketingGateway.metrics.dto.SendResultDTO;
 import com.project.unifiedMarketingGateway.processor.DeliveryStateService;
+import com.project.unifiedMarketingGateway.processor.FallbackSender;
 import com.project.unifiedMarketingGateway.processor.IdempotencyService;
+import com.project.unifiedMarketingGateway.processor.PendingClaims;
+import com.project.unifiedMarketingGateway.processor.RecipientSender;
 import com.project.unifiedMarketingGateway.store.messageStore.SmsMessageStore;
-import com.twilio.rest.api.v2010.account.Message;
 import com.project.unifiedMarketingGateway.metrics.MetricsService;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationResponse;
 import com.project.unifiedMarketingGateway.processor.RequestProcessorInterface;
 import com.project.unifiedMarketingGateway.retryHandler.SmsReactiveRetryHandler;
+import com.project.unifiedMarketingGateway.senderPool.SenderPool;
 import com.project.unifiedMarketingGateway.validators.SmsTwilioSendNotificationRequestValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -24,9 +31,12 @@ import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
+import static com.project.unifiedMarketingGateway.constants.Constants.ERROR_DISPATCH_QUEUE_FULL;
+import static com.project.unifiedMarketingGateway.constants.Constants.ERROR_INVALID_BULK_REQUEST;
+import static com.project.unifiedMarketingGateway.constants.Constants.FALLBACK_TEXT_MESSAGE;
 import static com.project.unifiedMarketingGateway.constants.Constants.SEND_SMS_METHOD;
 import static com.project.unifiedMarketingGateway.constants.Constants.TEXT_MEDIA_DISABLED_ERROR;
 import static com.project.unifiedMarketingGateway.enums.ClientType.SMS;
@@ -34,7 +44,7 @@ import static com.project.unifiedMarketingGateway.enums.MediaType.TEXT;
 
 @Slf4j
 @Service
-public class SmsRequestProcessor implements RequestProcessorInterface {
+public class SmsRequestProcessor implements RequestProcessorInterface, FallbackSender {
 
     @Autowired TwilioSmsConnector smsConnector;
     @Autowired MetricsService metricsService;
@@ -50,9 +60,17 @@ public class SmsRequestProcessor implements RequestProcessorInterface {
     IdempotencyService idempotencyService;
     @Autowired
     DeliveryStateService deliveryStateService;
+    @Autowired
+    FallbackPolicy fallbackPolicy;
+
+    @Autowired
+    @Qualifier("smsDispatchEngine")
+    DispatchEngine dispatchEngine;
+
+    @Autowired
+    @Qualifier("smsSenderPool")
+    SenderPool fromNumberPool;
 
-    @Value("${sms.maxConcurrency:5}")
-    private int maxConcurrency;
     @Value("${sms.contentBasedResource.text.isEnabled:false}")
     private boolean isTextEnabled;
 
@@ -66,13 +84,19 @@ public class SmsRequestProcessor implements RequestProcessorInterface {
 
         List<String> recipientList = sendNotificationRequest.getRecipientList();
         String textMessage = sendNotificationRequest.getTextMessage();
+        Priority priority = Priority.orDefault(sendNotificationRequest.getPriority(), Priority.NORMAL);
+        if (!dispatchEngine.hasCapacityFor(priority, recipientList.size())) {
+            return responseBuilder.buildFailureResponse(ERROR_DISPATCH_QUEUE_FULL, null);
+        }
         String requestId = UUID.randomUUID().toString();
+        // once per request, before any of its sends can fail
+        fallbackPolicy.planFor(requestId, SMS.getValue(), sendNotificationRequest.getFallbackChain());
 
         boolean allQueued = false;
         List<String> mediaDisabledErrorList = new ArrayList<>();
 
         if(isTextEnabled)
-            allQueued = prepareAndSendMedia(recipientList, textMessage, requestId);
+            allQueued = prepareAndSendMedia(recipientList, textMessage, requestId, priority);
         else
             mediaDisabledErrorList.add(TEXT_MEDIA_DISABLED_ERROR);
 
@@ -83,7 +107,7 @@ public class SmsRequestProcessor implements RequestProcessorInterface {
         }
     }
 
-    private boolean prepareAndSendMedia(List<String> recipientList, String textMessage, String requestId) {
+    private boolean prepareAndSendMedia(List<String> recipientList, String textMessage, String requestId, Priority priority) {
         List<String> validRecipients = recipientList.stream()
                 .map(String::trim)
                 .filter(id -> !id.isEmpty())
@@ -93,52 +117,69 @@ public class SmsRequestProcessor implements RequestProcessorInterface {
             return false;
         }
 
-        int concurrency = Math.min(maxConcurrency, validRecipients.size());
+        Flux<Supplier<Mono<SendResultDTO>>> tasks = Flux.defer(() -> idempotencyService.claimAll(
+                        requestId, SMS.getValue(), Flux.fromIterable(validRecipients), SEND_SMS_METHOD))
+                .map(chatId -> () -> executeRequestReactive(chatId, textMessage, requestId));
 
-        Flux.fromIterable(validRecipients)
-                .flatMap(chatId -> executeRequestReactive(chatId, textMessage, requestId), concurrency)
-                .doOnSubscribe(s -> log.info(
-                        "Dispatching {} SMS sends (concurrency={})",
-                        validRecipients.size(), concurrency))
+        dispatchEngine.submitAll(priority, tasks)
                 .subscribe(
-                        result -> {
-                            if (result.isSuccess()) {
-                                log.info("[{}] SMS sent successfully", result.getChatId());
-                            } else {
-                                log.warn("[{}] SMS failed: {}", result.getChatId(), result.getErrorMessage());
-                            }
-                        },
-                        err -> log.error("SMS pipeline error: {}", err.toString()),
-                        () -> log.info("All SMS send requests dispatched")
+                        queued -> log.info("Queued {} SMS sends (queueDepth={})", queued, dispatchEngine.getQueueDepth()),
+                        err -> log.error("Failed to queue SMS sends: {}", err.toString())
                 );
 
         return true;
     }
 
-    private Mono<SendResultDTO> executeRequestReactive(String chatId, String textMessage, String requestId) {
-        Optional<SendContext> ctxOpt = preSendChecksAndRecords(chatId, requestId);
-        if (ctxOpt.isEmpty()) {
-            return Mono.just(
-                    new SendResultDTO(
-                            chatId,
-                            true,
-                            "DUPLICATE",
-                            null
-                    )
-            );
+    @Override
+    public Mono<SendNotificationResponse> processBulkNotificationRequest(SendNotificationRequest envelope, Flux<String> recipients) {
+        List<String> validationErrorList = requestValidator.validateBulkNotificationRequest(envelope);
+        if (!validationErrorList.isEmpty()) {
+            return Mono.just(responseBuilder.buildFailureResponse("Request Validation Failed: " + validationErrorList.toString(), null));
         }
 
-        SendContext ctx = ctxOpt.get();
+        String requestId = UUID.randomUUID().toString();
+        if (!isTextEnabled) {
+            return Mono.just(responseBuilder.buildFailureResponse("Notification request couldn't be processed." + List.of(TEXT_MEDIA_DISABLED_ERROR), requestId));
+        }
 
-        Mono<String> smsMono =
-                reactiveRetryHandler.withRetry(() ->
-                        Mono.fromCallable(() ->
-                                smsConnector.sendSms(ctx.getRecipient(), textMessage)
-                        ).map(Message::getSid)
-                );
+        fallbackPolicy.planFor(requestId, SMS.getValue(), envelope.getFallbackChain());
+        String textMessage = envelope.getTextMessage();
+        RecipientSender sender = new RecipientSender(SEND_SMS_METHOD,
+                chatId -> executeRequestReactive(chatId, textMessage, requestId));
+        PendingClaims claims = idempotencyService.pendingClaims(requestId, SMS.getValue());
+        Flux<Supplier<Mono<SendResultDTO>>> tasks = idempotencyService.claimAll(requestId, SMS.getValue(),
+                        recipients.map(String::trim).filter(id -> !id.isEmpty()), SEND_SMS_METHOD, claims)
+                .map(chatId -> claims.task(chatId, sender));
+
+        return dispatchEngine.submitAll(Priority.orDefault(envelope.getPriority(), Priority.BULK), tasks)
+                .doOnCancel(claims::releaseUnstarted)
+                .map(queued -> responseBuilder.buildSuccessResponse(
+                        "Bulk notification request added to queue successfully: sends=" + queued, requestId))
+                .onErrorResume(err -> {
+                    log.error("[{}] SMS bulk recipient stream aborted: {}", requestId, err.toString());
+                    claims.releaseUnstarted();
+                    return Mono.just(responseBuilder.buildFailureResponse(ERROR_INVALID_BULK_REQUEST + ": " + err.getMessage(), requestId));
+                });
+    }
+
+    /**
+     * Sends to a recipient that has already been claimed through the idempotency service.
+     */
+    private Mono<SendResultDTO> executeRequestReactive(String chatId, String textMessage, String requestId) {
+        SendContext ctx = preSendRecords(chatId, requestId);
+
+        // each from-number is paced on its own, the least loaded one takes the next message
+        Mono<String> smsMono = Mono.fromCallable(fromNumberPool::leastLoaded)
+                .flatMap(number -> number.track(reactiveRetryHandler.withRetry(() ->
+                                        number.getRateLimiter().acquire(ctx.getRecipient())
+                                                .then(dispatchEngine.getConcurrencyLimiter().measure(
+                                                        Mono.defer(() -> smsConnector.sendSms(number.getCredential(), ctx.getRecipient(), textMessage)))),
+                                number))
+                        .doOnNext(sid -> metricsService.incrementSenderSend(SMS.getValue(), number.getId(), true))
+                        .doOnError(err -> metricsService.incrementSenderSend(SMS.getValue(), number.getId(), false)));
 
         return smsMono
-                .subscribeOn(Schedulers.boundedElastic())
+                .publishOn(Schedulers.boundedElastic())
                 .map(sid -> {
                     recordSuccess(ctx, sid);
                     return new SendResultDTO(
@@ -161,7 +202,7 @@ public class SmsRequestProcessor implements RequestProcessorInterface {
                 });
     }
 
-    private Optional<SendContext> preSendChecksAndRecords(String chatId, String requestId) {
+    private SendContext preSendRecords(String chatId, String requestId) {
         SendContext ctx = SendContext.builder()
                 .channel(SMS.getValue())
                 .method(TEXT.getValue())
@@ -170,25 +211,13 @@ public class SmsRequestProcessor implements RequestProcessorInterface {
                 .requestId(requestId)
                 .build();
 
-        boolean allowed = idempotencyService.tryStart(
-                ctx.getRequestId(),
-                ctx.getChannel(),
-                ctx.getRecipient(),
-                ctx.getMethod()
-        );
-
-        if (!allowed) {
-            log.info("[{}] Duplicate request blocked for {}", ctx.getRequestId(), chatId);
-            return Optional.empty();
-        }
-
         metricsService.incrementSendAttempt(ctx.getChannel(), ctx.getMethod());
         metricsService.incrementInFlight(ctx.getChannel());
         smsMessageStore.storeQueued(chatId);
         deliveryStateService.markQueued(ctx);
 
         ctx.markStart();
-        return Optional.of(ctx);
+        return ctx;
     }
 
     private void recordSuccess(SendContext ctx, String sid) {
@@ -234,16 +263,36 @@ public class SmsRequestProcessor implements RequestProcessorInterface {
         deliveryStateService.markFailed(ctx, errorMessage);
     }
 
+    @Override
+    public String fallbackChannel() {
+        return SMS.getValue();
+    }
+
+    /** Degraded while no from-number can send, or while text, the only media a fallback sends, is disabled. */
+    @Override
+    public boolean isDegraded() {
+        return !isTextEnabled || fromNumberPool.isDegraded();
+    }
+
+    /**
+     * Re-sends as SMS text the sends of one request that fell back to SMS: one claim and one fan-out
+     * through the dispatch queue, paced like any other SMS request.
+     */
+    @Override
     public void processFallback(
             String requestId,
-            String recipient
+            List<String> recipients
     ) {
-        executeRequestReactive(
-                recipient,
-                "Fallback message",
-                requestId
-        ).subscribe();
+        Flux<Supplier<Mono<SendResultDTO>>> tasks = Flux.defer(() -> idempotencyService.claimAll(
+                        requestId, SMS.getValue(), Flux.fromIterable(recipients), SEND_SMS_METHOD))
+                .map(chatId -> () -> executeRequestReactive(chatId, FALLBACK_TEXT_MESSAGE, requestId));
+
+        dispatchEngine.submitAll(Priority.NORMAL, tasks)
+                .subscribe(
+                        queued -> log.info("[{}] Queued {} of {} fallback SMS sends (queueDepth={})",
+                                requestId, queued, recipients.size(), dispatchEngine.getQueueDepth()),
+                        err -> log.error("[{}] Failed to queue fallback SMS sends: {}", requestId, err.toString())
+                );
     }
 
 }
-
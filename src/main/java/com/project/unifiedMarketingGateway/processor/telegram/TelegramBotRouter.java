@@ -0,0 +1,92 @@
+package com.project.unifiedMarketingGateway.processor.telegram;
+
+import com.project.unifiedMarketingGateway.cache.ExpiringCache;
+import com.project.unifiedMarketingGateway.connectors.TelegramHttpConnector;
+import com.project.unifiedMarketingGateway.entity.TelegramChatBinding;
+import com.project.unifiedMarketingGateway.repository.TelegramChatBindingRepository;
+import com.project.unifiedMarketingGateway.senderPool.PooledSender;
+import com.project.unifiedMarketingGateway.senderPool.SenderPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Picks the bot that sends to a chat.
+ * <p>
+ * A chat stays with the bot it was first bound to; the binding is stored in the database so
+ * every node agrees on it, and cached in memory so the hot path does not hit the database.
+ * A bot can only message users who started it, so chats are never spread over the pool:
+ * chats without a binding are bound to the primary bot ({@code telegram.bot.token}, or the
+ * first of {@code telegram.bot.tokens}), which is the bot every chat talked to before the
+ * pool existed. Subscribers of the other bots have to be bound up front, e.g. by inserting
+ * into {@code telegram_chat_binding}. A chat bound to a bot that is no longer configured
+ * cannot be reached at all; its sends fail with {@link UnreachableChatException}.
+ */
+@Slf4j
+@Component
+public class TelegramBotRouter {
+
+    @Autowired
+    @Qualifier("telegramSenderPool")
+    SenderPool botPool;
+
+    @Autowired
+    TelegramChatBindingRepository bindingRepository;
+
+    @Autowired
+    @Qualifier("telegramChatBindingCache")
+    ExpiringCache<String, String> bindingCache;
+
+    @Value("${telegram.bot.token:}")
+    String primaryBotToken;
+
+    /** A chat bound to a bot that is not in the pool anymore. */
+    public static class UnreachableChatException extends IllegalStateException {
+        public UnreachableChatException(String chatId, String botId) {
+            super("Chat " + chatId + " subscribed to bot " + botId + " which is not configured anymore");
+        }
+    }
+
+    public PooledSender botFor(String chatId) {
+        String botId = bindingCache.getIfPresent(chatId);
+        if (botId == null) {
+            botId = bindingRepository.findById(chatId)
+                    .map(TelegramChatBinding::getBotId)
+                    .orElseGet(() -> bind(chatId));
+            bindingCache.put(chatId, botId);
+        }
+        String boundBotId = botId;
+        return botPool.get(boundBotId).orElseThrow(() -> {
+            log.warn("Chat {} is bound to bot {} which is not configured anymore", chatId, boundBotId);
+            return new UnreachableChatException(chatId, boundBotId);
+        });
+    }
+
+    /** The bot chats without a binding belong to. */
+    public PooledSender primaryBot() {
+        if (primaryBotToken != null && !primaryBotToken.isBlank()) {
+            PooledSender primary = botPool.get(TelegramHttpConnector.botId(primaryBotToken.trim())).orElse(null);
+            if (primary != null) {
+                return primary;
+            }
+        }
+        return botPool.getSenders().get(0);
+    }
+
+    private String bind(String chatId) {
+        String botId = primaryBot().getId();
+        try {
+            bindingRepository.bind(chatId, botId, System.currentTimeMillis());
+            return botId;
+        } catch (DataIntegrityViolationException e) {
+            // another node bound the chat first, use its binding
+            return bindingRepository.findById(chatId)
+                    .map(TelegramChatBinding::getBotId)
+                    .orElse(botId);
+        }
+    }
+}
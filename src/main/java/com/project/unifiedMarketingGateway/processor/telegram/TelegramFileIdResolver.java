@@ -0,0 +1,134 @@
+package com.project.unifiedMarketingGateway.processor.telegram;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.unifiedMarketingGateway.builders.PayloadTemplate;
+import com.project.unifiedMarketingGateway.cache.ExpiringCache;
+import com.project.unifiedMarketingGateway.connectors.TelegramHttpConnector;
+import com.project.unifiedMarketingGateway.retryHandler.TelegramReactiveRetryHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static com.project.unifiedMarketingGateway.constants.Constants.PHOTO;
+
+/**
+ * Sends Telegram media so that the file is fetched by Telegram once per bot and URL.
+ * <p>
+ * The first send of a URL goes out with the URL; the {@code file_id} from its response is
+ * cached (per bot, since file ids are only valid for the bot that obtained them) and every
+ * later send of that URL references the file id instead, which is a metadata-only call.
+ * Sends racing the first one wait for it instead of making Telegram download the file again.
+ * If it fails on its own chat, one of them loads again. If it fails because the bot is throttled
+ * or Telegram is down, they fail with the same error, so their retries wait out the pause
+ * before loading again instead of all uploading by URL at once.
+ */
+@Slf4j
+@Component
+public class TelegramFileIdResolver {
+
+    @Autowired
+    TelegramHttpConnector telegramHttpConnector;
+
+    @Autowired
+    @Qualifier("telegramFileIdCache")
+    ExpiringCache<String, String> fileIdCache;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    TelegramReactiveRetryHandler reactiveRetryHandler;
+
+    /**
+     * Per-request media sender.
+     *
+     * @param method      sendPhoto / sendVideo
+     * @param mediaField  payload field of the media, {@code photo} or {@code video}
+     * @param mediaUrl    url of the media as given in the request
+     * @param templateFor builds the request payload template for a media reference (url or file id)
+     */
+    public MediaSender forMedia(String method, String mediaField, String mediaUrl,
+                                Function<String, PayloadTemplate> templateFor) {
+        return new MediaSender(method, mediaField, mediaUrl, templateFor);
+    }
+
+    public class MediaSender {
+
+        private final String method;
+        private final String mediaField;
+        private final String mediaUrl;
+        private final Function<String, PayloadTemplate> templateFor;
+        private final Map<String, PayloadTemplate> templates = new ConcurrentHashMap<>();
+
+        private MediaSender(String method, String mediaField, String mediaUrl, Function<String, PayloadTemplate> templateFor) {
+            this.method = method;
+            this.mediaField = mediaField;
+            this.mediaUrl = mediaUrl;
+            this.templateFor = templateFor;
+        }
+
+        /** Sends to {@code chatId} as the bot owning {@code botToken}. */
+        public Mono<String> send(String botToken, String chatId) {
+            String key = TelegramHttpConnector.botId(botToken) + "|" + mediaUrl;
+            AtomicBoolean loader = new AtomicBoolean();
+            AtomicReference<String> ownBody = new AtomicReference<>();
+
+            return fileId(key, botToken, chatId, loader, ownBody)
+                    .flatMap(fileId -> ownBody.get() != null
+                            ? Mono.just(ownBody.get())
+                            : sendWith(botToken, fileId, chatId))
+                    .switchIfEmpty(Mono.defer(() -> ownBody.get() != null
+                            ? Mono.just(ownBody.get())
+                            : sendWith(botToken, mediaUrl, chatId)));
+        }
+
+        private Mono<String> fileId(String key, String botToken, String chatId,
+                                    AtomicBoolean loader, AtomicReference<String> ownBody) {
+            return fileIdCache.getOrLoad(key, () -> {
+                        loader.set(true);
+                        return sendWith(botToken, mediaUrl, chatId)
+                                .doOnNext(ownBody::set)
+                                .flatMap(body -> Mono.justOrEmpty(extractFileId(body)));
+                    })
+                    .onErrorResume(err -> {
+                        // the first send's failure belongs to its own chat, and a throttled bot holds everybody
+                        if (loader.get() || reactiveRetryHandler.isRetryable(err)) {
+                            return Mono.error(err);
+                        }
+                        return fileId(key, botToken, chatId, loader, ownBody);
+                    });
+        }
+
+        private Mono<String> sendWith(String botToken, String mediaRef, String chatId) {
+            PayloadTemplate template = templates.computeIfAbsent(mediaRef, templateFor);
+            return telegramHttpConnector.sendMarketingRequest(botToken, method, template, chatId);
+        }
+
+        /** photo: the largest size is last in {@code result.photo}; video: {@code result.video.file_id}. */
+        private String extractFileId(String body) {
+            try {
+                JsonNode media = objectMapper.readTree(body).path("result").path(mediaField);
+                if (PHOTO.equals(mediaField) && media.isArray() && !media.isEmpty()) {
+                    media = media.get(media.size() - 1);
+                }
+                String fileId = media.path("file_id").asText(null);
+                if (fileId == null) {
+                    log.debug("No {} file_id in Telegram response, url will be used for every send", mediaField);
+                }
+                return fileId;
+            } catch (Exception e) {
+                log.warn("Failed to parse file_id from Telegram response: {}", e.toString());
+                return null;
+            }
+        }
+    }
+}
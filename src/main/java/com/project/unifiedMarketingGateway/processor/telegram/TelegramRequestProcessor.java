@@ -1,23 +1,32 @@
 package com.project.unifiedMarketingGateway.processor.telegram;
 
+import com.project.unifiedMarketingGateway.builders.PayloadTemplate;
 import com.project.unifiedMarketingGateway.builders.TelegramPayloadBuilder;
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.connectors.TelegramHttpConnector;
 import com.project.unifiedMarketingGateway.contexts.SendContext;
+import com.project.unifiedMarketingGateway.dispatch.DispatchEngine;
 import com.project.unifiedMarketingGateway.metrics.dto.SendResultDTO;
 import com.project.unifiedMarketingGateway.enums.MediaType;
+import com.project.unifiedMarketingGateway.enums.Priority;
 import com.project.unifiedMarketingGateway.metrics.MetricsService;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationResponse;
 import com.project.unifiedMarketingGateway.processor.DeliveryStateService;
+import com.project.unifiedMarketingGateway.processor.FallbackSender;
 import com.project.unifiedMarketingGateway.processor.IdempotencyService;
+import com.project.unifiedMarketingGateway.processor.PendingClaims;
+import com.project.unifiedMarketingGateway.processor.RecipientSender;
 import com.project.unifiedMarketingGateway.processor.RequestProcessorInterface;
 import com.project.unifiedMarketingGateway.builders.SendNotificationResponseBuilder;
 import com.project.unifiedMarketingGateway.store.responseStore.TelegramResponseStore;
 import com.project.unifiedMarketingGateway.retryHandler.TelegramReactiveRetryHandler;
+import com.project.unifiedMarketingGateway.senderPool.SenderPool;
 import com.project.unifiedMarketingGateway.validators.TelegramSendNotificationRequestValidator;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -25,14 +34,15 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 import static com.project.unifiedMarketingGateway.constants.Constants.*;
 import static com.project.unifiedMarketingGateway.enums.ClientType.TELEGRAM;
 
 @Slf4j
 @Service
-public class TelegramRequestProcessor implements RequestProcessorInterface {
+public class TelegramRequestProcessor implements RequestProcessorInterface, FallbackSender {
 
     @Autowired
     TelegramHttpConnector telegramHttpConnector;
@@ -57,9 +67,22 @@ public class TelegramRequestProcessor implements RequestProcessorInterface {
     IdempotencyService idempotencyService;
     @Autowired
     DeliveryStateService deliveryStateService;
+    @Autowired
+    FallbackPolicy fallbackPolicy;
 
-    @Value("${telegram.maxConcurrency:5}")
-    private int maxConcurrency;
+    @Autowired
+    @Qualifier("telegramDispatchEngine")
+    DispatchEngine dispatchEngine;
+
+    @Autowired
+    TelegramBotRouter botRouter;
+
+    @Autowired
+    @Qualifier("telegramSenderPool")
+    SenderPool botPool;
+
+    @Autowired
+    TelegramFileIdResolver fileIdResolver;
 
     @Value("${telegram.contentBasedResource.text.isEnabled:false}")
     private boolean isTextEnabled;
@@ -82,46 +105,23 @@ public class TelegramRequestProcessor implements RequestProcessorInterface {
         List<String> recipientList = sendNotificationRequest.getRecipientList();
         List<MediaType> mediaTypeList = sendNotificationRequest.getMediaTypeList();
 
-        String textMessage = sendNotificationRequest.getTextMessage();
-        String imageUrl = sendNotificationRequest.getImageUrl();
-        String imageCaption = sendNotificationRequest.getImageCaption();
-        String videoUrl = sendNotificationRequest.getVideoUrl();
-        String videoCaption = sendNotificationRequest.getVideoCaption();
+        Priority priority = Priority.orDefault(sendNotificationRequest.getPriority(), Priority.NORMAL);
+
+        if (!dispatchEngine.hasCapacityFor(priority, recipientList.size() * mediaTypeList.size())) {
+            return responseBuilder.buildFailureResponse(ERROR_DISPATCH_QUEUE_FULL, null);
+        }
+
         String requestId = UUID.randomUUID().toString();
+        // once per request, before any of its sends can fail
+        fallbackPolicy.planFor(requestId, TELEGRAM.getValue(), sendNotificationRequest.getFallbackChain());
 
         boolean allQueued = true;
         List<String> mediaDisabledErrorList = new ArrayList<>();
 
         // iterate media types and queue work (synchronous control only indicates queuing success)
         for (MediaType mediaType : mediaTypeList) {
-            boolean ok;
-            switch (mediaType) {
-                case TEXT -> {
-                    if(isTextEnabled)
-                        ok = prepareAndSendTextMedia(recipientList, textMessage, requestId);
-                    else {
-                        mediaDisabledErrorList.add(TEXT_MEDIA_DISABLED_ERROR);
-                        ok = false;
-                    }
-                }
-                case IMAGE -> {
-                    if(isImageEnabled)
-                        ok = prepareAndSendImageMedia(recipientList, imageUrl, imageCaption, requestId);
-                    else {
-                        mediaDisabledErrorList.add(IMAGE_MEDIA_DISABLED_ERROR);
-                        ok = false;
-                    }
-                }
-                case VIDEO -> {
-                    if(isVideoEnabled)
-                        ok = prepareAndSendVideoMedia(recipientList, videoUrl, videoCaption, requestId);
-                    else {
-                        mediaDisabledErrorList.add(VIDEO_MEDIA_DISABLED_ERROR);
-                        ok = false;
-                    }
-                }
-                default -> ok = false;
-            }
+            RecipientSender sender = senderFor(mediaType, sendNotificationRequest, requestId, mediaDisabledErrorList);
+            boolean ok = sender != null && prepareAndSendMedia(recipientList, sender, requestId, mediaType, priority);
             allQueued = allQueued && ok;
         }
 
@@ -132,51 +132,123 @@ public class TelegramRequestProcessor implements RequestProcessorInterface {
         }
     }
 
-    private boolean prepareAndSendMedia(List<String> recipientList,
-            Function<String, Map<String, Object>> payloadForChat,
-            String method, String requestId) {
-        int concurrency = Math.min(maxConcurrency, recipientList.size());
+    @Override
+    public Mono<SendNotificationResponse> processBulkNotificationRequest(@NonNull SendNotificationRequest envelope, @NonNull Flux<String> recipients) {
+        List<String> validationErrorList = requestValidator.validateBulkNotificationRequest(envelope);
+        if (!validationErrorList.isEmpty()) {
+            return Mono.just(responseBuilder.buildFailureResponse("Request Validation Failed: " + validationErrorList.toString(), null));
+        }
+
+        String requestId = UUID.randomUUID().toString();
+        fallbackPolicy.planFor(requestId, TELEGRAM.getValue(), envelope.getFallbackChain());
+        List<String> mediaDisabledErrorList = new ArrayList<>();
+        List<RecipientSender> senders = new ArrayList<>();
+        for (MediaType mediaType : envelope.getMediaTypeList()) {
+            RecipientSender sender = senderFor(mediaType, envelope, requestId, mediaDisabledErrorList);
+            if (sender != null) senders.add(sender);
+        }
+        if (!mediaDisabledErrorList.isEmpty()) {
+            return Mono.just(responseBuilder.buildFailureResponse("Notification request couldn't be processed." + mediaDisabledErrorList.toString(), requestId));
+        }
 
-        Flux.fromIterable(recipientList)
+        PendingClaims claims = idempotencyService.pendingClaims(requestId, TELEGRAM.getValue());
+        // claim each chunk of chats once per media type, only newly claimed sends are queued
+        Flux<Supplier<Mono<SendResultDTO>>> tasks = recipients
                 .map(String::trim)
                 .filter(id -> !id.isEmpty())
-                .flatMap(chatId -> {
-                    Map<String, Object> payload = payloadForChat.apply(chatId);
-                    return executeRequestReactive(chatId, payload, method, requestId);
-                }, concurrency)
-                .doOnSubscribe(s -> log.debug("Dispatching {} sends (method={} concurrency={})",
-                        recipientList.size(), method, concurrency))
+                .buffer(idempotencyService.getClaimChunkSize())
+                .concatMap(chunk -> Flux.fromIterable(senders)
+                        .concatMap(sender -> idempotencyService.claimAll(requestId, TELEGRAM.getValue(),
+                                        Flux.fromIterable(chunk), sender.method(), claims)
+                                .map(chatId -> claims.task(chatId, sender))));
+
+        return dispatchEngine.submitAll(Priority.orDefault(envelope.getPriority(), Priority.BULK), tasks)
+                .doOnCancel(claims::releaseUnstarted)
+                .map(queued -> responseBuilder.buildSuccessResponse(
+                        "Bulk notification request added to queue successfully: sends=" + queued, requestId))
+                .onErrorResume(err -> {
+                    log.error("[{}] Bulk recipient stream aborted: {}", requestId, err.toString());
+                    claims.releaseUnstarted();
+                    return Mono.just(responseBuilder.buildFailureResponse(ERROR_INVALID_BULK_REQUEST + ": " + err.getMessage(), requestId));
+                });
+    }
+
+    /**
+     * Resolves the per-recipient sender for a media type, or null (recording the
+     * reason) when the media type is disabled for Telegram. The payload is serialized once
+     * here; each send only splices in its chat id. Images and videos go through the file_id
+     * cache so Telegram fetches the media once, not once per chat.
+     */
+    private RecipientSender senderFor(MediaType mediaType, SendNotificationRequest request,
+            String requestId, List<String> mediaDisabledErrorList) {
+        switch (mediaType) {
+            case TEXT -> {
+                if(isTextEnabled) {
+                    PayloadTemplate template = payloadBuilder.buildTextTemplate(request.getTextMessage());
+                    return new RecipientSender(TELEGRAM_SEND_MESSAGE_METHOD, chatId -> executeRequestReactive(chatId,
+                            (botToken, id) -> telegramHttpConnector.sendMarketingRequest(botToken, TELEGRAM_SEND_MESSAGE_METHOD, template, id),
+                            TELEGRAM_SEND_MESSAGE_METHOD, requestId));
+                }
+                mediaDisabledErrorList.add(TEXT_MEDIA_DISABLED_ERROR);
+            }
+            case IMAGE -> {
+                if(isImageEnabled) {
+                    TelegramFileIdResolver.MediaSender media = fileIdResolver.forMedia(TELEGRAM_SEND_PHOTO_METHOD, PHOTO,
+                            request.getImageUrl(), ref -> payloadBuilder.buildImageTemplate(ref, request.getImageCaption()));
+                    return new RecipientSender(TELEGRAM_SEND_PHOTO_METHOD,
+                            chatId -> executeRequestReactive(chatId, media::send, TELEGRAM_SEND_PHOTO_METHOD, requestId));
+                }
+                mediaDisabledErrorList.add(IMAGE_MEDIA_DISABLED_ERROR);
+            }
+            case VIDEO -> {
+                if(isVideoEnabled) {
+                    TelegramFileIdResolver.MediaSender media = fileIdResolver.forMedia(TELEGRAM_SEND_VIDEO_METHOD, VIDEO,
+                            request.getVideoUrl(), ref -> payloadBuilder.buildVideoTemplate(ref, request.getVideoCaption()));
+                    return new RecipientSender(TELEGRAM_SEND_VIDEO_METHOD,
+                            chatId -> executeRequestReactive(chatId, media::send, TELEGRAM_SEND_VIDEO_METHOD, requestId));
+                }
+                mediaDisabledErrorList.add(VIDEO_MEDIA_DISABLED_ERROR);
+            }
+        }
+        return null;
+    }
+
+    private boolean prepareAndSendMedia(List<String> recipientList, RecipientSender sender,
+            String requestId, MediaType mediaType, Priority priority) {
+        Flux<String> chatIds = Flux.fromIterable(recipientList)
+                .map(String::trim)
+                .filter(id -> !id.isEmpty());
+        Flux<Supplier<Mono<SendResultDTO>>> tasks = Flux.defer(() -> idempotencyService.claimAll(
+                        requestId, TELEGRAM.getValue(), chatIds, sender.method()))
+                .map(chatId -> () -> sender.apply(chatId));
+
+        dispatchEngine.submitAll(priority, tasks)
                 .subscribe(
-                        result -> {
-                            if (result.isSuccess()) {
-                                log.info("[{}] sent successfully", result.getChatId());
-                            } else {
-                                log.warn("[{}] failed: {}", result.getChatId(), result.getErrorMessage());
-                            }
-                        },
-                        err -> log.error("Reactive pipeline error (should not cancel others): {}", err.toString()),
-                        () -> log.info("All send requests dispatched for method {}", method)
+                        queued -> log.debug("Queued {} sends (media={} queueDepth={})",
+                                queued, mediaType, dispatchEngine.getQueueDepth()),
+                        err -> log.error("Failed to queue sends for media {}: {}", mediaType, err.toString())
                 );
 
         return true;
     }
 
-    private Mono<SendResultDTO> executeRequestReactive(String chatId, Map<String, Object> payload, String method, String requestId) {
-        Optional<SendContext> ctxOpt = preSendChecksAndRecords(chatId, method, requestId);
-        if (ctxOpt.isEmpty()) {
-            return Mono.just(
-                    new SendResultDTO(
-                            chatId,
-                            true,
-                            "DUPLICATE",
-                            null
-                    )
-            );
-        }
-        SendContext ctx = ctxOpt.get();
+    /**
+     * Sends to a chat that has already been claimed through the idempotency service.
+     *
+     * @param providerCall makes the provider call for (bot token, chat id)
+     */
+    private Mono<SendResultDTO> executeRequestReactive(String chatId, BiFunction<String, String, Mono<String>> providerCall,
+            String method, String requestId) {
+        SendContext ctx = preSendRecords(chatId, method, requestId);
 
 
-        Mono<String> httpCall = reactiveRetryHandler.withRetry(() -> telegramHttpConnector.sendMarketingRequest(method, payload));
+        // the chat's bot is resolved inside the pipeline so a binding lookup failure fails this send only
+        Mono<String> httpCall = Mono.fromCallable(() -> botRouter.botFor(chatId))
+                .flatMap(bot -> bot.track(reactiveRetryHandler.withRetry(() -> bot.getRateLimiter().acquire(chatId)
+                                .then(dispatchEngine.getConcurrencyLimiter().measure(
+                                        Mono.defer(() -> providerCall.apply(bot.getCredential(), chatId)))), bot))
+                        .doOnNext(body -> metricsService.incrementSenderSend(TELEGRAM.getValue(), bot.getId(), true))
+                        .doOnError(err -> metricsService.incrementSenderSend(TELEGRAM.getValue(), bot.getId(), false)));
 
         return httpCall
                 .publishOn(Schedulers.boundedElastic())
@@ -194,25 +266,7 @@ public class TelegramRequestProcessor implements RequestProcessorInterface {
                 );
     }
 
-    private boolean prepareAndSendTextMedia(List<String> recipientList, String textMessage, String requestId) {
-        return prepareAndSendMedia(recipientList,
-                chatId -> payloadBuilder.buildTextPayload(chatId, textMessage),
-                TELEGRAM_SEND_MESSAGE_METHOD, requestId);
-    }
-
-    private boolean prepareAndSendImageMedia(List<String> recipientList, String imageUrl, String imageCaption, String requestId) {
-        return prepareAndSendMedia(recipientList,
-                chatId -> payloadBuilder.buildImagePayload(chatId, imageUrl, imageCaption),
-                TELEGRAM_SEND_PHOTO_METHOD, requestId);
-    }
-
-    private boolean prepareAndSendVideoMedia(List<String> recipientList, String videoUrl, String videoCaption, String requestId) {
-        return prepareAndSendMedia(recipientList,
-                chatId -> payloadBuilder.buildVideoPayload(chatId, videoUrl, videoCaption),
-                TELEGRAM_SEND_VIDEO_METHOD, requestId);
-    }
-
-    private Optional<SendContext> preSendChecksAndRecords(String chatId, String method, String requestId) {
+    private SendContext preSendRecords(String chatId, String method, String requestId) {
         SendContext ctx = SendContext.builder()
                 .channel(TELEGRAM.getValue())
                 .method(method)
@@ -220,24 +274,12 @@ public class TelegramRequestProcessor implements RequestProcessorInterface {
                 .requestId(requestId)
                 .build();
 
-        boolean allowed = idempotencyService.tryStart(
-                ctx.getRequestId(),
-                ctx.getChannel(),
-                ctx.getRecipient(),
-                ctx.getMethod()
-        );
-
-        if (!allowed) {
-            log.info("[{}] Duplicate request blocked for {}", ctx.getRequestId(), chatId);
-            return Optional.empty();
-        }
-
         metricsService.incrementSendAttempt(ctx.getChannel(), ctx.getMethod());
         metricsService.incrementInFlight(ctx.getChannel());
         deliveryStateService.markQueued(ctx);
         ctx.markStart();
 
-        return Optional.of(ctx);
+        return ctx;
     }
 
     private void recordSuccess(SendContext ctx, String body) {
@@ -280,4 +322,37 @@ public class TelegramRequestProcessor implements RequestProcessorInterface {
         metricsService.decrementInFlight(ctx.getChannel());
         deliveryStateService.markFailed(ctx, errorMessage);
     }
+
+    @Override
+    public String fallbackChannel() {
+        return TELEGRAM.getValue();
+    }
+
+    /** Degraded while no bot can send, or while text, the only media a fallback sends, is disabled. */
+    @Override
+    public boolean isDegraded() {
+        return !isTextEnabled || botPool.isDegraded();
+    }
+
+    /**
+     * Re-sends as Telegram text the sends of one request that fell back to Telegram: one claim and
+     * one fan-out through the dispatch queue, paced like any other Telegram request.
+     */
+    @Override
+    public void processFallback(
+            String requestId,
+            List<String> recipients
+    ) {
+        SendNotificationRequest fallback = SendNotificationRequest.builder()
+                .textMessage(FALLBACK_TEXT_MESSAGE)
+                .mediaTypeList(List.of(MediaType.TEXT))
+                .build();
+        List<String> mediaDisabledErrorList = new ArrayList<>();
+        RecipientSender sender = senderFor(MediaType.TEXT, fallback, requestId, mediaDisabledErrorList);
+        if (sender == null) {
+            log.error("[{}] Cannot send {} fallback Telegram sends: {}", requestId, recipients.size(), mediaDisabledErrorList);
+            return;
+        }
+        prepareAndSendMedia(recipients, sender, requestId, MediaType.TEXT, Priority.NORMAL);
+    }
 }
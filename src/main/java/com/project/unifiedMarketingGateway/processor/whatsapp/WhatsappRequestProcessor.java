@@ -3,15 +3,23 @@ package com.project.unifiedMarketingGateway.processor.whatsapp;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.unifiedMarketingGateway.builders.SendNotificationResponseBuilder;
+import com.project.unifiedMarketingGateway.builders.PayloadTemplate;
+import com.project.unifiedMarketingGateway.cache.ExpiringCache;
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.builders.WhatsappPayloadBuilder;
 import com.project.unifiedMarketingGateway.connectors.WhatsappHttpConnector;
 import com.project.unifiedMarketingGateway.contexts.SendContext;
+import com.project.unifiedMarketingGateway.dispatch.DispatchEngine;
 import com.project.unifiedMarketingGateway.metrics.dto.SendResultDTO;
 import com.project.unifiedMarketingGateway.enums.MediaType;
+import com.project.unifiedMarketingGateway.enums.Priority;
 import com.project.unifiedMarketingGateway.enums.WhatsappMessageStatus;
 import com.project.unifiedMarketingGateway.metrics.MetricsService;
 import com.project.unifiedMarketingGateway.processor.DeliveryStateService;
+import com.project.unifiedMarketingGateway.processor.FallbackSender;
 import com.project.unifiedMarketingGateway.processor.IdempotencyService;
+import com.project.unifiedMarketingGateway.processor.PendingClaims;
+import com.project.unifiedMarketingGateway.processor.RecipientSender;
 import com.project.unifiedMarketingGateway.store.messageStore.WhatsappMessageStore;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationResponse;
@@ -19,10 +27,12 @@ import com.project.unifiedMarketingGateway.models.WhatsappMessage;
 import com.project.unifiedMarketingGateway.processor.RequestProcessorInterface;
 import com.project.unifiedMarketingGateway.store.responseStore.WhatsappResponseStore;
 import com.project.unifiedMarketingGateway.retryHandler.WhatsappReactiveRetryHandler;
+import com.project.unifiedMarketingGateway.senderPool.SenderPool;
 import com.project.unifiedMarketingGateway.validators.WhatsappSendNotificationRequestValidator;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -30,7 +40,9 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.project.unifiedMarketingGateway.constants.Constants.*;
 import static com.project.unifiedMarketingGateway.constants.Constants.VIDEO_MEDIA_DISABLED_ERROR;
@@ -38,7 +50,7 @@ import static com.project.unifiedMarketingGateway.enums.ClientType.WHATSAPP;
 
 @Service
 @Slf4j
-public class WhatsappRequestProcessor implements RequestProcessorInterface {
+public class WhatsappRequestProcessor implements RequestProcessorInterface, FallbackSender {
 
     @Autowired
     SendNotificationResponseBuilder responseBuilder;
@@ -60,9 +72,20 @@ public class WhatsappRequestProcessor implements RequestProcessorInterface {
     IdempotencyService idempotencyService;
     @Autowired
     DeliveryStateService deliveryStateService;
+    @Autowired
+    FallbackPolicy fallbackPolicy;
+
+    @Autowired
+    @Qualifier("whatsappDispatchEngine")
+    DispatchEngine dispatchEngine;
+
+    @Autowired
+    @Qualifier("whatsappSenderPool")
+    SenderPool phoneNumberPool;
 
-    @Value("${whatsapp.maxConcurrency:5}")
-    private int maxConcurrency;
+    @Autowired
+    @Qualifier("whatsappMediaIdCache")
+    ExpiringCache<String, String> mediaIdCache;
 
     @Value("${whatsapp.contentBasedResource.text.isEnabled:false}")
     private boolean isTextEnabled;
@@ -85,46 +108,24 @@ public class WhatsappRequestProcessor implements RequestProcessorInterface {
         List<String> recipientList = request.getRecipientList();
         List<MediaType> mediaTypeList = request.getMediaTypeList();
 
-        String textMessage  = request.getTextMessage();
-        String imageUrl     = request.getImageUrl();
-        String imageCaption = request.getImageCaption();
-        String videoUrl     = request.getVideoUrl();
-        String videoCaption = request.getVideoCaption();
+        Priority priority = Priority.orDefault(request.getPriority(), Priority.NORMAL);
+
+        if (!dispatchEngine.hasCapacityFor(priority, recipientList.size() * mediaTypeList.size())) {
+            return responseBuilder.buildFailureResponse(ERROR_DISPATCH_QUEUE_FULL, null);
+        }
+
         String requestId = UUID.randomUUID().toString();
+        // once per request, before any of its sends can fail
+        fallbackPolicy.planFor(requestId, WHATSAPP.getValue(), request.getFallbackChain());
 
         boolean anyQueued  = false;
         boolean allQueued  = true;
         List<String> mediaDisabledErrorList = new ArrayList<>();
 
         for (MediaType mediaType : mediaTypeList) {
-            boolean ok;
-            switch (mediaType) {
-                case TEXT -> {
-                    if(isTextEnabled)
-                        ok = prepareAndSendTextMedia(recipientList, textMessage, requestId);
-                    else {
-                        mediaDisabledErrorList.add(TEXT_MEDIA_DISABLED_ERROR);
-                        ok = false;
-                    }
-                }
-                case IMAGE -> {
-                    if(isImageEnabled)
-                        ok = prepareAndSendImageMedia(recipientList, imageUrl, imageCaption, requestId);
-                    else {
-                        mediaDisabledErrorList.add(IMAGE_MEDIA_DISABLED_ERROR);
-                        ok = false;
-                    }
-                }
-                case VIDEO -> {
-                    if(isVideoEnabled)
-                        ok = prepareAndSendVideoMedia(recipientList, videoUrl, videoCaption, requestId);
-                    else {
-                        mediaDisabledErrorList.add(VIDEO_MEDIA_DISABLED_ERROR);
-                        ok = false;
-                    }
-                }
-                default -> ok = false;
-            }
+            RecipientSender sender = senderFor(mediaType, request, requestId, mediaDisabledErrorList);
+            boolean ok = sender != null && prepareAndSendMedia(recipientList, sender, requestId, mediaType, priority);
+            anyQueued = anyQueued || ok;
             allQueued = allQueued && ok;
         }
 
@@ -138,25 +139,140 @@ public class WhatsappRequestProcessor implements RequestProcessorInterface {
         return responseBuilder.buildSuccessResponse("Notification request added to queue successfully for WhatsApp.", requestId);
     }
 
-    private Mono<SendResultDTO> executeRequestReactive(String chatID,
-            Map<String, Object> payload,
-            MediaType mediaType, String requestId) {
-        Optional<SendContext> ctxOpt = preSendChecksAndRecords(chatID, mediaType.getValue(), requestId);
-        if (ctxOpt.isEmpty()) {
-            return Mono.just(
-                    new SendResultDTO(
-                            chatID,
-                            true,
-                            "DUPLICATE",
-                            null
-                    )
-            );
+    @Override
+    public Mono<SendNotificationResponse> processBulkNotificationRequest(@NonNull SendNotificationRequest envelope, @NonNull Flux<String> recipients) {
+        List<String> errors = requestValidator.validateBulkNotificationRequest(envelope);
+        if (!errors.isEmpty()) {
+            return Mono.just(responseBuilder.buildFailureResponse("Request Validation Failed: " + errors, null));
         }
-        SendContext ctx = ctxOpt.get();
 
-        Mono<String> httpCall = reactiveRetryHandler.withRetry(
-                () -> whatsappHttpConnector.sendMarketingRequest(MESSAGES, payload)
-        );
+        String requestId = UUID.randomUUID().toString();
+        fallbackPolicy.planFor(requestId, WHATSAPP.getValue(), envelope.getFallbackChain());
+        List<String> mediaDisabledErrorList = new ArrayList<>();
+        List<RecipientSender> senders = new ArrayList<>();
+        for (MediaType mediaType : envelope.getMediaTypeList()) {
+            RecipientSender sender = senderFor(mediaType, envelope, requestId, mediaDisabledErrorList);
+            if (sender != null) senders.add(sender);
+        }
+        if (!mediaDisabledErrorList.isEmpty()) {
+            return Mono.just(responseBuilder.buildFailureResponse("Notification request couldn't be processed for WhatsApp." + mediaDisabledErrorList.toString(), requestId));
+        }
+
+        PendingClaims claims = idempotencyService.pendingClaims(requestId, WHATSAPP.getValue());
+        // claim each chunk of recipients once per media type, only newly claimed sends are queued
+        Flux<Supplier<Mono<SendResultDTO>>> tasks = recipients
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .buffer(idempotencyService.getClaimChunkSize())
+                .concatMap(chunk -> Flux.fromIterable(senders)
+                        .concatMap(sender -> idempotencyService.claimAll(requestId, WHATSAPP.getValue(),
+                                        Flux.fromIterable(chunk), sender.method(), claims)
+                                .map(chatID -> claims.task(chatID, sender))));
+
+        return dispatchEngine.submitAll(Priority.orDefault(envelope.getPriority(), Priority.BULK), tasks)
+                .doOnCancel(claims::releaseUnstarted)
+                .map(queued -> responseBuilder.buildSuccessResponse(
+                        "Bulk notification request added to queue successfully for WhatsApp: sends=" + queued, requestId))
+                .onErrorResume(err -> {
+                    log.error("[{}] WhatsApp bulk recipient stream aborted: {}", requestId, err.toString());
+                    claims.releaseUnstarted();
+                    return Mono.just(responseBuilder.buildFailureResponse(ERROR_INVALID_BULK_REQUEST + ": " + err.getMessage(), requestId));
+                });
+    }
+
+    /**
+     * Resolves the per-recipient sender for a media type, or null (recording the
+     * reason) when the media type is disabled for WhatsApp. Images and videos are uploaded
+     * once per phone number and the fan-out references the media id instead of a link.
+     */
+    private RecipientSender senderFor(MediaType mediaType, SendNotificationRequest request,
+            String requestId, List<String> mediaDisabledErrorList) {
+        switch (mediaType) {
+            case TEXT -> {
+                if(isTextEnabled) {
+                    PayloadTemplate template = payloadBuilder.buildTextTemplate(request.getTextMessage());
+                    Mono<PayloadTemplate> text = Mono.just(template);
+                    Function<String, Mono<PayloadTemplate>> payload = phoneNumberId -> text;
+                    return new RecipientSender(MediaType.TEXT.getValue(),
+                            chatID -> executeRequestReactive(chatID, payload, MediaType.TEXT, requestId));
+                }
+                mediaDisabledErrorList.add(TEXT_MEDIA_DISABLED_ERROR);
+            }
+            case IMAGE -> {
+                if(isImageEnabled) {
+                    Function<String, Mono<PayloadTemplate>> payload = uploadedMediaTemplate(request.getImageUrl(),
+                            () -> payloadBuilder.buildImageTemplate(request.getImageUrl(), request.getImageCaption()),
+                            mediaId -> payloadBuilder.buildImageIdTemplate(mediaId, request.getImageCaption()));
+                    return new RecipientSender(MediaType.IMAGE.getValue(),
+                            chatID -> executeRequestReactive(chatID, payload, MediaType.IMAGE, requestId));
+                }
+                mediaDisabledErrorList.add(IMAGE_MEDIA_DISABLED_ERROR);
+            }
+            case VIDEO -> {
+                if(isVideoEnabled) {
+                    Function<String, Mono<PayloadTemplate>> payload = uploadedMediaTemplate(request.getVideoUrl(),
+                            () -> payloadBuilder.buildVideoTemplate(request.getVideoUrl(), request.getVideoCaption()),
+                            mediaId -> payloadBuilder.buildVideoIdTemplate(mediaId, request.getVideoCaption()));
+                    return new RecipientSender(MediaType.VIDEO.getValue(),
+                            chatID -> executeRequestReactive(chatID, payload, MediaType.VIDEO, requestId));
+                }
+                mediaDisabledErrorList.add(VIDEO_MEDIA_DISABLED_ERROR);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Payload of a media fan-out per sending phone number: uploads the asset to the number's
+     * /media endpoint on first use (once per number and url across requests, through the media
+     * id cache) and references the id. Falls back to the link payload when the upload fails.
+     * Resolved once per request and number.
+     */
+    private Function<String, Mono<PayloadTemplate>> uploadedMediaTemplate(String mediaUrl,
+            Supplier<PayloadTemplate> linkTemplate, Function<String, PayloadTemplate> idTemplate) {
+        Map<String, Mono<PayloadTemplate>> byPhoneNumber = new ConcurrentHashMap<>();
+        return phoneNumberId -> byPhoneNumber.computeIfAbsent(phoneNumberId, id ->
+                mediaIdCache.getOrLoad(id + "|" + mediaUrl, () -> whatsappHttpConnector.uploadMedia(id, mediaUrl))
+                        .map(idTemplate)
+                        .onErrorResume(err -> {
+                            log.warn("Media upload to {} failed for {}, sending as link: {}", id, mediaUrl, err.toString());
+                            return Mono.empty();
+                        })
+                        .switchIfEmpty(Mono.fromSupplier(linkTemplate))
+                        .cache());
+    }
+
+    /**
+     * Sends to a recipient that has already been claimed through the idempotency service.
+     *
+     * @param payload payload template for the phone number id the send goes out from
+     */
+    private Mono<SendResultDTO> executeRequestReactive(String chatID,
+            Function<String, Mono<PayloadTemplate>> payload,
+            MediaType mediaType, String requestId) {
+        SendContext ctx = preSendRecords(chatID, mediaType.getValue(), requestId);
+
+        // each recipient sticks to one phone number, another one only when it is unavailable or out of tier budget
+        Mono<String> httpCall = Mono.fromCallable(() -> phoneNumberPool.stickyFor(chatID)
+                        .orElseThrow(() -> new IllegalStateException(ERROR_SENDER_BUDGET_EXHAUSTED)))
+                // the payload (media upload included) is resolved before the send takes a rate
+                // limit permit, so the upload is neither paced, measured as send latency nor retried
+                .flatMap(number -> number.track(payload.apply(number.getId()).flatMap(template ->
+                                reactiveRetryHandler.withRetry(
+                                        () -> number.getRateLimiter().acquire(chatID)
+                                                .then(dispatchEngine.getConcurrencyLimiter().measure(Mono.defer(() ->
+                                                        whatsappHttpConnector.sendMarketingRequest(number.getCredential(), MESSAGES, template, chatID)))),
+                                        number)))
+                        .doOnNext(body -> {
+                            number.recordSuccess();
+                            metricsService.incrementSenderSend(WHATSAPP.getValue(), number.getId(), true);
+                        })
+                        .doOnError(err -> {
+                            if (reactiveRetryHandler.isSenderFault(err)) {
+                                number.recordFailure();
+                            }
+                            metricsService.incrementSenderSend(WHATSAPP.getValue(), number.getId(), false);
+                        }));
 
         return httpCall
                 .publishOn(Schedulers.boundedElastic())
@@ -174,59 +290,30 @@ public class WhatsappRequestProcessor implements RequestProcessorInterface {
                 );
     }
 
-    private boolean prepareAndSendMedia(List<String> recipientList,
-            Function<String, Map<String, Object>> payloadForRecipient, MediaType mediaType, String requestId) {
+    private boolean prepareAndSendMedia(List<String> recipientList, RecipientSender sender,
+            String requestId, MediaType mediaType, Priority priority) {
         if (recipientList == null || recipientList.isEmpty()) {
             log.warn("No recipients provided for WhatsApp; nothing queued");
             return false;
         }
 
-        int concurrency = Math.min(Math.max(1, maxConcurrency), recipientList.size());
-
-        Flux.fromIterable(recipientList)
+        Flux<String> chatIDs = Flux.fromIterable(recipientList)
                 .map(String::trim)
-                .filter(id -> !id.isEmpty())
-                .flatMap(chatID -> {
-                    Map<String, Object> payload = payloadForRecipient.apply(chatID);
-                    return executeRequestReactive(chatID, payload, mediaType, requestId);
-                }, concurrency)
-                .doOnSubscribe(s -> log.info("Dispatching {} WhatsApp sends (concurrency={})", recipientList.size(), concurrency))
+                .filter(id -> !id.isEmpty());
+        Flux<Supplier<Mono<SendResultDTO>>> tasks = Flux.defer(() -> idempotencyService.claimAll(
+                        requestId, WHATSAPP.getValue(), chatIDs, sender.method()))
+                .map(chatID -> () -> sender.apply(chatID));
+
+        dispatchEngine.submitAll(priority, tasks)
                 .subscribe(
-                        result -> {
-                            if (result.isSuccess()) {
-                                log.info("[{}] WhatsApp sent successfully", result.getChatId());
-                            } else {
-                                log.warn("[{}] WhatsApp send failed: {}", result.getChatId(), result.getErrorMessage());
-                            }
-                        },
-                        err -> log.error("WhatsApp reactive pipeline error: {}", err.toString()),
-                        () -> log.info("All WhatsApp send requests dispatched")
+                        queued -> log.info("Queued {} WhatsApp {} sends (queueDepth={})",
+                                queued, mediaType, dispatchEngine.getQueueDepth()),
+                        err -> log.error("Failed to queue WhatsApp {} sends: {}", mediaType, err.toString())
                 );
 
         return true;
     }
 
-    private boolean prepareAndSendTextMedia(List<String> recipientList, String textMessage, String requestId) {
-        return prepareAndSendMedia(
-                recipientList,
-                chatID -> payloadBuilder.buildTextPayload(chatID, textMessage), MediaType.TEXT, requestId
-        );
-    }
-
-    private boolean prepareAndSendImageMedia(List<String> recipientList, String imageUrl, String imageCaption, String requestId) {
-        return prepareAndSendMedia(
-                recipientList,
-                chatID -> payloadBuilder.buildImagePayload(chatID, imageUrl, imageCaption), MediaType.IMAGE, requestId
-        );
-    }
-
-    private boolean prepareAndSendVideoMedia(List<String> recipientList, String videoUrl, String videoCaption, String requestId) {
-        return prepareAndSendMedia(
-                recipientList,
-                chatID -> payloadBuilder.buildVideoPayload(chatID, videoUrl, videoCaption), MediaType.VIDEO, requestId
-        );
-    }
-
     private void saveResponseToDB(SendContext ctx, String body, String chatID, MediaType mediaType)
     {
         String waMessageId = extractWhatsAppMessageId(body);
@@ -264,7 +351,7 @@ public class WhatsappRequestProcessor implements RequestProcessorInterface {
         return null;
     }
 
-    private Optional<SendContext> preSendChecksAndRecords(String chatId, String method, String requestId) {
+    private SendContext preSendRecords(String chatId, String method, String requestId) {
         SendContext ctx = SendContext.builder()
                 .channel(WHATSAPP.getValue())
                 .method(method)
@@ -272,24 +359,12 @@ public class WhatsappRequestProcessor implements RequestProcessorInterface {
                 .requestId(requestId)
                 .build();
 
-        boolean allowed = idempotencyService.tryStart(
-                ctx.getRequestId(),
-                ctx.getChannel(),
-                ctx.getRecipient(),
-                ctx.getMethod()
-        );
-
-        if (!allowed) {
-            log.info("[{}] Duplicate request blocked for {}", ctx.getRequestId(), chatId);
-            return Optional.empty();
-        }
-
         metricsService.incrementSendAttempt(ctx.getChannel(), ctx.getMethod());
         metricsService.incrementInFlight(ctx.getChannel());
         deliveryStateService.markQueued(ctx);
         ctx.markStart();
 
-        return Optional.of(ctx);
+        return ctx;
     }
 
     private void recordSuccess(SendContext ctx, String body) {
@@ -333,5 +408,37 @@ public class WhatsappRequestProcessor implements RequestProcessorInterface {
         metricsService.decrementInFlight(ctx.getChannel());
         deliveryStateService.markFailed(ctx, errorMessage);
     }
-}
 
+    @Override
+    public String fallbackChannel() {
+        return WHATSAPP.getValue();
+    }
+
+    /** Degraded while no phone number can send, or while text, the only media a fallback sends, is disabled. */
+    @Override
+    public boolean isDegraded() {
+        return !isTextEnabled || phoneNumberPool.isDegraded();
+    }
+
+    /**
+     * Re-sends as WhatsApp text the sends of one request that fell back to WhatsApp: one claim and
+     * one fan-out through the dispatch queue, paced like any other WhatsApp request.
+     */
+    @Override
+    public void processFallback(
+            String requestId,
+            List<String> recipients
+    ) {
+        SendNotificationRequest fallback = SendNotificationRequest.builder()
+                .textMessage(FALLBACK_TEXT_MESSAGE)
+                .mediaTypeList(List.of(MediaType.TEXT))
+                .build();
+        List<String> mediaDisabledErrorList = new ArrayList<>();
+        RecipientSender sender = senderFor(MediaType.TEXT, fallback, requestId, mediaDisabledErrorList);
+        if (sender == null) {
+            log.error("[{}] Cannot send {} fallback WhatsApp sends: {}", requestId, recipients.size(), mediaDisabledErrorList);
+            return;
+        }
+        prepareAndSendMedia(recipients, sender, requestId, MediaType.TEXT, Priority.NORMAL);
+    }
+}
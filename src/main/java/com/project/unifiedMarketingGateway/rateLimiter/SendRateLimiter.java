@@ -0,0 +1,163 @@
+package com.project.unifiedMarketingGateway.rateLimiter;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-channel send limiter combining one global bucket (provider identity, e.g. the bot
+ * or the phone number) with one bucket per recipient.
+ * <p>
+ * {@link #acquire(String)} never blocks a thread: it reserves a slot and completes after
+ * a {@link Mono#delay(Duration)}. The recipient bucket is waited on first so the global
+ * slot is only reserved once the recipient is actually allowed to receive. A rate of
+ * zero or less disables the corresponding bucket.
+ * <p>
+ * The limiter is also the shared throttle state of the provider identity: when the provider
+ * answers 429, {@link #pause(Duration)} holds every sender of the channel until the
+ * retry-after deadline, then lets the global rate ramp from {@code resumeStartFraction} back
+ * to full speed over {@code resumeRamp}.
+ */
+@Slf4j
+public class SendRateLimiter {
+
+    private static final int SWEEP_EVERY_ACQUIRES = 1024;
+
+    @Getter
+    private final String channel;
+
+    private final TokenBucket globalBucket;
+    private final double perRecipientPermitsPerSecond;
+    private final int perRecipientBurst;
+    private final Map<String, TokenBucket> recipientBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong acquires = new AtomicLong();
+    private final LongSupplier nanoClock;
+
+    private final long resumeRampNanos;
+    private final double resumeStartFraction;
+    private final AtomicLong pausedUntilNanos;
+
+    public SendRateLimiter(String channel,
+                           double globalPermitsPerSecond, int globalBurst,
+                           double perRecipientPermitsPerSecond, int perRecipientBurst) {
+        this(channel, globalPermitsPerSecond, globalBurst, perRecipientPermitsPerSecond, perRecipientBurst,
+                Duration.ZERO, 1.0, System::nanoTime);
+    }
+
+    public SendRateLimiter(String channel,
+                           double globalPermitsPerSecond, int globalBurst,
+                           double perRecipientPermitsPerSecond, int perRecipientBurst,
+                           Duration resumeRamp, double resumeStartFraction) {
+        this(channel, globalPermitsPerSecond, globalBurst, perRecipientPermitsPerSecond, perRecipientBurst,
+                resumeRamp, resumeStartFraction, System::nanoTime);
+    }
+
+    SendRateLimiter(String channel,
+                    double globalPermitsPerSecond, int globalBurst,
+                    double perRecipientPermitsPerSecond, int perRecipientBurst,
+                    Duration resumeRamp, double resumeStartFraction,
+                    LongSupplier nanoClock) {
+        this.channel = channel;
+        this.nanoClock = nanoClock;
+        this.globalBucket = globalPermitsPerSecond > 0
+                ? new TokenBucket(globalPermitsPerSecond, globalBurst, nanoClock.getAsLong())
+                : null;
+        this.perRecipientPermitsPerSecond = perRecipientPermitsPerSecond;
+        this.perRecipientBurst = perRecipientBurst;
+        this.resumeRampNanos = resumeRamp.toNanos();
+        this.resumeStartFraction = Math.min(1.0, Math.max(0.01, resumeStartFraction));
+        // as if the last pause ended a full ramp ago: a new limiter starts at full rate
+        this.pausedUntilNanos = new AtomicLong(nanoClock.getAsLong() - this.resumeRampNanos);
+    }
+
+    /**
+     * Completes when one send to {@code recipient} may go out. Subscribe once per provider
+     * attempt (i.e. inside the retry supplier) so retries are throttled as well.
+     */
+    public Mono<Void> acquire(String recipient) {
+        return Mono.defer(() -> waitFor(recipientBucket(recipient), 1.0))
+                .then(Mono.defer(this::acquireGlobal));
+    }
+
+    /**
+     * Stops the whole channel for {@code duration} (extending, never shortening, a running
+     * pause). Senders already waiting for a slot re-queue behind the pause.
+     */
+    public void pause(Duration duration) {
+        long until = nanoClock.getAsLong() + duration.toNanos();
+        long previous = pausedUntilNanos.getAndAccumulate(until, Math::max);
+        if (globalBucket != null) {
+            globalBucket.pauseUntil(until);
+        }
+        if (until > previous) {
+            log.warn("{} sends paused for {} ms after provider throttling", channel, duration.toMillis());
+        }
+    }
+
+    public boolean isPaused() {
+        return pausedUntilNanos.get() > nanoClock.getAsLong();
+    }
+
+    /** Number of recipients with a bucket that has not refilled yet (or not been swept). */
+    public int getTrackedRecipients() {
+        return recipientBuckets.size();
+    }
+
+    private Mono<Void> acquireGlobal() {
+        long pausedFor = pausedUntilNanos.get() - nanoClock.getAsLong();
+        if (pausedFor > 0) {
+            return Mono.delay(Duration.ofNanos(pausedFor)).then(Mono.defer(this::acquireGlobal));
+        }
+        return waitFor(globalBucket, resumeCost())
+                // a pause may have started while this sender was waiting for its slot
+                .then(Mono.defer(() -> isPaused() ? acquireGlobal() : Mono.empty()));
+    }
+
+    /** Slot cost while ramping back up after a pause: 1/fraction of the configured rate. */
+    private double resumeCost() {
+        if (resumeRampNanos <= 0) {
+            return 1.0;
+        }
+        long sinceResume = nanoClock.getAsLong() - pausedUntilNanos.get();
+        if (sinceResume >= resumeRampNanos) {
+            return 1.0;
+        }
+        double fraction = resumeStartFraction + (1.0 - resumeStartFraction) * sinceResume / resumeRampNanos;
+        return 1.0 / fraction;
+    }
+
+    private Mono<Void> waitFor(TokenBucket bucket, double cost) {
+        if (bucket == null) {
+            return Mono.empty();
+        }
+        long waitNanos = bucket.reserve(nanoClock.getAsLong(), cost);
+        if (waitNanos <= 0) {
+            return Mono.empty();
+        }
+        log.debug("{} send throttled for {} ms", channel, waitNanos / 1_000_000);
+        return Mono.delay(Duration.ofNanos(waitNanos)).then();
+    }
+
+    private TokenBucket recipientBucket(String recipient) {
+        if (perRecipientPermitsPerSecond <= 0 || recipient == null) {
+            return null;
+        }
+        if (acquires.incrementAndGet() % SWEEP_EVERY_ACQUIRES == 0) {
+            sweepIdleBuckets();
+        }
+        return recipientBuckets.computeIfAbsent(recipient,
+                k -> new TokenBucket(perRecipientPermitsPerSecond, perRecipientBurst, nanoClock.getAsLong()));
+    }
+
+    // full buckets carry no state, so dropping them keeps the map bounded by recently active recipients
+    private void sweepIdleBuckets() {
+        long now = nanoClock.getAsLong();
+        recipientBuckets.entrySet().removeIf(e -> e.getValue().isIdle(now));
+    }
+}
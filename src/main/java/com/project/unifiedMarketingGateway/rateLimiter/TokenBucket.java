@@ -0,0 +1,72 @@
+package com.project.unifiedMarketingGateway.rateLimiter;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket that hands out reservations instead of blocking.
+ * <p>
+ * The bucket only tracks the time at which the next permit becomes free (GCRA style).
+ * {@link #reserve(long)} always succeeds and returns how long the caller has to wait
+ * before using its permit, so callers can park on a timer instead of a thread.
+ */
+public class TokenBucket {
+
+    @Getter
+    private final double permitsPerSecond;
+    @Getter
+    private final int burst;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong nextFreeNanos;
+
+    public TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (this.burst - 1);
+        this.nextFreeNanos = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Reserves one permit and returns the wait (in nanos, 0 if available now) before it may be used.
+     */
+    public long reserve(long nowNanos) {
+        return reserve(nowNanos, 1.0);
+    }
+
+    /**
+     * Reserves one permit that occupies {@code cost} regular intervals, which slows the bucket
+     * down by that factor (used to ramp back up after a pause).
+     */
+    public long reserve(long nowNanos, double cost) {
+        long spacing = (long) (intervalNanos * Math.max(1.0, cost));
+        while (true) {
+            long current = nextFreeNanos.get();
+            long base = Math.max(current, nowNanos);
+            if (nextFreeNanos.compareAndSet(current, base + spacing)) {
+                return Math.max(0L, base - toleranceNanos - nowNanos);
+            }
+        }
+    }
+
+    /**
+     * Hands out no permit before {@code untilNanos} and drops the accumulated burst, so the
+     * bucket restarts with single permits at its regular spacing.
+     */
+    public void pauseUntil(long untilNanos) {
+        nextFreeNanos.accumulateAndGet(untilNanos + toleranceNanos, Math::max);
+    }
+
+    /**
+     * True when the bucket has refilled completely, i.e. dropping it loses no state.
+     */
+    public boolean isIdle(long nowNanos) {
+        return nextFreeNanos.get() + toleranceNanos <= nowNanos;
+    }
+}
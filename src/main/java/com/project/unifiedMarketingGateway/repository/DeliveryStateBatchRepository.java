@@ -0,0 +1,130 @@
+package com.project.unifiedMarketingGateway.repository;
+
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes delivery state transitions in bulk: one MERGE per (request, channel, recipient,
+ * media) row, sent to the database as a single JDBC batch. An existing row takes the new
+ * status, provider message id, failure reason and update time; fallback markers and the
+ * creation time are left alone.
+ * <p>
+ * The claim state follows the delivery state (SENT completes the attempt, FAILED releases it
+ * for a retry), which makes this the only write after the claim in unified storage mode.
+ */
+@Repository
+public class DeliveryStateBatchRepository {
+
+    private static final String UPSERT_SQL = """
+            MERGE INTO delivery_state t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                           CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                           CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                           CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INT)))
+                  AS s(request_id, channel, recipient, media_type,
+                       status, provider_message_id, failure_reason,
+                       created_at_epoch_millis, updated_at_epoch_millis, partition_id)
+            ON t.request_id = s.request_id AND t.channel = s.channel
+               AND t.recipient = s.recipient AND t.media_type = s.media_type
+            WHEN MATCHED THEN
+                UPDATE SET status = s.status, provider_message_id = s.provider_message_id,
+                           failure_reason = s.failure_reason, updated_at_epoch_millis = s.updated_at_epoch_millis,
+                           idempotency_status = CASE s.status WHEN 'SENT' THEN 'COMPLETED' WHEN 'FAILED' THEN 'FAILED' ELSE 'IN_PROGRESS' END
+            WHEN NOT MATCHED THEN
+                INSERT (id, request_id, channel, recipient, media_type, status, provider_message_id,
+                        failure_reason, created_at_epoch_millis, updated_at_epoch_millis, partition_id, idempotency_status)
+                VALUES (NEXT VALUE FOR delivery_state_seq, s.request_id, s.channel, s.recipient, s.media_type, s.status, s.provider_message_id,
+                        s.failure_reason, s.created_at_epoch_millis, s.updated_at_epoch_millis, s.partition_id,
+                        CASE s.status WHEN 'SENT' THEN 'COMPLETED' WHEN 'FAILED' THEN 'FAILED' ELSE 'IN_PROGRESS' END)
+            """;
+
+    private static final String CLAIM_FALLBACK_SQL = """
+            MERGE INTO delivery_state t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                           CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                           CAST(? AS VARCHAR(255)), CAST(? AS BIGINT), CAST(? AS INT)))
+                  AS s(request_id, channel, recipient, media_type, fallback_channel, claimed_at, partition_id)
+            ON t.request_id = s.request_id AND t.channel = s.channel
+               AND t.recipient = s.recipient AND t.media_type = s.media_type
+            WHEN MATCHED AND (t.fallback_triggered IS NULL OR t.fallback_triggered = FALSE) THEN
+                UPDATE SET fallback_triggered = TRUE, fallback_channel = s.fallback_channel
+            WHEN NOT MATCHED THEN
+                INSERT (id, request_id, channel, recipient, media_type, status, created_at_epoch_millis,
+                        updated_at_epoch_millis, partition_id, idempotency_status, fallback_triggered, fallback_channel)
+                VALUES (NEXT VALUE FOR delivery_state_seq, s.request_id, s.channel, s.recipient, s.media_type, 'FAILED',
+                        s.claimed_at, s.claimed_at, s.partition_id, 'FAILED', TRUE, s.fallback_channel)
+            """;
+
+    /** Falls a send back to {@code fallbackChannel}. */
+    public record FallbackClaim(String requestId, String channel, String recipient, String mediaType,
+                                String fallbackChannel) {}
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Value("${reconciliation.partitions:64}")
+    int partitions;
+
+    /**
+     * Upserts every state in one batch and one transaction.
+     */
+    @Transactional
+    public void upsertAll(Collection<DeliveryStateEntity> states) {
+        if (states.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(states.size());
+        for (DeliveryStateEntity state : states) {
+            rows.add(new Object[]{
+                    state.getRequestId(),
+                    state.getChannel(),
+                    state.getRecipient(),
+                    state.getMediaType(),
+                    state.getStatus().name(),
+                    state.getProviderMessageId(),
+                    state.getFailureReason(),
+                    state.getCreatedAtEpochMillis(),
+                    state.getUpdatedAtEpochMillis(),
+                    DeliveryStateEntity.partitionOf(state.getRequestId(), state.getChannel(),
+                            state.getRecipient(), state.getMediaType(), partitions)
+            });
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+    }
+
+    /**
+     * Sets the fallback marker of each failed send unless it is set already, in one batch and
+     * one transaction, and returns the claims this call won: of all nodes and paths racing to
+     * fall back the same send, exactly one wins. A send whose FAILED state is still buffered
+     * gets its row now; the buffered upsert leaves the marker alone.
+     * <p>
+     * All or nothing: a constraint violation (the buffered state inserted concurrently) rolls
+     * the batch back, and a retry finds the row.
+     */
+    @Transactional
+    public List<FallbackClaim> claimFallbackAll(List<FallbackClaim> claims) {
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>(claims.size());
+        for (FallbackClaim c : claims) {
+            rows.add(new Object[]{c.requestId(), c.channel(), c.recipient(), c.mediaType(), c.fallbackChannel(), now,
+                    DeliveryStateEntity.partitionOf(c.requestId(), c.channel(), c.recipient(), c.mediaType(), partitions)});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(CLAIM_FALLBACK_SQL, rows);
+
+        List<FallbackClaim> won = new ArrayList<>(claims.size());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                won.add(claims.get(i));
+            }
+        }
+        return won;
+    }
+}
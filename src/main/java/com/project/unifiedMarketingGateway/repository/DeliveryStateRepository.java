@@ -2,8 +2,13 @@ package com.project.unifiedMarketingGateway.repository;
 
 import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
 import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -19,11 +24,37 @@ public interface DeliveryStateRepository
             String mediaType
     );
 
-    List<DeliveryStateEntity> findByStatus(DeliveryStatus status);
+    /**
+     * One keyset page of the rows of reconciliation partition {@code partitionId} in
+     * {@code status} last updated before {@code updatedBefore}, ordered by (updatedAt, id) and
+     * starting after the cursor (afterUpdatedAt, afterId). Served from the (partition, status,
+     * updatedAt, id) index without an offset scan.
+     */
+    @Query("select d from DeliveryStateEntity d where d.partitionId = :partitionId and d.status = :status "
+            + "and d.updatedAtEpochMillis < :updatedBefore "
+            + "and (d.updatedAtEpochMillis > :afterUpdatedAt "
+            + "or (d.updatedAtEpochMillis = :afterUpdatedAt and d.id > :afterId)) "
+            + "order by d.updatedAtEpochMillis, d.id")
+    List<DeliveryStateEntity> findExpiredPage(@Param("partitionId") int partitionId,
+                                              @Param("status") DeliveryStatus status,
+                                              @Param("updatedBefore") long updatedBefore,
+                                              @Param("afterUpdatedAt") long afterUpdatedAt,
+                                              @Param("afterId") long afterId,
+                                              Limit limit);
 
     Optional<DeliveryStateEntity>
     findByProviderMessageId(String providerMessageId);
 
     List<DeliveryStateEntity> findByRequestId(String requestId);
+
+    Optional<DeliveryStateEntity> findByChannelAndProviderMessageId(String channel, String providerMessageId);
+
+    @Modifying
+    @Transactional
+    @Query("update DeliveryStateEntity d set d.errorCode = :errorCode "
+            + "where d.channel = :channel and d.providerMessageId = :providerMessageId")
+    int updateErrorCode(@Param("channel") String channel,
+                        @Param("providerMessageId") String providerMessageId,
+                        @Param("errorCode") String errorCode);
 }
 
@@ -0,0 +1,10 @@
+package com.project.unifiedMarketingGateway.repository;
+
+import com.project.unifiedMarketingGateway.entity.FallbackPlan;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FallbackPlanRepository
+        extends JpaRepository<FallbackPlan, String> {
+}
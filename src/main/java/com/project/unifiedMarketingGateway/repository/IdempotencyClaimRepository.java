@@ -0,0 +1,141 @@
+package com.project.unifiedMarketingGateway.repository;
+
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.enums.IdempotencyStatus;
+import com.project.unifiedMarketingGateway.enums.StorageMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Claims idempotency keys with a conditional MERGE: inserts an IN_PROGRESS row, or flips an
+ * existing FAILED row back to IN_PROGRESS, in one statement. Rows that are IN_PROGRESS or
+ * COMPLETED are left alone.
+ * <p>
+ * Plain JDBC so a chunk of recipients goes to the database as one batch, with a per-row
+ * update count telling which recipients the caller now owns. In unified storage mode the
+ * claim is the QUEUED delivery_state row of the send itself.
+ */
+@Repository
+public class IdempotencyClaimRepository {
+
+    private static final String CLAIM_SQL = """
+            MERGE INTO idempotency_record t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                           CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS BIGINT)))
+                  AS s(request_id, channel, recipient, media_type, claimed_at)
+            ON t.request_id = s.request_id AND t.channel = s.channel
+               AND t.recipient = s.recipient AND t.media_type = s.media_type
+            WHEN MATCHED AND t.status = 'FAILED' THEN
+                UPDATE SET status = 'IN_PROGRESS', created_at_epoch_millis = s.claimed_at, completed_at_epoch_millis = NULL
+            WHEN NOT MATCHED THEN
+                INSERT (id, request_id, channel, recipient, media_type, status, created_at_epoch_millis)
+                VALUES (NEXT VALUE FOR idempotency_record_seq, s.request_id, s.channel, s.recipient, s.media_type,
+                        'IN_PROGRESS', s.claimed_at)
+            """;
+
+    private static final String CLAIM_SEND_ATTEMPT_SQL = """
+            MERGE INTO delivery_state t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                           CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS BIGINT), CAST(? AS INT)))
+                  AS s(request_id, channel, recipient, media_type, claimed_at, partition_id)
+            ON t.request_id = s.request_id AND t.channel = s.channel
+               AND t.recipient = s.recipient AND t.media_type = s.media_type
+            WHEN MATCHED AND t.idempotency_status = 'FAILED' THEN
+                UPDATE SET idempotency_status = 'IN_PROGRESS', status = 'QUEUED', provider_message_id = NULL,
+                           failure_reason = NULL, error_code = NULL, updated_at_epoch_millis = s.claimed_at
+            WHEN NOT MATCHED THEN
+                INSERT (id, request_id, channel, recipient, media_type, idempotency_status, status,
+                        created_at_epoch_millis, updated_at_epoch_millis, partition_id)
+                VALUES (NEXT VALUE FOR delivery_state_seq, s.request_id, s.channel, s.recipient, s.media_type,
+                        'IN_PROGRESS', 'QUEUED', s.claimed_at, s.claimed_at, s.partition_id)
+            """;
+
+    private static final String TRANSITION_SQL = """
+            UPDATE idempotency_record SET status = ?, completed_at_epoch_millis = ?
+            WHERE request_id = ? AND channel = ? AND recipient = ? AND media_type = ? AND status = ?
+            """;
+
+    private static final String RELEASE_SEND_ATTEMPT_SQL = """
+            UPDATE delivery_state SET idempotency_status = 'FAILED', status = 'FAILED', failure_reason = ?,
+                                      updated_at_epoch_millis = ?
+            WHERE request_id = ? AND channel = ? AND recipient = ? AND media_type = ?
+              AND idempotency_status = 'IN_PROGRESS' AND status = 'QUEUED'
+            """;
+
+    /** Moves a key from {@code from} to {@code to}; skipped when the key is not in {@code from}. */
+    public record Transition(String requestId, String channel, String recipient, String mediaType,
+                             IdempotencyStatus from, IdempotencyStatus to, Long completedAt) {}
+
+    @Value("${storage.mode:split}")
+    StorageMode storageMode;
+
+    @Value("${reconciliation.partitions:64}")
+    int partitions;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Claims every recipient of {@code recipients} for one (request, channel, media) and
+     * returns the ones that were claimed, in input order. All or nothing: a constraint
+     * violation (a concurrent first claim of one of the recipients) rolls the whole batch back.
+     */
+    @Transactional
+    public List<String> claim(String requestId, String channel, String mediaType, List<String> recipients) {
+        long now = System.currentTimeMillis();
+        boolean unified = storageMode == StorageMode.UNIFIED;
+        List<Object[]> rows = new ArrayList<>(recipients.size());
+        for (String recipient : recipients) {
+            rows.add(unified
+                    ? new Object[]{requestId, channel, recipient, mediaType, now,
+                            DeliveryStateEntity.partitionOf(requestId, channel, recipient, mediaType, partitions)}
+                    : new Object[]{requestId, channel, recipient, mediaType, now});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(unified ? CLAIM_SEND_ATTEMPT_SQL : CLAIM_SQL, rows);
+
+        List<String> claimed = new ArrayList<>(recipients.size());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                claimed.add(recipients.get(i));
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Applies the transitions in order, as one batch and one transaction.
+     */
+    @Transactional
+    public void transitionAll(List<Transition> transitions) {
+        List<Object[]> rows = new ArrayList<>(transitions.size());
+        for (Transition t : transitions) {
+            rows.add(new Object[]{t.to().name(), t.completedAt(),
+                    t.requestId(), t.channel(), t.recipient(), t.mediaType(), t.from().name()});
+        }
+        jdbcTemplate.batchUpdate(TRANSITION_SQL, rows);
+    }
+
+    /**
+     * Releases claims whose sends never started, so they can be claimed again. Only claims
+     * still IN_PROGRESS are released; in unified storage mode only sends still QUEUED.
+     */
+    @Transactional
+    public void release(String requestId, String channel, String mediaType, List<String> recipients, String reason) {
+        long now = System.currentTimeMillis();
+        boolean unified = storageMode == StorageMode.UNIFIED;
+        List<Object[]> rows = new ArrayList<>(recipients.size());
+        for (String recipient : recipients) {
+            rows.add(unified
+                    ? new Object[]{reason, now, requestId, channel, recipient, mediaType}
+                    : new Object[]{IdempotencyStatus.FAILED.name(), null,
+                            requestId, channel, recipient, mediaType, IdempotencyStatus.IN_PROGRESS.name()});
+        }
+        jdbcTemplate.batchUpdate(unified ? RELEASE_SEND_ATTEMPT_SQL : TRANSITION_SQL, rows);
+    }
+}
@@ -17,4 +17,3 @@ public interface IdempotencyRepository
             String mediaType
     );
 }
-
@@ -0,0 +1,67 @@
+package com.project.unifiedMarketingGateway.repository;
+
+import com.project.unifiedMarketingGateway.entity.ReconciliationLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ReconciliationLeaseRepository
+        extends JpaRepository<ReconciliationLease, Integer> {
+
+    /** Inserts an unowned lease row for the partition unless it exists already. */
+    @Modifying
+    @Transactional
+    @Query(value = "merge into reconciliation_lease t "
+            + "using (values (cast(:partitionId as int))) as s(partition_id) "
+            + "on t.partition_id = s.partition_id "
+            + "when not matched then insert (partition_id, expires_at_epoch_millis) values (s.partition_id, 0)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("partitionId") int partitionId);
+
+    /** Extends every lease {@code owner} still holds at {@code now}. */
+    @Modifying
+    @Transactional
+    @Query("update ReconciliationLease l set l.expiresAtEpochMillis = :expiresAt "
+            + "where l.owner = :owner and l.expiresAtEpochMillis >= :now")
+    int renew(@Param("owner") String owner,
+              @Param("now") long now,
+              @Param("expiresAt") long expiresAt);
+
+    /**
+     * Takes the partition for {@code owner} only if it is unowned or its lease has expired, so
+     * two nodes racing for it agree on one. Returns the number of rows updated.
+     */
+    @Modifying
+    @Transactional
+    @Query("update ReconciliationLease l set l.owner = :owner, l.expiresAtEpochMillis = :expiresAt "
+            + "where l.partitionId = :partitionId and (l.owner is null or l.expiresAtEpochMillis < :now)")
+    int acquire(@Param("partitionId") int partitionId,
+                @Param("owner") String owner,
+                @Param("now") long now,
+                @Param("expiresAt") long expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("update ReconciliationLease l set l.owner = null, l.expiresAtEpochMillis = 0 "
+            + "where l.partitionId = :partitionId and l.owner = :owner")
+    int release(@Param("partitionId") int partitionId, @Param("owner") String owner);
+
+    @Modifying
+    @Transactional
+    @Query("update ReconciliationLease l set l.owner = null, l.expiresAtEpochMillis = 0 where l.owner = :owner")
+    int releaseAll(@Param("owner") String owner);
+
+    @Query("select l.partitionId from ReconciliationLease l "
+            + "where l.owner = :owner and l.expiresAtEpochMillis >= :now")
+    List<Integer> findHeld(@Param("owner") String owner, @Param("now") long now);
+
+    @Query("select l.partitionId from ReconciliationLease l "
+            + "where l.partitionId < :partitions and (l.owner is null or l.expiresAtEpochMillis < :now)")
+    List<Integer> findAcquirable(@Param("partitions") int partitions, @Param("now") long now);
+}
@@ -0,0 +1,26 @@
+package com.project.unifiedMarketingGateway.repository;
+
+import com.project.unifiedMarketingGateway.entity.ReconciliationNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface ReconciliationNodeRepository
+        extends JpaRepository<ReconciliationNode, String> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "merge into reconciliation_node t "
+            + "using (values (cast(:nodeId as varchar(255)), cast(:now as bigint))) as s(node_id, heartbeat_at) "
+            + "on t.node_id = s.node_id "
+            + "when matched then update set heartbeat_at_epoch_millis = s.heartbeat_at "
+            + "when not matched then insert (node_id, heartbeat_at_epoch_millis) values (s.node_id, s.heartbeat_at)",
+            nativeQuery = true)
+    int heartbeat(@Param("nodeId") String nodeId, @Param("now") long now);
+
+    long countByHeartbeatAtEpochMillisGreaterThanEqual(long since);
+}
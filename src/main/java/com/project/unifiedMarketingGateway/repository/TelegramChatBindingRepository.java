@@ -0,0 +1,23 @@
+package com.project.unifiedMarketingGateway.repository;
+
+import com.project.unifiedMarketingGateway.entity.TelegramChatBinding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface TelegramChatBindingRepository
+        extends JpaRepository<TelegramChatBinding, String> {
+
+    /** Plain insert, fails with a constraint violation if the chat is already bound. */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into telegram_chat_binding (chat_id, bot_id, bound_at_epoch_millis) "
+            + "values (:chatId, :botId, :now)", nativeQuery = true)
+    int bind(@Param("chatId") String chatId,
+             @Param("botId") String botId,
+             @Param("now") long now);
+}
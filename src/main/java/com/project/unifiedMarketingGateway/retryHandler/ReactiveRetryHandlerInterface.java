@@ -1,5 +1,6 @@
 package com.project.unifiedMarketingGateway.retryHandler;
 
+import com.project.unifiedMarketingGateway.senderPool.PooledSender;
 import reactor.core.publisher.Mono;
 
 import java.util.function.Supplier;
@@ -7,4 +8,18 @@ import java.util.function.Supplier;
 public interface ReactiveRetryHandlerInterface {
 
     public <T> Mono<T> withRetry(Supplier<Mono<T>> publisherSupplier);
+
+    /**
+     * Same as {@link #withRetry(Supplier)} for a send made as {@code sender}; provider
+     * throttling then pauses that sender only.
+     */
+    public default <T> Mono<T> withRetry(Supplier<Mono<T>> publisherSupplier, PooledSender sender) {
+        return withRetry(publisherSupplier);
+    }
+
+    /**
+     * True if the failure means the provider is overloaded or throttling us (429 / 5xx),
+     * as opposed to a problem with the individual message.
+     */
+    public boolean isOverload(Throwable throwable);
 }
@@ -1,11 +1,11 @@
 package com.project.unifiedMarketingGateway.retryHandler;
 
 import com.project.unifiedMarketingGateway.metrics.MetricsService;
-import com.twilio.exception.ApiException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
@@ -50,15 +50,24 @@ public class SmsReactiveRetryHandler implements ReactiveRetryHandlerInterface{
                 );
     }
 
+    @Override
+    public boolean isOverload(Throwable throwable) {
+        if (!(throwable instanceof WebClientResponseException wre)) {
+            return false;
+        }
+        int status = wre.getRawStatusCode();
+        return status == 429 || status >= 500;
+    }
+
     private boolean isRetryable(Throwable throwable) {
 
         // Network / unexpected runtime issues → retry
-        if (!(throwable instanceof ApiException)) {
+        if (!(throwable instanceof WebClientResponseException)) {
             return true;
         }
 
-        ApiException apiEx = (ApiException) throwable;
-        int status = apiEx.getStatusCode();
+        WebClientResponseException wre = (WebClientResponseException) throwable;
+        int status = wre.getRawStatusCode();
 
         // Retry on Twilio server errors or throttling
         return status >= 500 || status == 429;
@@ -1,6 +1,9 @@
 package com.project.unifiedMarketingGateway.retryHandler;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.senderPool.PooledSender;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,6 +28,9 @@ public class TelegramReactiveRetryHandler implements ReactiveRetryHandlerInterfa
     @Autowired
     MetricsService metricsService;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     @Value("${telegram.retry.maxRetryCount:4}")
     private int maxRetries;
 
@@ -34,9 +40,6 @@ public class TelegramReactiveRetryHandler implements ReactiveRetryHandlerInterfa
     @Value("${telegram.retry.maxBackoff:5}")
     private int maxBackoffValue;
 
-    private final Duration initialBackoff = Duration.ofSeconds(initialBackoffValue);
-    private final Duration maxBackoff = Duration.ofSeconds(maxBackoffValue);
-
     /**
      * Generic retry wrapper. Supply a fresh Supplier<Mono<T>> for each invocation
      * (important: Mono must be created fresh per subscription).
@@ -47,6 +50,15 @@ public class TelegramReactiveRetryHandler implements ReactiveRetryHandlerInterfa
      */
     @Override
     public <T> Mono<T> withRetry(Supplier<Mono<T>> publisherSupplier) {
+        return withRetry(publisherSupplier, null);
+    }
+
+    /**
+     * Flood-wait applies to the bot that was throttled, so a 429 pauses {@code bot} and the
+     * rest of the pool keeps sending.
+     */
+    @Override
+    public <T> Mono<T> withRetry(Supplier<Mono<T>> publisherSupplier, PooledSender bot) {
         return Mono.defer(publisherSupplier)
                 .retryWhen(Retry.from(companion -> companion.flatMap(signal -> {
                     Throwable failure = signal.failure();
@@ -56,13 +68,20 @@ public class TelegramReactiveRetryHandler implements ReactiveRetryHandlerInterfa
                         return Mono.error(failure);
                     }
 
+                    Duration retryAfter = extractRetryAfter(failure);
+                    Duration delay = retryAfter != null ? retryAfter : computeBackoff(attempt);
+
+                    if (isThrottled(failure) && bot != null) {
+                        // the limit applies to the whole bot: hold every send of the bot, not just this message
+                        bot.getRateLimiter().pause(delay);
+                        metricsService.incrementThrottlePause(TELEGRAM.getValue());
+                        metricsService.incrementSenderThrottle(TELEGRAM.getValue(), bot.getId());
+                    }
+
                     if (attempt > maxRetries) {
                         log.warn("Exhausted retries after {} attempts; failing", attempt - 1);
                         return Mono.error(failure);
                     }
-
-                    Duration retryAfter = extractRetryAfter(failure);
-                    Duration delay = retryAfter != null ? retryAfter : computeBackoff(attempt);
                     metricsService.incrementRetry(TELEGRAM.getValue());
 
                     log.info("Retry attempt={} will retry after {} ms due to: {}", attempt, delay.toMillis(), shortError(failure));
@@ -71,14 +90,21 @@ public class TelegramReactiveRetryHandler implements ReactiveRetryHandlerInterfa
     }
 
     private Duration computeBackoff(int attempt) {
-        long base = initialBackoff.toMillis() * (1L << (attempt - 1));
-        long capped = Math.min(base, maxBackoff.toMillis());
+        long base = Duration.ofSeconds(initialBackoffValue).toMillis() * (1L << (attempt - 1));
+        long capped = Math.min(base, Duration.ofSeconds(maxBackoffValue).toMillis());
         // add +/- 20% jitter
         double jitterFactor = 0.2;
         long jitter = (long) (ThreadLocalRandom.current().nextDouble(-jitterFactor, jitterFactor) * capped);
         return Duration.ofMillis(Math.max(100L, capped + jitter));
     }
 
+    @Override
+    public boolean isOverload(Throwable t) {
+        if (!(t instanceof WebClientResponseException wre)) return false;
+        int status = wre.getRawStatusCode();
+        return status == 429 || (status >= 500 && status < 600);
+    }
+
     /**
      * Retry is only attempted for temporary errors,
      * but not for permanent errors like 4xx.
@@ -86,7 +112,7 @@ public class TelegramReactiveRetryHandler implements ReactiveRetryHandlerInterfa
      * 5xx --> serverErrors
      * 429 --> rateLimit
      */
-    private boolean isRetryable(Throwable t) {
+    public boolean isRetryable(Throwable t) {
         if (t == null) return false;
         if (t instanceof WebClientRequestException) return true;
         if (t instanceof WebClientResponseException wre) {
@@ -98,10 +124,18 @@ public class TelegramReactiveRetryHandler implements ReactiveRetryHandlerInterfa
         return false;
     }
 
+    private boolean isThrottled(Throwable t) {
+        return t instanceof WebClientResponseException wre && wre.getRawStatusCode() == 429;
+    }
+
+    /**
+     * Telegram reports flood-wait in the body ({@code parameters.retry_after}, seconds);
+     * the Retry-After header is used when present.
+     */
     private Duration extractRetryAfter(Throwable t) {
         if (!(t instanceof WebClientResponseException wre)) return null;
         String value = wre.getHeaders().getFirst("Retry-After");
-        if (value == null) return null;
+        if (value == null) return extractBodyRetryAfter(wre);
         try {
             long seconds = Long.parseLong(value.trim());
             return Duration.ofSeconds(seconds);
@@ -116,6 +150,18 @@ public class TelegramReactiveRetryHandler implements ReactiveRetryHandlerInterfa
         }
     }
 
+    private Duration extractBodyRetryAfter(WebClientResponseException wre) {
+        try {
+            String body = wre.getResponseBodyAsString();
+            if (body == null || body.isBlank()) return null;
+            JsonNode retryAfter = objectMapper.readTree(body).path("parameters").path("retry_after");
+            return retryAfter.isNumber() ? Duration.ofSeconds(Math.max(0, retryAfter.asLong())) : null;
+        } catch (Exception e) {
+            log.debug("Failed to parse retry_after from Telegram error body: {}", e.toString());
+            return null;
+        }
+    }
+
     private String shortError(Throwable t) {
         if (t == null) return "none";
         if (t instanceof WebClientResponseException wre) {
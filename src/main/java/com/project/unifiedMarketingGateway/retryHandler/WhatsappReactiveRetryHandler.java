@@ -2,6 +2,8 @@ package com.project.unifiedMarketingGateway.retryHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.senderPool.PooledSender;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,6 +22,8 @@ import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 
+import static com.project.unifiedMarketingGateway.enums.ClientType.WHATSAPP;
+
 @Service
 @Slf4j
 public class WhatsappReactiveRetryHandler implements ReactiveRetryHandlerInterface {
@@ -37,9 +41,22 @@ public class WhatsappReactiveRetryHandler implements ReactiveRetryHandlerInterfa
             131056   // Pair rate limit hit – too many msgs to same recipient
     );
 
+    /** Error codes meaning the sender (app / WABA / phone number) is throttled, not just one recipient. */
+    private static final Set<Integer> SENDER_THROTTLE_ERROR_CODES = Set.of(4, 17, 341, 80007, 130429);
+
+    /**
+     * Error codes meaning the phone number itself cannot send right now: policy block (368),
+     * account locked (131031), spam rate limit (131048), payment issue (131042), number not
+     * registered (133010).
+     */
+    private static final Set<Integer> SENDER_FAULT_ERROR_CODES = Set.of(368, 131031, 131042, 131048, 133010);
+
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    MetricsService metricsService;
+
     @Value("${whatsapp.retry.maxRetryCount:4}")
     private int maxRetries;
 
@@ -49,12 +66,16 @@ public class WhatsappReactiveRetryHandler implements ReactiveRetryHandlerInterfa
     @Value("${whatsapp.retry.maxBackoff:5}")
     private int maxBackoffValue;
 
-    private final Duration initialBackoff = Duration.ofSeconds(initialBackoffValue);
-    private final Duration maxBackoff = Duration.ofSeconds(maxBackoffValue);
     private final Scheduler scheduler = Schedulers.boundedElastic();
 
     @Override
     public <T> Mono<T> withRetry(Supplier<Mono<T>> supplier) {
+        return withRetry(supplier, null);
+    }
+
+    /** Throughput limits apply per phone number, so throttling pauses {@code phoneNumber} only. */
+    @Override
+    public <T> Mono<T> withRetry(Supplier<Mono<T>> supplier, PooledSender phoneNumber) {
         return Mono.defer(supplier)
                 .retryWhen(Retry.from(companion -> companion.flatMap(signal -> {
                     Throwable failure = signal.failure();
@@ -65,15 +86,22 @@ public class WhatsappReactiveRetryHandler implements ReactiveRetryHandlerInterfa
                         return Mono.error(failure);
                     }
 
+                    Duration retryAfter = extractRetryAfter(failure);
+                    Duration delay = (retryAfter != null) ? retryAfter : computeBackoff(attempt);
+
+                    if (isSenderThrottled(failure) && phoneNumber != null) {
+                        // throughput limits apply to the phone number: hold every send from it
+                        phoneNumber.getRateLimiter().pause(delay);
+                        metricsService.incrementThrottlePause(WHATSAPP.getValue());
+                        metricsService.incrementSenderThrottle(WHATSAPP.getValue(), phoneNumber.getId());
+                    }
+
                     if (attempt > maxRetries) {
                         log.warn("[WA-Retry] Exhausted retries after {} attempts. Last error: {}",
                                 attempt - 1, shortError(failure));
                         return Mono.error(failure);
                     }
 
-                    Duration retryAfter = extractRetryAfter(failure);
-                    Duration delay = (retryAfter != null) ? retryAfter : computeBackoff(attempt);
-
                     log.info("[WA-Retry] Retrying attempt={} after {} ms due to {}",
                             attempt, delay.toMillis(), shortError(failure));
 
@@ -81,6 +109,32 @@ public class WhatsappReactiveRetryHandler implements ReactiveRetryHandlerInterfa
                 })));
     }
 
+    @Override
+    public boolean isOverload(Throwable t) {
+        if (!(t instanceof WebClientResponseException wre)) return false;
+        int status = wre.getRawStatusCode();
+        return status == 429 || (status >= 500 && status < 600);
+    }
+
+    /**
+     * True if the failure is the sending phone number's fault (blocked, locked, unavailable
+     * provider side) rather than the message's or the recipient's, i.e. another number might
+     * have succeeded.
+     */
+    public boolean isSenderFault(Throwable t) {
+        if (t instanceof WebClientRequestException) {
+            return true;
+        }
+        if (!(t instanceof WebClientResponseException ex)) {
+            return false;
+        }
+        if (ex.getRawStatusCode() >= 500) {
+            return true;
+        }
+        Integer waCode = extractWhatsAppErrorCode(ex);
+        return waCode != null && SENDER_FAULT_ERROR_CODES.contains(waCode);
+    }
+
     /** Decide if an error is worth retrying for WhatsApp Cloud API. */
     private boolean isRetryable(Throwable t) {
         if (t == null) {
@@ -125,6 +179,18 @@ public class WhatsappReactiveRetryHandler implements ReactiveRetryHandlerInterfa
         return false;
     }
 
+    /** HTTP 429 or a Graph throttling error code (4, 17, 341, 80007, 130429). */
+    private boolean isSenderThrottled(Throwable t) {
+        if (!(t instanceof WebClientResponseException ex)) {
+            return false;
+        }
+        if (ex.getRawStatusCode() == 429) {
+            return true;
+        }
+        Integer waCode = extractWhatsAppErrorCode(ex);
+        return waCode != null && SENDER_THROTTLE_ERROR_CODES.contains(waCode);
+    }
+
     /**
      * Try to respect Retry-After when present.
      * (This WhatsApp/Graph error denotes 429/throttling).
@@ -160,8 +226,8 @@ public class WhatsappReactiveRetryHandler implements ReactiveRetryHandlerInterfa
      * Standard exponential backoff with jitter, capped at maxBackoff.
      */
     private Duration computeBackoff(int attempt) {
-        long baseMillis = initialBackoff.toMillis() * (1L << (attempt - 1)); // 1,2,4,8...
-        long capped = Math.min(baseMillis, maxBackoff.toMillis());
+        long baseMillis = Duration.ofSeconds(initialBackoffValue).toMillis() * (1L << (attempt - 1)); // 1,2,4,8...
+        long capped = Math.min(baseMillis, Duration.ofSeconds(maxBackoffValue).toMillis());
         double jitterFactor = 0.2; // +/-20%
         long jitter = (long) (ThreadLocalRandom.current().nextDouble(-jitterFactor, jitterFactor) * capped);
         long finalMillis = Math.max(1L, capped + jitter);
@@ -0,0 +1,105 @@
+package com.project.unifiedMarketingGateway.senderPool;
+
+import com.project.unifiedMarketingGateway.rateLimiter.SendRateLimiter;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One provider identity of a channel (e.g. a Telegram bot) with its own rate limiter and a
+ * count of the sends currently assigned to it.
+ * <p>
+ * Optionally the identity has a {@link RecipientBudget} and a health state: after
+ * {@code unhealthyAfterFailures} consecutive failures blamed on the sender it is taken out
+ * of rotation for {@code unhealthyCooldown}.
+ */
+@Slf4j
+@Getter
+public class PooledSender {
+
+    private final String channel;
+
+    /** Identifier that is safe to log and to use as a metric tag. */
+    private final String id;
+
+    /** What the connector needs to send as this identity (token, phone number id, ...). */
+    private final String credential;
+
+    private final SendRateLimiter rateLimiter;
+
+    /** Null when the identity has no recipient budget. */
+    private final RecipientBudget budget;
+
+    private final int unhealthyAfterFailures;
+    private final long unhealthyCooldownNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong unhealthyUntilNanos;
+
+    public PooledSender(String channel, String id, String credential, SendRateLimiter rateLimiter) {
+        this(channel, id, credential, rateLimiter, null, 0, Duration.ZERO);
+    }
+
+    public PooledSender(String channel, String id, String credential, SendRateLimiter rateLimiter,
+                        RecipientBudget budget, int unhealthyAfterFailures, Duration unhealthyCooldown) {
+        this.channel = channel;
+        this.id = id;
+        this.credential = credential;
+        this.rateLimiter = rateLimiter;
+        this.budget = budget;
+        this.unhealthyAfterFailures = unhealthyAfterFailures;
+        this.unhealthyCooldownNanos = unhealthyCooldown.toNanos();
+        this.unhealthyUntilNanos = new AtomicLong(System.nanoTime());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** False while the provider is throttling this identity or it is cooling down after failures. */
+    public boolean isAvailable() {
+        return isHealthy() && !rateLimiter.isPaused();
+    }
+
+    public boolean isHealthy() {
+        return unhealthyUntilNanos.get() - System.nanoTime() <= 0;
+    }
+
+    /** Counts {@code recipient} against the budget; always true without a budget. */
+    public boolean tryAdmit(String recipient) {
+        return budget == null || budget.tryAdmit(recipient);
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /** A failure caused by the identity itself (not by the message or the recipient). */
+    public void recordFailure() {
+        if (unhealthyAfterFailures <= 0) {
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= unhealthyAfterFailures) {
+            consecutiveFailures.set(0);
+            unhealthyUntilNanos.set(System.nanoTime() + unhealthyCooldownNanos);
+            log.warn("{} sender {} marked unhealthy for {} ms after {} consecutive failures",
+                    channel, id, unhealthyCooldownNanos / 1_000_000, unhealthyAfterFailures);
+        }
+    }
+
+    /**
+     * Counts {@code call} against this sender from subscription until it terminates or is
+     * cancelled, including the time spent waiting for the rate limiter.
+     */
+    public <T> Mono<T> track(Mono<T> call) {
+        return Mono.defer(() -> {
+            inFlight.incrementAndGet();
+            return call.doFinally(signal -> inFlight.decrementAndGet());
+        });
+    }
+}
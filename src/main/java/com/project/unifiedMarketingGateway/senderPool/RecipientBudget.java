@@ -0,0 +1,84 @@
+package com.project.unifiedMarketingGateway.senderPool;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Limit on the number of unique recipients a sender may reach in a rolling window, e.g. the
+ * messaging tier of a WhatsApp phone number. Recipients already reached in the window do not
+ * use up more of the budget.
+ * <p>
+ * The budget lives in the memory of one node. When several gateway nodes send from the same
+ * number, each is given its share of the limit (see {@code whatsapp.budget.nodes}) so that
+ * together they stay within it.
+ */
+public class RecipientBudget {
+
+    private final int limit;
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final Map<String, Long> firstSendMillis = new ConcurrentHashMap<>();
+
+    // no entry expires before this, so a full budget is not rescanned on every attempt
+    private long nextExpiryMillis;
+
+    public RecipientBudget(int limit, Duration window) {
+        this(limit, window, System::currentTimeMillis);
+    }
+
+    RecipientBudget(int limit, Duration window, LongSupplier clock) {
+        this.limit = limit;
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /** Recipients counted against the budget in the current window. */
+    public synchronized int getUsed() {
+        expire(clock.getAsLong());
+        return firstSendMillis.size();
+    }
+
+    /**
+     * Counts {@code recipient} against the budget unless it was already counted in the
+     * window. Returns false, without counting, when the budget is used up.
+     */
+    public synchronized boolean tryAdmit(String recipient) {
+        long now = clock.getAsLong();
+        Long first = firstSendMillis.get(recipient);
+        if (first != null && now - first < windowMillis) {
+            return true;
+        }
+        if (first == null && firstSendMillis.size() >= limit) {
+            if (now < nextExpiryMillis) {
+                return false;
+            }
+            expire(now);
+            if (firstSendMillis.size() >= limit) {
+                return false;
+            }
+        }
+        firstSendMillis.put(recipient, now);
+        return true;
+    }
+
+    private void expire(long now) {
+        long oldest = Long.MAX_VALUE;
+        Iterator<Long> it = firstSendMillis.values().iterator();
+        while (it.hasNext()) {
+            long first = it.next();
+            if (now - first >= windowMillis) {
+                it.remove();
+            } else {
+                oldest = Math.min(oldest, first);
+            }
+        }
+        nextExpiryMillis = oldest == Long.MAX_VALUE ? now : oldest + windowMillis;
+    }
+}
@@ -0,0 +1,125 @@
+package com.project.unifiedMarketingGateway.senderPool;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The provider identities a channel can send as. Each identity has its own rate limit at
+ * the provider, so the channel's throughput grows with the size of the pool.
+ */
+public class SenderPool {
+
+    @Getter
+    private final String channel;
+
+    @Getter
+    private final List<PooledSender> senders;
+
+    private final Map<String, PooledSender> sendersById = new LinkedHashMap<>();
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    public SenderPool(String channel, List<PooledSender> senders) {
+        if (senders == null || senders.isEmpty()) {
+            throw new IllegalArgumentException(channel + " sender pool needs at least one sender");
+        }
+        this.channel = channel;
+        this.senders = List.copyOf(senders);
+        for (PooledSender sender : this.senders) {
+            if (sendersById.putIfAbsent(sender.getId(), sender) != null) {
+                throw new IllegalArgumentException("Duplicate " + channel + " sender " + sender.getId());
+            }
+        }
+    }
+
+    public Optional<PooledSender> get(String id) {
+        return Optional.ofNullable(id == null ? null : sendersById.get(id));
+    }
+
+    public int size() {
+        return senders.size();
+    }
+
+    /** True when no sender is available: all are throttled by the provider or cooling down. */
+    public boolean isDegraded() {
+        for (PooledSender sender : senders) {
+            if (sender.isAvailable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The sender with the fewest sends in flight, preferring senders that are available (not
+     * paused by provider throttling, not cooling down after failures). When no sender is
+     * available the least loaded one is still returned and its limiter holds the send until
+     * the pause ends. Ties rotate so an idle pool spreads load evenly.
+     */
+    public PooledSender leastLoaded() {
+        return ranked().get(0);
+    }
+
+    /**
+     * The sender {@code recipient} sticks to, counting the recipient against its budget. Every
+     * recipient has a fixed order of preference over the senders (rendezvous hashing of sender
+     * id and recipient, the same on every node and stable when senders are added); the first
+     * available sender with budget left is used, so a recipient keeps receiving from one
+     * number and uses up one unique-recipient slot. When no sender is available the first one
+     * with budget left is still returned and its limiter holds the send until the pause ends.
+     * Empty when every sender's budget is used up.
+     */
+    public Optional<PooledSender> stickyFor(String recipient) {
+        List<PooledSender> preferred = preferenceOrder(recipient);
+        for (PooledSender sender : preferred) {
+            if (sender.isAvailable() && sender.tryAdmit(recipient)) {
+                return Optional.of(sender);
+            }
+        }
+        for (PooledSender sender : preferred) {
+            if (sender.tryAdmit(recipient)) {
+                return Optional.of(sender);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private List<PooledSender> preferenceOrder(String recipient) {
+        if (senders.size() == 1) {
+            return senders;
+        }
+        List<PooledSender> ordered = new ArrayList<>(senders);
+        ordered.sort(Comparator.comparingLong((PooledSender sender) -> weight(sender.getId(), recipient)).reversed());
+        return ordered;
+    }
+
+    // String.hashCode is specified, so every node computes the same weights
+    private static long weight(String senderId, String recipient) {
+        long h = senderId.hashCode() * 0x9E3779B97F4A7C15L + recipient.hashCode();
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB93FE1A5D35BL;
+        return h ^ (h >>> 33);
+    }
+
+    private record Load(PooledSender sender, boolean available, int inFlight) {}
+
+    private List<PooledSender> ranked() {
+        int n = senders.size();
+        int start = Math.floorMod(cursor.getAndIncrement(), n);
+        // snapshot the load first, it keeps changing while we sort
+        List<Load> loads = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            PooledSender sender = senders.get((start + i) % n);
+            loads.add(new Load(sender, sender.isAvailable(), sender.getInFlight()));
+        }
+        // stable sort keeps the rotation order between equally loaded senders
+        loads.sort(Comparator.comparing((Load load) -> !load.available()).thenComparingInt(Load::inFlight));
+        return loads.stream().map(Load::sender).toList();
+    }
+}
@@ -0,0 +1,207 @@
+package com.project.unifiedMarketingGateway.store;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Collects rows written on the send path and hands them to {@code writer} in batches of at
+ * most {@code maxBatchSize}: every {@code flushInterval}, as soon as a full batch is pending,
+ * and synchronously on {@link #stop()}. With sequence ids and Hibernate JDBC batching a
+ * {@code saveAll} of a batch is a few statements instead of one round-trip per row.
+ * <p>
+ * Flushes run one at a time. A batch whose write fails is queued again for the next flush.
+ * Once its rows have failed {@code maxAttempts} flushes, the batch is split in halves until
+ * the rows that cannot be written are isolated; those are dropped, logged and counted in
+ * {@link #getDroppedCount()}, and the rest is written. If no part of the batch can be written
+ * the database is presumably down, and the whole batch is kept for another round of attempts.
+ */
+@Slf4j
+public class WriteBehindQueue<T> {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /** A row and the number of flushes whose write of it failed. */
+    private static final class Pending<T> {
+        private final T row;
+        private int failedAttempts;
+
+        private Pending(T row) {
+            this.row = row;
+        }
+    }
+
+    @Getter
+    private final String name;
+    private final Consumer<List<T>> writer;
+    private final int maxBatchSize;
+    private final Duration flushInterval;
+    private final int maxAttempts;
+
+    private final Queue<Pending<T>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicBoolean sizeFlushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    private Scheduler scheduler;
+    private Disposable ticker;
+
+    public WriteBehindQueue(String name, Consumer<List<T>> writer, int maxBatchSize, Duration flushInterval) {
+        this(name, writer, maxBatchSize, flushInterval, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    public WriteBehindQueue(String name, Consumer<List<T>> writer, int maxBatchSize, Duration flushInterval,
+                            int maxAttempts) {
+        this.name = name;
+        this.writer = writer;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.flushInterval = flushInterval;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public void start() {
+        scheduler = Schedulers.newSingle(name + "-flush", true);
+        ticker = Flux.interval(flushInterval, scheduler).subscribe(tick -> flushQuietly());
+    }
+
+    public void stop() {
+        if (ticker != null) {
+            ticker.dispose();
+            scheduler.dispose();
+        }
+        int flushed = flush();
+        log.info("Flushed {} buffered {} rows on shutdown", flushed, name);
+    }
+
+    public void add(T row) {
+        pending.add(new Pending<>(row));
+        if (pendingCount.incrementAndGet() >= maxBatchSize && scheduler != null
+                && sizeFlushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                sizeFlushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /** Rows given up on because they could not be written on their own. */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Writes everything pending when the call starts and returns the number of rows written.
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            int written = 0;
+            int remaining = pendingCount.get();
+            while (remaining > 0) {
+                List<Pending<T>> batch = new ArrayList<>(Math.min(remaining, maxBatchSize));
+                Pending<T> next;
+                while (batch.size() < maxBatchSize && (next = pending.poll()) != null) {
+                    batch.add(next);
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                pendingCount.addAndGet(-batch.size());
+                remaining -= batch.size();
+                try {
+                    writer.accept(rows(batch));
+                    written += batch.size();
+                } catch (RuntimeException e) {
+                    boolean exhausted = false;
+                    for (Pending<T> p : batch) {
+                        exhausted |= ++p.failedAttempts >= maxAttempts;
+                    }
+                    if (!exhausted) {
+                        requeue(batch);
+                        throw e;
+                    }
+                    written += writeIsolatingFailures(batch, e);
+                }
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Writes the halves of a batch that failed as a whole, recursively, and drops the single
+     * rows that still fail. Returns the number of rows written.
+     */
+    private int writeIsolatingFailures(List<Pending<T>> batch, RuntimeException batchFailure) {
+        List<Pending<T>> rejected = new ArrayList<>();
+        int written = batch.size() == 1 ? 0 : split(batch, rejected);
+        if (written == 0) {
+            // nothing got through, so the rows are not to blame: start another round of attempts
+            batch.forEach(p -> p.failedAttempts = 0);
+            requeue(batch);
+            throw batchFailure;
+        }
+        if (rejected.isEmpty()) {
+            return written;
+        }
+        droppedCount.addAndGet(rejected.size());
+        log.error("{} dropped {} rows that failed {} writes and could not be written on their own: {}",
+                name, rejected.size(), maxAttempts, batchFailure.toString());
+        return written;
+    }
+
+    private int writeOrSplit(List<Pending<T>> batch, List<Pending<T>> rejected) {
+        try {
+            writer.accept(rows(batch));
+            return batch.size();
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                rejected.add(batch.get(0));
+                return 0;
+            }
+            return split(batch, rejected);
+        }
+    }
+
+    private int split(List<Pending<T>> batch, List<Pending<T>> rejected) {
+        int mid = batch.size() / 2;
+        return writeOrSplit(batch.subList(0, mid), rejected) + writeOrSplit(batch.subList(mid, batch.size()), rejected);
+    }
+
+    private void requeue(List<Pending<T>> batch) {
+        pending.addAll(batch);
+        pendingCount.addAndGet(batch.size());
+    }
+
+    private static <T> List<T> rows(List<Pending<T>> batch) {
+        List<T> rows = new ArrayList<>(batch.size());
+        for (Pending<T> p : batch) {
+            rows.add(p.row);
+        }
+        return rows;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("{} flush failed, {} rows kept for the next attempt: {}", name, pendingCount.get(), e.toString());
+        }
+    }
+}
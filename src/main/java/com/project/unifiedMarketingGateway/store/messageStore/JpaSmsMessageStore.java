@@ -2,17 +2,53 @@ package com.project.unifiedMarketingGateway.store.messageStore;
 
 import com.project.unifiedMarketingGateway.entity.SmsMessageEntity;
 import com.project.unifiedMarketingGateway.enums.SmsMessageStatus;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
 import com.project.unifiedMarketingGateway.repository.SmsMessageRepository;
+import com.project.unifiedMarketingGateway.store.WriteBehindQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Optional;
+
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "storage.mode", havingValue = "split", matchIfMissing = true)
 @RequiredArgsConstructor
 public class JpaSmsMessageStore implements SmsMessageStore {
 
     private final SmsMessageRepository repository;
+    private final MetricsService metricsService;
+
+    @Value("${storage.writeBehind.maxBatchSize:500}")
+    private int maxBatchSize;
+
+    @Value("${storage.writeBehind.flushIntervalMillis:200}")
+    private long flushIntervalMillis;
+
+    @Value("${storage.writeBehind.maxAttempts:5}")
+    private int maxAttempts;
+
+    // rows are insert-only, so they are saved in batches off the send path
+    private WriteBehindQueue<SmsMessageEntity> inserts;
+
+    @PostConstruct
+    void start() {
+        inserts = new WriteBehindQueue<>("sms-message", repository::saveAll, maxBatchSize,
+                Duration.ofMillis(flushIntervalMillis), maxAttempts);
+        inserts.start();
+        metricsService.registerWriteBehindQueue(inserts);
+    }
+
+    @PreDestroy
+    void stop() {
+        inserts.stop();
+    }
 
     @Override
     public void storeQueued(String recipient) {
@@ -21,7 +57,7 @@ public class JpaSmsMessageStore implements SmsMessageStore {
                 .status(SmsMessageStatus.QUEUED)
                 .createdAtEpochMillis(System.currentTimeMillis())
                 .build();
-        repository.save(entity);
+        inserts.add(entity);
     }
 
     @Override
@@ -32,7 +68,7 @@ public class JpaSmsMessageStore implements SmsMessageStore {
                 .status(SmsMessageStatus.SENT)
                 .createdAtEpochMillis(System.currentTimeMillis())
                 .build();
-        repository.save(entity);
+        inserts.add(entity);
     }
 
     @Override
@@ -43,6 +79,25 @@ public class JpaSmsMessageStore implements SmsMessageStore {
                 .errorMessage(errorMessage)
                 .createdAtEpochMillis(System.currentTimeMillis())
                 .build();
-        repository.save(entity);
+        inserts.add(entity);
+    }
+
+    @Override
+    public Optional<SmsMessageEntity> findBySid(String sid) {
+        Optional<SmsMessageEntity> entity = repository.findBySid(sid);
+        if (entity.isEmpty()) {
+            // also waits for a flush the ticker has in progress, whose rows are not visible yet
+            flushInserts();
+            entity = repository.findBySid(sid);
+        }
+        return entity;
+    }
+
+    private void flushInserts() {
+        try {
+            inserts.flush();
+        } catch (RuntimeException e) {
+            log.warn("{} flush on lookup failed, the row may not be visible yet: {}", inserts.getName(), e.toString());
+        }
     }
 }
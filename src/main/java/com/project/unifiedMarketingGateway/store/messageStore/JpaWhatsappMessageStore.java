@@ -3,23 +3,55 @@ package com.project.unifiedMarketingGateway.store.messageStore;
 import com.project.unifiedMarketingGateway.entity.WhatsappMessageEntity;
 import com.project.unifiedMarketingGateway.enums.WhatsappMessageStatus;
 import com.project.unifiedMarketingGateway.models.WhatsappMessage;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
 import com.project.unifiedMarketingGateway.repository.WhatsappMessageRepository;
+import com.project.unifiedMarketingGateway.store.WriteBehindQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.Optional;
 
 @Service
+@ConditionalOnProperty(name = "storage.mode", havingValue = "split", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class JpaWhatsappMessageStore implements WhatsappMessageStore {
 
     private final WhatsappMessageRepository repository;
+    private final MetricsService metricsService;
+
+    @Value("${storage.writeBehind.maxBatchSize:500}")
+    int maxBatchSize;
+
+    @Value("${storage.writeBehind.flushIntervalMillis:200}")
+    long flushIntervalMillis;
+
+    @Value("${storage.writeBehind.maxAttempts:5}")
+    int maxAttempts;
+
+    // outbound rows are saved in batches off the send path; webhooks and lookups flush on a miss
+    private WriteBehindQueue<WhatsappMessageEntity> inserts;
+
+    @PostConstruct
+    void start() {
+        inserts = new WriteBehindQueue<>("whatsapp-message", repository::saveAll, maxBatchSize,
+                Duration.ofMillis(flushIntervalMillis), maxAttempts);
+        inserts.start();
+        metricsService.registerWriteBehindQueue(inserts);
+    }
+
+    @PreDestroy
+    void stop() {
+        inserts.stop();
+    }
 
     @Override
-    @Transactional
     public void saveOutbound(WhatsappMessage message) {
         if (message == null || message.getWaMessageId() == null) {
             log.warn("Attempt to save outbound with null waMessageId - ignoring");
@@ -38,11 +70,10 @@ public class JpaWhatsappMessageStore implements WhatsappMessageStore {
                 .errorDetails(message.getErrorDetails())
                 .build();
 
-        repository.save(entity);
+        inserts.add(entity);
     }
 
     @Override
-    @Transactional
     public void updateStatus(String waMessageId,
             String recipient,
             WhatsappMessageStatus status,
@@ -50,7 +81,7 @@ public class JpaWhatsappMessageStore implements WhatsappMessageStore {
             String errorDetails) {
         if (waMessageId == null) return;
 
-        repository.findByWaMessageId(waMessageId).ifPresentOrElse(entity -> {
+        find(waMessageId).ifPresentOrElse(entity -> {
             entity.setStatus(status);
             entity.setLastUpdatedEpochMillis(System.currentTimeMillis());
             entity.setErrorCode(errorCode);
@@ -72,9 +103,18 @@ public class JpaWhatsappMessageStore implements WhatsappMessageStore {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public Optional<WhatsappMessage> findByWaMessageId(String waMessageId) {
-        return repository.findByWaMessageId(waMessageId).map(this::toDomain);
+        return find(waMessageId).map(this::toDomain);
+    }
+
+    private Optional<WhatsappMessageEntity> find(String waMessageId) {
+        Optional<WhatsappMessageEntity> entity = repository.findByWaMessageId(waMessageId);
+        if (entity.isEmpty()) {
+            // also waits for a flush the ticker has in progress, whose rows are not visible yet
+            flushInserts();
+            entity = repository.findByWaMessageId(waMessageId);
+        }
+        return entity;
     }
 
     private WhatsappMessage toDomain(WhatsappMessageEntity e) {
@@ -90,4 +130,12 @@ public class JpaWhatsappMessageStore implements WhatsappMessageStore {
                 .errorDetails(e.getErrorDetails())
                 .build();
     }
-}
\ No newline at end of file
+
+    private void flushInserts() {
+        try {
+            inserts.flush();
+        } catch (RuntimeException e) {
+            log.warn("{} flush on lookup failed, the row may not be visible yet: {}", inserts.getName(), e.toString());
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.project.unifiedMarketingGateway.store.messageStore;
 
+import com.project.unifiedMarketingGateway.entity.SmsMessageEntity;
+
+import java.util.Optional;
+
 public interface SmsMessageStore {
 
     void storeQueued(String recipient);
@@ -7,4 +11,6 @@ public interface SmsMessageStore {
     void storeSent(String sid, String recipient);
 
     void storeFailed(String recipient, String errorMessage);
+
+    Optional<SmsMessageEntity> findBySid(String sid);
 }
@@ -0,0 +1,61 @@
+package com.project.unifiedMarketingGateway.store.messageStore;
+
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.entity.SmsMessageEntity;
+import com.project.unifiedMarketingGateway.enums.SmsMessageStatus;
+import com.project.unifiedMarketingGateway.processor.DeliveryStateService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+import static com.project.unifiedMarketingGateway.enums.ClientType.SMS;
+
+/**
+ * SMS message store of the unified storage mode: the send's delivery_state row carries the
+ * Twilio sid and status, so the queued/sent/failed rows are not written and lookups by sid
+ * are served from that row.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.mode", havingValue = "unified")
+public class UnifiedSmsMessageStore implements SmsMessageStore {
+
+    @Autowired
+    DeliveryStateService deliveryStateService;
+
+    @Override
+    public void storeQueued(String recipient) {
+        // recorded by the claim of the send
+    }
+
+    @Override
+    public void storeSent(String sid, String recipient) {
+        // recorded by the SENT delivery state of the send
+    }
+
+    @Override
+    public void storeFailed(String recipient, String errorMessage) {
+        // recorded by the FAILED delivery state of the send
+    }
+
+    @Override
+    public Optional<SmsMessageEntity> findBySid(String sid) {
+        return deliveryStateService.findByProviderMessageId(SMS.getValue(), sid).map(this::toEntity);
+    }
+
+    private SmsMessageEntity toEntity(DeliveryStateEntity e) {
+        return SmsMessageEntity.builder()
+                .sid(e.getProviderMessageId())
+                .recipient(e.getRecipient())
+                .status(switch (e.getStatus()) {
+                    case CREATED, QUEUED -> SmsMessageStatus.QUEUED;
+                    case FAILED -> SmsMessageStatus.FAILED;
+                    default -> SmsMessageStatus.SENT;
+                })
+                .errorMessage(e.getFailureReason())
+                .createdAtEpochMillis(e.getCreatedAtEpochMillis())
+                .lastUpdatedEpochMillis(e.getUpdatedAtEpochMillis())
+                .build();
+    }
+}
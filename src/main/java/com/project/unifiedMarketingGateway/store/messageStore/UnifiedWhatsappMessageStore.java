@@ -0,0 +1,78 @@
+package com.project.unifiedMarketingGateway.store.messageStore;
+
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.enums.WhatsappMessageStatus;
+import com.project.unifiedMarketingGateway.models.WhatsappMessage;
+import com.project.unifiedMarketingGateway.processor.DeliveryStateService;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+import static com.project.unifiedMarketingGateway.enums.ClientType.WHATSAPP;
+
+/**
+ * WhatsApp message store of the unified storage mode: the send's delivery_state row already
+ * carries the wamid and its status, so nothing is written at send time and lookups are
+ * served from that row.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "storage.mode", havingValue = "unified")
+public class UnifiedWhatsappMessageStore implements WhatsappMessageStore {
+
+    @Autowired
+    DeliveryStateService deliveryStateService;
+
+    @Autowired
+    DeliveryStateRepository repository;
+
+    @Override
+    public void saveOutbound(WhatsappMessage message) {
+        // the SENT delivery state of the send records the wamid
+    }
+
+    @Override
+    public void updateStatus(String waMessageId,
+            String recipient,
+            WhatsappMessageStatus status,
+            String errorCode,
+            String errorDetails) {
+        // status and error details are applied through DeliveryStateService, only the code is kept here
+        if (waMessageId == null || errorCode == null) return;
+        if (repository.updateErrorCode(WHATSAPP.getValue(), waMessageId, errorCode) == 0) {
+            log.info("No send found for webhook waMessageId={}", waMessageId);
+        }
+    }
+
+    @Override
+    public Optional<WhatsappMessage> findByWaMessageId(String waMessageId) {
+        return deliveryStateService.findByProviderMessageId(WHATSAPP.getValue(), waMessageId).map(this::toDomain);
+    }
+
+    private WhatsappMessage toDomain(DeliveryStateEntity e) {
+        return WhatsappMessage.builder()
+                .waMessageId(e.getProviderMessageId())
+                .recipient(e.getRecipient())
+                .mediaType(e.getMediaType())
+                .requestId(e.getRequestId())
+                .createdAtEpochMillis(e.getCreatedAtEpochMillis())
+                .lastUpdatedEpochMillis(e.getUpdatedAtEpochMillis())
+                .status(toMessageStatus(e))
+                .errorCode(e.getErrorCode())
+                .errorDetails(e.getFailureReason())
+                .build();
+    }
+
+    private WhatsappMessageStatus toMessageStatus(DeliveryStateEntity e) {
+        return switch (e.getStatus()) {
+            case DELIVERED -> WhatsappMessageStatus.DELIVERED;
+            case READ -> WhatsappMessageStatus.READ;
+            case FAILED -> WhatsappMessageStatus.FAILED;
+            default -> WhatsappMessageStatus.SENT;
+        };
+    }
+}
@@ -1,6 +1,8 @@
 package com.project.unifiedMarketingGateway.store.responseStore;
 
+import com.project.unifiedMarketingGateway.enums.StorageMode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -13,7 +15,12 @@ public class WhatsappResponseStore {
     // in-memory store for demo. Replace with DB persistence if desired.
     private final ConcurrentMap<String, String> responses = new ConcurrentHashMap<>();
 
+    // unified storage mode keeps only the send's delivery_state row, not the provider body
+    @Value("${storage.mode:split}")
+    StorageMode storageMode;
+
     public void storeResponse(String recipientId, String responseBody) {
+        if (storageMode == StorageMode.UNIFIED) return;
         if (recipientId == null) recipientId = "unknown";
         responses.put(recipientId, responseBody == null ? "" : responseBody);
         log.info("Stored response for {} (len={})", recipientId, responseBody == null ? 0 : responseBody.length());
@@ -7,4 +7,10 @@ import java.util.List;
 public interface SendNotificationRequestValidator {
 
     public List<String> validateSendNotificationRequest(SendNotificationRequest sendNotificationRequest);
+
+    /**
+     * Validates only the message content of a bulk request. Recipients of a bulk
+     * request are streamed separately, so the recipient list checks do not apply.
+     */
+    public List<String> validateBulkNotificationRequest(SendNotificationRequest sendNotificationRequest);
 }
@@ -1,9 +1,12 @@
 package com.project.unifiedMarketingGateway.validators;
 
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.enums.MediaType;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import io.micrometer.common.util.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,6 +16,9 @@ import static com.project.unifiedMarketingGateway.constants.Constants.*;
 @Service
 public class WhatsappSendNotificationRequestValidator implements SendNotificationRequestValidator{
 
+    @Autowired
+    FallbackPolicy fallbackPolicy;
+
     @Override
     public List<String> validateSendNotificationRequest(SendNotificationRequest request)
     {
@@ -24,8 +30,31 @@ public class WhatsappSendNotificationRequestValidator implements SendNotificatio
         if(request.getRecipientList().size() > 100)
             validationErrorList.add(MAX_RECIPIENT_LIST_SIZE);
 
+        validateContent(request, validationErrorList);
+        return validationErrorList;
+    }
+
+    @Override
+    public List<String> validateBulkNotificationRequest(SendNotificationRequest request)
+    {
+        List<String> validationErrorList = new ArrayList<>();
+
+        if(CollectionUtils.isEmpty(request.getMediaTypeList())) {
+            validationErrorList.add(ERROR_EMPTY_MEDIA_TYPE_LIST);
+            return validationErrorList;
+        }
+
+        validateContent(request, validationErrorList);
+        return validationErrorList;
+    }
+
+    private void validateContent(SendNotificationRequest request, List<String> validationErrorList)
+    {
         List<MediaType> mediaTypeList = request.getMediaTypeList();
 
+        if(!fallbackPolicy.hasChain(request.getFallbackChain()))
+            validationErrorList.add(ERROR_UNKNOWN_FALLBACK_CHAIN);
+
         if(mediaTypeList.isEmpty())
             validationErrorList.add(ERROR_EMPTY_MEDIA_TYPE_LIST);
         mediaTypeList.stream().forEach(
@@ -50,6 +79,5 @@ public class WhatsappSendNotificationRequestValidator implements SendNotificatio
                     }
                 }
         );
-        return validationErrorList;
     }
 }
@@ -0,0 +1,83 @@
+package com.project.unifiedMarketingGateway.builders;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayloadTemplateTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testRenderedPayloadMatchesPerRecipientSerialization() throws Exception {
+        WhatsappPayloadBuilder builder = new WhatsappPayloadBuilder();
+        builder.objectMapper = objectMapper;
+
+        PayloadTemplate template = builder.buildImageTemplate("https://cdn.example.com/a.png", "Caption with \"quotes\"");
+
+        JsonNode expected = objectMapper.valueToTree(
+                builder.buildImagePayload("919999999999", "https://cdn.example.com/a.png", "Caption with \"quotes\""));
+        assertEquals(expected, objectMapper.readTree(template.render("919999999999")));
+    }
+
+    @Test
+    void testRecipientIsJsonEscaped() throws Exception {
+        TelegramPayloadBuilder builder = new TelegramPayloadBuilder();
+        builder.objectMapper = objectMapper;
+        PayloadTemplate template = builder.buildTextTemplate("Hello");
+
+        JsonNode json = objectMapper.readTree(template.render("we\"ird\\id"));
+        assertEquals("we\"ird\\id", json.get("chat_id").asText());
+        assertEquals("Hello", json.get("text").asText());
+    }
+
+    @Test
+    void testBodyInserterWritesCompletePayloadWithContentLength() {
+        PayloadTemplate template = PayloadTemplate.compile(objectMapper, r -> Map.of("chat_id", r, "text", "Hi"));
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create("/bot/sendMessage"));
+
+        template.bodyFor("42").insert(request, new BodyInserter.Context() {
+            @Override
+            public List<HttpMessageWriter<?>> messageWriters() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public Optional<ServerHttpRequest> serverRequest() {
+                return Optional.empty();
+            }
+
+            @Override
+            public Map<String, Object> hints() {
+                return Collections.emptyMap();
+            }
+        }).block();
+
+        String body = DataBufferUtils.join(request.getBody())
+                .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+                .block();
+        assertEquals(template.render("42"), body);
+        assertEquals(body.getBytes(StandardCharsets.UTF_8).length, request.getHeaders().getContentLength());
+    }
+
+    @Test
+    void testPayloadWithoutRecipientIsRejected() {
+        assertThrows(IllegalStateException.class,
+                () -> PayloadTemplate.compile(objectMapper, r -> Map.of("text", "no recipient")));
+    }
+}
@@ -0,0 +1,89 @@
+package com.project.unifiedMarketingGateway.cache;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpiringCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void testEntriesExpireAfterTtl() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test", Duration.ofSeconds(10), 10, clock::get);
+        cache.put("k", "v");
+
+        clock.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertEquals("v", cache.getIfPresent("k"));
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertNull(cache.getIfPresent("k"));
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>("test", Duration.ofMinutes(1), 100, clock::get);
+        for (int i = 0; i < 1000; i++) {
+            clock.incrementAndGet();
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 100, "size " + cache.size());
+        assertEquals(999, cache.getIfPresent(999));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvictedFirst() {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>("test", Duration.ofMinutes(1), 3, clock::get);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+
+        assertEquals(1, cache.getIfPresent(1));
+        cache.put(4, 4);
+
+        assertEquals(3, cache.size());
+        assertNull(cache.getIfPresent(2));
+        assertEquals(1, cache.getIfPresent(1));
+        assertEquals(4, cache.getIfPresent(4));
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test", Duration.ofMinutes(1), 10, clock::get);
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<String> upstream = Sinks.one();
+
+        Mono<String> first = cache.getOrLoad("url", () -> {
+            loads.incrementAndGet();
+            return upstream.asMono();
+        }).cache();
+        Mono<String> second = cache.getOrLoad("url", () -> {
+            loads.incrementAndGet();
+            return Mono.just("other");
+        }).cache();
+        first.subscribe();
+        second.subscribe();
+
+        upstream.tryEmitValue("file-id");
+        assertEquals("file-id", first.block(Duration.ofSeconds(1)));
+        assertEquals("file-id", second.block(Duration.ofSeconds(1)));
+        assertEquals(1, loads.get());
+        assertEquals("file-id", cache.getIfPresent("url"));
+    }
+
+    @Test
+    void testFailedLoadIsNotCached() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>("test", Duration.ofMinutes(1), 10, clock::get);
+
+        assertThrows(IllegalStateException.class,
+                () -> cache.getOrLoad("url", () -> Mono.error(new IllegalStateException("boom"))).block());
+        assertEquals("ok", cache.getOrLoad("url", () -> Mono.just("ok")).block());
+    }
+}
@@ -0,0 +1,108 @@
+package com.project.unifiedMarketingGateway.configs;
+
+import com.project.unifiedMarketingGateway.cache.ExpiringCache;
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.entity.FallbackPlan;
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.repository.FallbackPlanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static com.project.unifiedMarketingGateway.enums.ClientType.SMS;
+import static com.project.unifiedMarketingGateway.enums.ClientType.TELEGRAM;
+import static com.project.unifiedMarketingGateway.enums.ClientType.WHATSAPP;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FallbackPolicyTest {
+
+    private final FallbackPlanRepository planRepository = mock(FallbackPlanRepository.class);
+    private FallbackPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        policy = new FallbackPolicy();
+        policy.planRepository = planRepository;
+        policy.planCache = new ExpiringCache<>("test-plans", Duration.ofMinutes(10), 100);
+        policy.environment = new MockEnvironment()
+                .withProperty("fallback.chains.three-hop", "whatsapp:10, telegram:5, sms");
+        policy.defaultChainSpec = "Whatsapp:30,SMS";
+        policy.isFallBackRoutingEnabled = true;
+        policy.loadChains();
+        when(planRepository.findById(anyString())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void testChainSpecRoundTrips() {
+        FallbackChain chain = FallbackChain.parse("whatsapp:10, TELEGRAM:5 ,SMS");
+
+        assertEquals("Whatsapp:10,Telegram:5,SMS", chain.spec());
+        assertEquals(List.of(new FallbackChain.Hop(SMS.getValue(), Duration.ZERO)), chain.after(TELEGRAM.getValue()));
+        assertEquals(Optional.of(Duration.ofMinutes(5)), chain.timeoutOf(TELEGRAM.getValue()));
+        assertEquals(Optional.empty(), chain.timeoutOf(SMS.getValue()));
+        assertThrows(IllegalArgumentException.class, () -> FallbackChain.parse("Whatsapp,SMS,Whatsapp"));
+        assertThrows(IllegalArgumentException.class, () -> FallbackChain.parse("Whatsapp,Email"));
+    }
+
+    @Test
+    void testNamedChainIsPlannedOnceAndFollowed() {
+        assertTrue(policy.hasChain("three-hop"));
+        assertFalse(policy.hasChain("missing"));
+
+        policy.planFor("req-1", WHATSAPP.getValue(), "three-hop");
+
+        verify(planRepository).save(argThat((FallbackPlan plan) ->
+                plan.getRequestId().equals("req-1") && plan.getChain().equals("Whatsapp:10,Telegram:5,SMS")));
+        assertEquals(TELEGRAM.getValue(), policy.nextHops("req-1", WHATSAPP.getValue()).get(0).channel());
+        assertEquals(Duration.ofMinutes(10).toMillis(), policy.hopTimeoutMillis("req-1", WHATSAPP.getValue()));
+        assertTrue(policy.shouldFallback("req-1", TELEGRAM.getValue(), DeliveryStatus.FAILED));
+        assertFalse(policy.shouldFallback("req-1", SMS.getValue(), DeliveryStatus.FAILED));
+        assertFalse(policy.shouldFallback("req-1", WHATSAPP.getValue(), DeliveryStatus.DELIVERED));
+        verify(planRepository, never()).findById(any());
+    }
+
+    @Test
+    void testPlanIsLoadedFromTheTableOnceOnAnotherNode() {
+        when(planRepository.findById("req-1"))
+                .thenReturn(Optional.of(new FallbackPlan("req-1", "Whatsapp:30,SMS", 0)));
+
+        DeliveryStateEntity stuck = DeliveryStateEntity.builder()
+                .requestId("req-1").channel(WHATSAPP.getValue()).status(DeliveryStatus.SENT).build();
+        assertTrue(policy.shouldFallback(stuck));
+        assertEquals(Duration.ofMinutes(30).toMillis(), policy.hopTimeoutMillis("req-1", WHATSAPP.getValue()));
+        stuck.setFallbackTriggered(true);
+        assertFalse(policy.shouldFallback(stuck));
+
+        verify(planRepository, times(1)).findById("req-1");
+    }
+
+    @Test
+    void testRequestWithoutPlanDoesNotFallBack() {
+        policy.planFor("req-2", SMS.getValue(), null);
+
+        assertFalse(policy.shouldFallback("req-2", SMS.getValue(), DeliveryStatus.FAILED));
+        assertFalse(policy.shouldFallback("req-3", WHATSAPP.getValue(), DeliveryStatus.FAILED));
+        assertEquals(0, policy.hopTimeoutMillis("req-3", WHATSAPP.getValue()));
+        verify(planRepository, never()).save(any());
+        verify(planRepository, never()).findById("req-2");
+        verify(planRepository, times(1)).findById("req-3");
+    }
+
+    @Test
+    void testNothingIsPlannedOrLookedUpWhileRoutingIsDisabled() {
+        policy.isFallBackRoutingEnabled = false;
+
+        policy.planFor("req-1", WHATSAPP.getValue(), "three-hop");
+
+        assertFalse(policy.shouldFallback("req-1", WHATSAPP.getValue(), DeliveryStatus.FAILED));
+        assertEquals(0, policy.hopTimeoutMillis("req-1", WHATSAPP.getValue()));
+        verifyNoInteractions(planRepository);
+    }
+}
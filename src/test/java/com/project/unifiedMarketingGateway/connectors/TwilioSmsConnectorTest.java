@@ -0,0 +1,86 @@
+package com.project.unifiedMarketingGateway.connectors;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwilioSmsConnectorTest {
+
+    private final AtomicReference<String> receivedBody = new AtomicReference<>();
+    private final AtomicReference<String> receivedAuth = new AtomicReference<>();
+    private final AtomicReference<HttpResponseStatus> responseStatus = new AtomicReference<>(HttpResponseStatus.CREATED);
+
+    private DisposableServer server;
+    private TwilioSmsConnector connector;
+
+    @BeforeEach
+    void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.post("/2010-04-01/Accounts/AC123/Messages.json", (req, res) -> {
+                    receivedAuth.set(req.requestHeaders().get("Authorization"));
+                    return req.receive().aggregate().asString(StandardCharsets.UTF_8)
+                            .doOnNext(receivedBody::set)
+                            .then(res.status(responseStatus.get())
+                                    .header("Content-Type", "application/json")
+                                    .sendString(Mono.just("{\"sid\":\"SM42\",\"status\":\"queued\"}"))
+                                    .then());
+                }))
+                .bindNow();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("sms.http.pool.maxConnections", "4")
+                .withProperty("sms.http.responseTimeoutSeconds", "5");
+        connector = new TwilioSmsConnector("http://localhost:" + server.port(), "AC123", "secret", List.of("+15550001111", "+15550004444"),
+                new ProviderWebClientFactory(environment));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.disposeNow();
+    }
+
+    @Test
+    void testSendSmsPostsFormAndReturnsSid() {
+        String sid = connector.sendSms("+15552223333", "Hello & welcome").block(Duration.ofSeconds(5));
+
+        assertEquals("SM42", sid);
+        String body = URLDecoder.decode(receivedBody.get(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("To=+15552223333"), body);
+        assertTrue(body.contains("From=+15550001111"), body);
+        assertTrue(body.contains("Body=Hello & welcome"), body);
+        String expectedAuth = "Basic " + Base64.getEncoder().encodeToString("AC123:secret".getBytes(StandardCharsets.UTF_8));
+        assertEquals(expectedAuth, receivedAuth.get());
+    }
+
+    @Test
+    void testSendSmsFromGivenNumber() {
+        connector.sendSms("+15550004444", "+15552223333", "Hi").block(Duration.ofSeconds(5));
+
+        String body = URLDecoder.decode(receivedBody.get(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("From=+15550004444"), body);
+    }
+
+    @Test
+    void testThrottlingSurfacesAsWebClientResponseException() {
+        responseStatus.set(HttpResponseStatus.TOO_MANY_REQUESTS);
+
+        WebClientResponseException e = assertThrows(WebClientResponseException.class,
+                () -> connector.sendSms("+15552223333", "Hi").block(Duration.ofSeconds(5)));
+        assertEquals(429, e.getStatusCode().value());
+    }
+}
@@ -0,0 +1,156 @@
+package com.project.unifiedMarketingGateway.connectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.unifiedMarketingGateway.builders.PayloadTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WhatsappHttpConnectorTest {
+
+    private final AtomicReference<String> receivedUpload = new AtomicReference<>();
+    private final AtomicReference<String> sentFrom = new AtomicReference<>();
+    private final AtomicReference<String> uploadResponse = new AtomicReference<>("{\"id\":\"MEDIA42\"}");
+
+    private DisposableServer server;
+    private WhatsappHttpConnector connector;
+
+    @BeforeEach
+    void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/assets/banner.png", (req, res) -> res
+                                .header("Content-Type", "image/png; name=banner")
+                                .sendByteArray(Mono.just(new byte[]{1, 2, 3, 4})))
+                        .post("/v20.0/PN1/media", (req, res) ->
+                                req.receive().aggregate().asString(StandardCharsets.ISO_8859_1)
+                                        .doOnNext(receivedUpload::set)
+                                        .then(res.header("Content-Type", "application/json")
+                                                .sendString(Mono.fromSupplier(uploadResponse::get))
+                                                .then()))
+                        .post("/v20.0/{phoneNumberId}/messages", (req, res) -> {
+                            sentFrom.set(req.param("phoneNumberId"));
+                            return req.receive().then(res.header("Content-Type", "application/json")
+                                    .sendString(Mono.just("{\"messages\":[{\"id\":\"wamid.1\"}]}"))
+                                    .then());
+                        }))
+                .bindNow();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("whatsapp.http.pool.maxConnections", "4")
+                .withProperty("whatsapp.http.http2", "false");
+        // the fake asset host is on loopback
+        connector = new WhatsappHttpConnector("http://localhost:" + server.port(), "v20.0", List.of("PN1", "PN2"), 1024,
+                List.of(), true, new ProviderWebClientFactory(environment));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.disposeNow();
+    }
+
+    @Test
+    void testUploadMediaPostsMultipartAndReturnsId() {
+        String mediaId = connector.uploadMedia("http://localhost:" + server.port() + "/assets/banner.png")
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("MEDIA42", mediaId);
+        String body = receivedUpload.get();
+        assertTrue(body.contains("name=\"messaging_product\""), body);
+        assertTrue(body.contains("whatsapp"), body);
+        assertTrue(body.contains("image/png"), body);
+        assertFalse(body.contains("name=banner"), body);
+        assertTrue(body.contains("filename=\"banner.png\""), body);
+    }
+
+    @Test
+    void testUploadWithoutIdFails() {
+        uploadResponse.set("{\"error\":{\"code\":100}}");
+
+        assertThrows(IllegalStateException.class, () -> connector
+                .uploadMedia("http://localhost:" + server.port() + "/assets/banner.png")
+                .block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void testMediaUrlsOutsideThePublicWebAreRefused() {
+        WhatsappHttpConnector guarded = new WhatsappHttpConnector("http://localhost:" + server.port(), "v20.0",
+                List.of("PN1"), 1024, List.of(), false, new ProviderWebClientFactory(new MockEnvironment()));
+
+        assertThrows(IllegalArgumentException.class, () -> guarded
+                .uploadMedia("http://localhost:" + server.port() + "/assets/banner.png").block(Duration.ofSeconds(5)));
+        assertThrows(IllegalArgumentException.class, () -> guarded
+                .uploadMedia("http://169.254.169.254/latest/meta-data/").block(Duration.ofSeconds(5)));
+        assertThrows(IllegalArgumentException.class, () -> guarded
+                .uploadMedia("http://10.1.2.3/banner.png").block(Duration.ofSeconds(5)));
+        assertThrows(IllegalArgumentException.class, () -> guarded
+                .uploadMedia("file:///etc/passwd").block(Duration.ofSeconds(5)));
+        assertNull(receivedUpload.get());
+    }
+
+    @Test
+    void testMediaHostIsResolvedOnlyByTheFetchSoItCannotRebindToAPrivateAddress() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        // a public address for the first lookup, the asset server on loopback for any later one
+        PublicAddressResolverGroup.Lookup rebinding = host -> lookups.getAndIncrement() == 0
+                ? new InetAddress[]{InetAddress.getByName("192.0.2.1")}
+                : new InetAddress[]{InetAddress.getLoopbackAddress()};
+        MockEnvironment environment = new MockEnvironment().withProperty("whatsapp.media.http.connectTimeoutMs", "200");
+        WhatsappHttpConnector guarded = new WhatsappHttpConnector("http://localhost:" + server.port(), "v20.0",
+                List.of("PN1"), 1024, List.of(), false, new ProviderWebClientFactory(environment), rebinding);
+
+        assertThrows(RuntimeException.class, () -> guarded
+                .uploadMedia("http://cdn.example.com:" + server.port() + "/assets/banner.png").block(Duration.ofSeconds(5)));
+        assertEquals(1, lookups.get());
+        assertNull(receivedUpload.get());
+    }
+
+    @Test
+    void testMediaHostResolvingToAPrivateAddressIsRefused() {
+        WhatsappHttpConnector guarded = new WhatsappHttpConnector("http://localhost:" + server.port(), "v20.0",
+                List.of("PN1"), 1024, List.of(), false, new ProviderWebClientFactory(new MockEnvironment()),
+                host -> new InetAddress[]{InetAddress.getLoopbackAddress()});
+
+        assertThrows(IllegalArgumentException.class, () -> guarded
+                .uploadMedia("http://cdn.example.com:" + server.port() + "/assets/banner.png").block(Duration.ofSeconds(5)));
+        assertNull(receivedUpload.get());
+    }
+
+    @Test
+    void testMediaHostMustBeAllowedWhenAllowListIsSet() {
+        WhatsappHttpConnector allowListed = new WhatsappHttpConnector("http://localhost:" + server.port(), "v20.0",
+                List.of("PN1"), 1024, List.of("cdn.example.com"), true, new ProviderWebClientFactory(new MockEnvironment()));
+
+        assertThrows(IllegalArgumentException.class, () -> allowListed
+                .uploadMedia("http://localhost:" + server.port() + "/assets/banner.png").block(Duration.ofSeconds(5)));
+        assertNull(receivedUpload.get());
+    }
+
+    @Test
+    void testSendsFromTheRequestedPhoneNumber() {
+        PayloadTemplate template = PayloadTemplate.compile(new ObjectMapper(), to -> Map.of("to", to, "type", "text"));
+
+        connector.sendMarketingRequest("PN2", "messages", template, "15550001111").block(Duration.ofSeconds(5));
+        assertEquals("PN2", sentFrom.get());
+
+        connector.sendMarketingRequest("messages", template, "15550001111").block(Duration.ofSeconds(5));
+        assertEquals("PN1", sentFrom.get());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> connector.sendMarketingRequest("PN3", "messages", template, "15550001111"));
+    }
+}
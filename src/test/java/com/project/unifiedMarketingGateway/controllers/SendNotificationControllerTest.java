@@ -3,6 +3,8 @@ package com.project.unifiedMarketingGateway.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.unifiedMarketingGateway.enums.ClientType;
 import com.project.unifiedMarketingGateway.enums.MediaType;
+import com.project.unifiedMarketingGateway.ingestion.NdjsonBulkRequestReader;
+import com.project.unifiedMarketingGateway.models.BulkNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationResponse;
 import com.project.unifiedMarketingGateway.processor.telegram.TelegramRequestProcessor;
@@ -35,9 +37,16 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.mock.web.MockAsyncContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -49,6 +58,9 @@ public class SendNotificationControllerTest {
     @Mock
     private TelegramRequestProcessor telegramRequestProcessor;
 
+    @Mock
+    private NdjsonBulkRequestReader bulkRequestReader;
+
     @InjectMocks
     private SendNotificationController controller;
 
@@ -111,6 +123,28 @@ public class SendNotificationControllerTest {
         verify(telegramRequestProcessor, never()).processNotificationRequest(any());
     }
 
+    @Test
+    void testSendBulkNotification_TimeoutCancelsThePipeline() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(bulkRequestReader.read(any())).thenReturn(new BulkNotificationRequest(request, Flux.never()));
+        when(telegramRequestProcessor.processBulkNotificationRequest(any(), any()))
+                .thenReturn(Mono.<SendNotificationResponse>never().doOnCancel(() -> cancelled.set(true)));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/sendNotification/bulk")
+                        .header("clientType", "TELEGRAM")
+                        .contentType(org.springframework.http.MediaType.APPLICATION_NDJSON)
+                        .content(asJsonString(request) + "\n123\n"))
+                .andReturn();
+        assertTrue(result.getRequest().isAsyncStarted());
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        assertTrue(cancelled.get());
+    }
+
     // Helper method to convert object to JSON string
     private String asJsonString(Object obj) throws Exception {
         return new ObjectMapper().writeValueAsString(obj);
@@ -0,0 +1,79 @@
+package com.project.unifiedMarketingGateway.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long RTT = 100_000_000L;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private AdaptiveConcurrencyLimiter newLimiter(int initial) {
+        return new AdaptiveConcurrencyLimiter("telegram", initial, 1, 50, 2.0, 0.5, t -> false, clock::get);
+    }
+
+    @Test
+    void testLimitGrowsWhileLatencyStaysNearBaseline() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(4);
+
+        for (int i = 0; i < 40; i++) {
+            clock.addAndGet(RTT);
+            limiter.onSample(RTT, limiter.getLimit(), false);
+        }
+
+        assertTrue(limiter.getLimit() > 4, "limit did not grow: " + limiter.getLimit());
+    }
+
+    @Test
+    void testLimitDoesNotGrowWhenMostlyIdle() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(10);
+
+        for (int i = 0; i < 40; i++) {
+            clock.addAndGet(RTT);
+            limiter.onSample(RTT, 1, false);
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void testOverloadBacksOffOncePerRoundTrip() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(16);
+        clock.addAndGet(RTT);
+        limiter.onSample(RTT, 16, false);
+
+        clock.addAndGet(RTT);
+        limiter.onSample(RTT, 16, true);
+        limiter.onSample(RTT, 16, true);
+        limiter.onSample(RTT, 16, true);
+
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void testLatencySpikeBacksOffAndRespectsMinimum() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(8);
+        clock.addAndGet(RTT);
+        limiter.onSample(RTT, 8, false);
+
+        for (int i = 0; i < 50; i++) {
+            clock.addAndGet(20 * RTT);
+            limiter.onSample(20 * RTT, 8, false);
+        }
+
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    void testFixedLimiterNeverMoves() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.fixed("sms", 3);
+        limiter.onSample(RTT, 3, true);
+        limiter.onSample(RTT, 3, false);
+
+        assertEquals(3, limiter.getLimit());
+    }
+}
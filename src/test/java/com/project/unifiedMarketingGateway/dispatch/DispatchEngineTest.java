@@ -0,0 +1,154 @@
+package com.project.unifiedMarketingGateway.dispatch;
+
+import com.project.unifiedMarketingGateway.enums.Priority;
+import com.project.unifiedMarketingGateway.metrics.dto.SendResultDTO;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DispatchEngineTest {
+
+    @Test
+    void testWorkerConcurrencyIsBoundedAcrossSubmitters() {
+        DispatchEngine engine = new DispatchEngine("Telegram", 3, 1000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+
+        Supplier<Mono<SendResultDTO>> task = () -> Mono.fromCallable(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    return new SendResultDTO("1", true, "{}", null);
+                })
+                .delayElement(Duration.ofMillis(5))
+                .doOnNext(r -> {
+                    running.decrementAndGet();
+                    done.incrementAndGet();
+                });
+
+        // ten independent "requests" feeding the same engine
+        for (int i = 0; i < 10; i++) {
+            engine.submitAll(Flux.range(0, 20).map(n -> task)).subscribe();
+        }
+
+        awaitCondition(() -> done.get() == 200);
+        assertTrue(maxRunning.get() <= 3, "max concurrent sends was " + maxRunning.get());
+        assertEquals(0, engine.getQueueDepth());
+    }
+
+    @Test
+    void testProducerWaitsWhileQueueIsFull() {
+        DispatchEngine engine = new DispatchEngine("Whatsapp", 1, 2);
+        Sinks.Empty<Void> gate = Sinks.empty();
+        Supplier<Mono<SendResultDTO>> blocked = () -> gate.asMono().thenReturn(new SendResultDTO("1", true, "{}", null));
+
+        // one task running, two queued
+        engine.submitAll(Flux.just(blocked, blocked, blocked)).block(Duration.ofSeconds(5));
+        awaitCondition(() -> engine.getInFlight() == 1);
+        assertEquals(2, engine.getQueueDepth());
+        assertFalse(engine.hasCapacityFor(1));
+
+        AtomicBoolean queued = new AtomicBoolean();
+        engine.submitAll(Flux.just(blocked)).subscribe(n -> queued.set(true));
+        sleep(100);
+        assertFalse(queued.get(), "producer was accepted into a full queue");
+
+        gate.tryEmitEmpty();
+        awaitCondition(queued::get);
+    }
+
+    @Test
+    void testWaitingProducersAreAdmittedInArrivalOrder() {
+        DispatchEngine engine = new DispatchEngine("Whatsapp", 1, 1);
+        Sinks.Empty<Void> gate = Sinks.empty();
+        List<String> executed = new CopyOnWriteArrayList<>();
+
+        // one task running, one queued, so every further producer has to wait
+        engine.submit(() -> gate.asMono().thenReturn(new SendResultDTO("0", true, "{}", null)))
+                .block(Duration.ofSeconds(5));
+        awaitCondition(() -> engine.getInFlight() == 1);
+        engine.submit(recording(executed, "queued")).block(Duration.ofSeconds(5));
+        for (String producer : List.of("a", "b", "c", "d")) {
+            engine.submitAll(Flux.range(1, 2).map(n -> recording(executed, producer))).subscribe();
+        }
+
+        gate.tryEmitEmpty();
+        awaitCondition(() -> executed.size() == 9);
+        // each producer queues its second task only after the first one was admitted
+        assertEquals(List.of("queued", "a", "b", "c", "d", "a", "b", "c", "d"), executed);
+    }
+
+    @Test
+    void testHighPriorityLaneOvertakesQueuedBulkSends() {
+        DispatchEngine engine = new DispatchEngine("SMS", 1, 100);
+        Sinks.Empty<Void> gate = Sinks.empty();
+        List<String> executed = new CopyOnWriteArrayList<>();
+
+        engine.submit(Priority.BULK, () -> gate.asMono().thenReturn(new SendResultDTO("0", true, "{}", null)))
+                .block(Duration.ofSeconds(5));
+        engine.submitAll(Priority.BULK, Flux.range(1, 10).map(n -> recording(executed, "bulk"))).block(Duration.ofSeconds(5));
+        engine.submitAll(Priority.HIGH, Flux.range(1, 2).map(n -> recording(executed, "high"))).block(Duration.ofSeconds(5));
+        assertEquals(2, engine.getQueueDepth(Priority.HIGH));
+        assertEquals(10, engine.getQueueDepth(Priority.BULK));
+
+        gate.tryEmitEmpty();
+        awaitCondition(() -> executed.size() == 12);
+        assertEquals(List.of("high", "high"), executed.subList(0, 2));
+    }
+
+    @Test
+    void testGrownLimitStartsQueuedSendsWithoutWaitingForACompletion() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("Telegram", 1, 1, 4, 2.0, 0.5,
+                t -> false, clock::get);
+        DispatchEngine engine = new DispatchEngine("Telegram", limiter, 10, Map.of());
+        Sinks.Empty<Void> gate = Sinks.empty();
+        Supplier<Mono<SendResultDTO>> blocked = () -> gate.asMono().thenReturn(new SendResultDTO("1", true, "{}", null));
+
+        engine.submitAll(Flux.just(blocked, blocked, blocked)).block(Duration.ofSeconds(5));
+        awaitCondition(() -> engine.getInFlight() == 1);
+
+        clock.addAndGet(100_000_000L);
+        limiter.onSample(100_000_000L, 1, false);
+        assertEquals(2, limiter.getLimit());
+
+        // the running send is still blocked, so only the limit increase can start the next one
+        awaitCondition(() -> engine.getInFlight() == 2);
+        assertEquals(1, engine.getQueueDepth());
+        gate.tryEmitEmpty();
+    }
+
+    private Supplier<Mono<SendResultDTO>> recording(List<String> executed, String label) {
+        return () -> Mono.fromCallable(() -> {
+            executed.add(label);
+            return new SendResultDTO(label, true, "{}", null);
+        });
+    }
+
+    private void awaitCondition(Supplier<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.get()) {
+            if (System.currentTimeMillis() > deadline) fail("condition not met in time");
+            sleep(5);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.project.unifiedMarketingGateway.ingestion;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.unifiedMarketingGateway.enums.MediaType;
+import com.project.unifiedMarketingGateway.models.BulkNotificationRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NdjsonBulkRequestReaderTest {
+
+    private NdjsonBulkRequestReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new NdjsonBulkRequestReader();
+        reader.objectMapper = new ObjectMapper();
+    }
+
+    @Test
+    void testEnvelopeAndRecipientsAreRead() throws Exception {
+        String body = """
+                {"mediaTypeList":["TEXT"],"textMessage":"hello"}
+                "111"
+                222
+
+                {"recipient":"333"}
+                """;
+
+        BulkNotificationRequest request = reader.read(stream(body));
+
+        assertEquals(List.of(MediaType.TEXT), request.getEnvelope().getMediaTypeList());
+        assertEquals("hello", request.getEnvelope().getTextMessage());
+        assertEquals(List.of("111", "222", "333"), request.getRecipients().collectList().block());
+    }
+
+    @Test
+    void testInlineRecipientsAreDispatchedFirst() throws Exception {
+        String body = """
+                {"mediaTypeList":["TEXT"],"textMessage":"hello","recipientList":["000"]}
+                "111"
+                """;
+
+        BulkNotificationRequest request = reader.read(stream(body));
+
+        assertEquals(List.of("000", "111"), request.getRecipients().collectList().block());
+    }
+
+    @Test
+    void testRecipientsArePulledOnDemand() throws Exception {
+        String body = """
+                {"mediaTypeList":["TEXT"],"textMessage":"hello"}
+                "111"
+                "222"
+                [ "not-a-recipient" ]
+                """;
+
+        BulkNotificationRequest request = reader.read(stream(body));
+
+        // the malformed line is never parsed as long as nobody asks for it
+        assertEquals(List.of("111", "222"), request.getRecipients().take(2).collectList().block());
+    }
+
+    @Test
+    void testMalformedRecipientFailsStream() throws Exception {
+        String body = """
+                {"mediaTypeList":["TEXT"],"textMessage":"hello"}
+                {"chatId":"111"}
+                """;
+
+        BulkNotificationRequest request = reader.read(stream(body));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> request.getRecipients().collectList().block());
+        assertInstanceOf(JsonParseException.class, Exceptions.unwrap(e));
+    }
+
+    @Test
+    void testMissingEnvelopeIsRejected() {
+        assertThrows(JsonParseException.class, () -> reader.read(stream("\"111\"\n")));
+    }
+
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
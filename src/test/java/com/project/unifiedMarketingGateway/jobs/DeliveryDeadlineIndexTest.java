@@ -0,0 +1,111 @@
+package com.project.unifiedMarketingGateway.jobs;
+
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeliveryDeadlineIndexTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final DeliveryDeadlineIndex index = new DeliveryDeadlineIndex(
+            Duration.ofMinutes(5), Duration.ofMinutes(30), Duration.ofMinutes(1440), now::get);
+
+    private static DeliveryDeadlineIndex.Key key(String recipient) {
+        return new DeliveryDeadlineIndex.Key("req-1", "Whatsapp", recipient, "text");
+    }
+
+    @Test
+    void testDeadlinesFireInExpiryOrder() {
+        long t = now.get();
+        index.track(key("sent"), DeliveryStatus.SENT, t);
+        index.track(key("queued"), DeliveryStatus.QUEUED, t);
+
+        assertNull(index.pollExpired());
+
+        now.set(t + Duration.ofMinutes(5).toMillis());
+        DeliveryDeadlineIndex.Deadline first = index.pollExpired();
+        assertEquals(key("queued"), first.key());
+        assertEquals(DeliveryStatus.QUEUED, first.status());
+        assertNull(index.pollExpired());
+
+        now.set(t + Duration.ofMinutes(30).toMillis());
+        assertEquals(key("sent"), index.pollExpired().key());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testLaterTransitionReplacesTheDeadline() {
+        long t = now.get();
+        index.track(key("111"), DeliveryStatus.QUEUED, t);
+        index.track(key("111"), DeliveryStatus.SENT, t + 1000);
+
+        now.set(t + Duration.ofMinutes(10).toMillis());
+        assertNull(index.pollExpired());
+
+        now.set(t + 1000 + Duration.ofMinutes(30).toMillis());
+        DeliveryDeadlineIndex.Deadline deadline = index.pollExpired();
+        assertEquals(DeliveryStatus.SENT, deadline.status());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testTerminalStatesDropTheDeadline() {
+        long t = now.get();
+        index.track(key("read"), DeliveryStatus.DELIVERED, t);
+        index.track(key("failed"), DeliveryStatus.SENT, t);
+        assertEquals(2, index.size());
+
+        index.track(key("read"), DeliveryStatus.READ, t + 1);
+        index.track(key("failed"), DeliveryStatus.FAILED, t + 1);
+        assertEquals(0, index.size());
+
+        now.set(t + Duration.ofDays(2).toMillis());
+        assertNull(index.pollExpired());
+    }
+
+    @Test
+    void testHopTimeoutShortensOnlyTheSentDeadline() {
+        long t = now.get();
+        long hop = Duration.ofMinutes(10).toMillis();
+        index.track(key("sent"), DeliveryStatus.SENT, t, hop);
+        index.track(key("queued"), DeliveryStatus.QUEUED, t, Duration.ofMinutes(1).toMillis());
+        index.track(key("long"), DeliveryStatus.SENT, t, Duration.ofHours(2).toMillis());
+
+        now.set(t + Duration.ofMinutes(5).toMillis());
+        assertEquals(key("queued"), index.pollExpired().key());
+        assertNull(index.pollExpired());
+
+        now.set(t + hop);
+        DeliveryDeadlineIndex.Deadline deadline = index.pollExpired();
+        assertEquals(key("sent"), deadline.key());
+        assertEquals(hop, deadline.timeoutMillis());
+        assertNull(index.pollExpired());
+
+        now.set(t + Duration.ofMinutes(30).toMillis());
+        assertEquals(key("long"), index.pollExpired().key());
+    }
+
+    @Test
+    void testStartedIndexHandsExpiredDeadlinesToTheHandler() throws InterruptedException {
+        DeliveryDeadlineIndex live = new DeliveryDeadlineIndex(
+                Duration.ofMillis(50), Duration.ofMinutes(30), Duration.ofMinutes(1440), System::currentTimeMillis);
+        BlockingQueue<DeliveryDeadlineIndex.Deadline> fired =
+                new LinkedBlockingQueue<>();
+        live.start(fired::add);
+        try {
+            live.track(key("111"), DeliveryStatus.QUEUED, System.currentTimeMillis());
+            DeliveryDeadlineIndex.Deadline deadline = fired.poll(5, TimeUnit.SECONDS);
+            assertNotNull(deadline);
+            assertEquals(key("111"), deadline.key());
+        } finally {
+            live.stop();
+        }
+    }
+}
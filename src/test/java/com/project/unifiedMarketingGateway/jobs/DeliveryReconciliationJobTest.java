@@ -0,0 +1,175 @@
+package com.project.unifiedMarketingGateway.jobs;
+
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.processor.DeliveryStateWriteBuffer;
+import com.project.unifiedMarketingGateway.processor.FallbackRouter;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DeliveryReconciliationJobTest {
+
+    private final DeliveryStateRepository repository = mock(DeliveryStateRepository.class);
+    private final FallbackRouter fallbackRouter = mock(FallbackRouter.class);
+    private final PartitionLeaseManager leaseManager = mock(PartitionLeaseManager.class);
+    private DeliveryReconciliationJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new DeliveryReconciliationJob(repository, 5, 30, 1440);
+        job.metricsService = mock(MetricsService.class);
+        job.fallbackRouter = fallbackRouter;
+        job.writeBuffer = mock(DeliveryStateWriteBuffer.class);
+        job.pageSize = 2;
+        job.deadlineIndex = new DeliveryDeadlineIndex(5, 30, 1440);
+        job.leaseManager = leaseManager;
+        job.fallbackPolicy = mock(FallbackPolicy.class);
+        when(leaseManager.heldPartitions()).thenReturn(Set.of(0));
+        when(leaseManager.owns(any(DeliveryStateEntity.class))).thenReturn(true);
+        when(repository.findExpiredPage(anyInt(), any(), anyLong(), anyLong(), anyLong(), any())).thenReturn(List.of());
+    }
+
+    private DeliveryStateEntity row(long id, long updatedAt) {
+        return DeliveryStateEntity.builder()
+                .id(id)
+                .partitionId(0)
+                .status(DeliveryStatus.QUEUED)
+                .updatedAtEpochMillis(updatedAt)
+                .build();
+    }
+
+    @Test
+    void testExpiredRowsAreWalkedPageByPageFromTheLastKey() {
+        DeliveryStateEntity a = row(7, 100);
+        DeliveryStateEntity b = row(3, 200);
+        DeliveryStateEntity c = row(9, 200);
+        when(repository.findExpiredPage(eq(0), eq(DeliveryStatus.QUEUED), anyLong(), eq(Long.MIN_VALUE), eq(Long.MIN_VALUE), eq(Limit.of(2))))
+                .thenReturn(List.of(a, b));
+        when(repository.findExpiredPage(eq(0), eq(DeliveryStatus.QUEUED), anyLong(), eq(200L), eq(3L), eq(Limit.of(2))))
+                .thenReturn(List.of(c));
+
+        job.reconcile();
+
+        verify(job.writeBuffer).flush();
+        verify(fallbackRouter).attemptFallback(a);
+        verify(fallbackRouter).attemptFallback(b);
+        verify(fallbackRouter).attemptFallback(c);
+        verify(repository, times(2)).findExpiredPage(eq(0), eq(DeliveryStatus.QUEUED), anyLong(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void testCutoffIsTheStatusTimeout() {
+        long before = System.currentTimeMillis();
+        job.reconcile();
+        long after = System.currentTimeMillis();
+
+        long queuedTimeout = 5 * 60_000L;
+        verify(repository).findExpiredPage(eq(0), eq(DeliveryStatus.QUEUED),
+                longThat(cutoff -> cutoff >= before - queuedTimeout && cutoff <= after - queuedTimeout),
+                anyLong(), anyLong(), any());
+        verify(repository, times(1)).findExpiredPage(eq(0), eq(DeliveryStatus.SENT), anyLong(), anyLong(), anyLong(), any());
+        verify(repository, times(1)).findExpiredPage(eq(0), eq(DeliveryStatus.DELIVERED), anyLong(), anyLong(), anyLong(), any());
+        verifyNoInteractions(fallbackRouter);
+    }
+
+    private DeliveryDeadlineIndex.Deadline deadline(DeliveryStateEntity e) {
+        DeliveryDeadlineIndex.Key key = new DeliveryDeadlineIndex.Key(
+                e.getRequestId(), e.getChannel(), e.getRecipient(), e.getMediaType());
+        return new DeliveryDeadlineIndex.Deadline(key, DeliveryStatus.QUEUED, 5 * 60_000L, System.currentTimeMillis());
+    }
+
+    @Test
+    void testDeadlineIsHandledWhenTheRowIsStillStuck() {
+        DeliveryStateEntity e = row(1, System.currentTimeMillis() - Duration.ofMinutes(6).toMillis());
+        when(repository.findByRequestIdAndChannelAndRecipientAndMediaType(any(), any(), any(), any()))
+                .thenReturn(Optional.of(e));
+
+        job.onDeadline(deadline(e));
+
+        verify(job.writeBuffer).flush();
+        verify(fallbackRouter).attemptFallback(e);
+    }
+
+    @Test
+    void testDeadlineIsSkippedWhenTheRowMovedOn() {
+        DeliveryStateEntity moved = row(1, System.currentTimeMillis() - Duration.ofMinutes(6).toMillis());
+        moved.setStatus(DeliveryStatus.SENT);
+        DeliveryStateEntity refreshed = row(2, System.currentTimeMillis());
+        when(repository.findByRequestIdAndChannelAndRecipientAndMediaType(any(), any(), any(), any()))
+                .thenReturn(Optional.of(moved))
+                .thenReturn(Optional.of(refreshed));
+
+        job.onDeadline(deadline(moved));
+        job.onDeadline(deadline(refreshed));
+
+        verifyNoInteractions(fallbackRouter);
+    }
+
+    @Test
+    void testTakenPartitionsAreLoadedIntoTheIndex() {
+        DeliveryStateEntity a = row(1, 100);
+        a.setRequestId("req-1");
+        when(repository.findExpiredPage(eq(0), eq(DeliveryStatus.QUEUED), eq(Long.MAX_VALUE), anyLong(), anyLong(), any()))
+                .thenReturn(List.of(a));
+        when(repository.findByRequestIdAndChannelAndRecipientAndMediaType(eq("req-1"), any(), any(), any()))
+                .thenReturn(Optional.of(a));
+
+        doAnswer(inv -> {
+            Consumer<Set<Integer>> onAcquired = inv.getArgument(0);
+            onAcquired.accept(Set.of(0));
+            return null;
+        }).when(leaseManager).start(any());
+
+        job.startDeadlines();
+        try {
+            verify(fallbackRouter, timeout(5000)).attemptFallback(a);
+        } finally {
+            job.deadlineIndex.stop();
+        }
+    }
+
+    @Test
+    void testOnlyHeldPartitionsAreScanned() {
+        when(leaseManager.heldPartitions()).thenReturn(Set.of(3, 5));
+
+        job.reconcile();
+
+        verify(repository, times(3)).findExpiredPage(eq(3), any(), anyLong(), anyLong(), anyLong(), any());
+        verify(repository, times(3)).findExpiredPage(eq(5), any(), anyLong(), anyLong(), anyLong(), any());
+        verify(repository, never()).findExpiredPage(eq(0), any(), anyLong(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void testDeadlineOfAPartitionHeldElsewhereIsSkipped() {
+        DeliveryStateEntity e = row(1, System.currentTimeMillis() - Duration.ofMinutes(6).toMillis());
+        when(repository.findByRequestIdAndChannelAndRecipientAndMediaType(any(), any(), any(), any()))
+                .thenReturn(Optional.of(e));
+        when(leaseManager.owns(e)).thenReturn(false);
+
+        job.onDeadline(deadline(e));
+
+        verifyNoInteractions(fallbackRouter);
+    }
+
+    @Test
+    void testLeaseTickCatchesUpOnlyOnRecentlyChangedRows() {
+        long before = System.currentTimeMillis();
+        job.onLeaseTick(Set.of());
+
+        verify(repository, times(3)).findExpiredPage(eq(0), any(), eq(Long.MAX_VALUE),
+                longThat(since -> since <= before && since > Long.MIN_VALUE), eq(Long.MIN_VALUE), any());
+    }
+}
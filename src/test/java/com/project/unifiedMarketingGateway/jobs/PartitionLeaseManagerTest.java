@@ -0,0 +1,103 @@
+package com.project.unifiedMarketingGateway.jobs;
+
+import com.project.unifiedMarketingGateway.repository.ReconciliationLeaseRepository;
+import com.project.unifiedMarketingGateway.repository.ReconciliationNodeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// write-behind flushes only when the test asks for them
+@SpringBootTest(properties = {
+        "deliveryState.writeBehind.flushIntervalMillis=600000",
+        "storage.writeBehind.flushIntervalMillis=600000"
+})
+class PartitionLeaseManagerTest {
+
+    // every test runs a day after the previous one, so the nodes and leases of earlier tests
+    // (and of the application's own node) have long expired
+    private static final AtomicLong EPOCH = new AtomicLong(System.currentTimeMillis());
+
+    @Autowired
+    private ReconciliationLeaseRepository leaseRepository;
+
+    @Autowired
+    private ReconciliationNodeRepository nodeRepository;
+
+    private final AtomicLong now = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        now.set(EPOCH.addAndGet(Duration.ofDays(1).toMillis()));
+    }
+
+    private PartitionLeaseManager node() {
+        PartitionLeaseManager node = new PartitionLeaseManager();
+        node.leaseRepository = leaseRepository;
+        node.nodeRepository = nodeRepository;
+        node.partitions = 8;
+        node.leaseMillis = 30_000;
+        node.renewIntervalMillis = 10_000;
+        node.nodeId = "test-" + UUID.randomUUID();
+        node.clock = now::get;
+        return node;
+    }
+
+    @Test
+    void testSingleNodeTakesEveryPartition() {
+        PartitionLeaseManager a = node();
+
+        assertEquals(Set.of(0, 1, 2, 3, 4, 5, 6, 7), a.tick());
+        assertEquals(8, a.heldPartitions().size());
+        assertTrue(a.tick().isEmpty());
+    }
+
+    @Test
+    void testJoiningNodeGetsItsFairShare() {
+        PartitionLeaseManager a = node();
+        PartitionLeaseManager b = node();
+        a.tick();
+
+        assertTrue(b.tick().isEmpty()); // registers, everything is still held
+        now.addAndGet(1000);
+        a.tick();                       // gives back its surplus
+        assertEquals(4, b.tick().size());
+
+        assertEquals(4, a.heldPartitions().size());
+        Set<Integer> all = new HashSet<>(a.heldPartitions());
+        all.addAll(b.heldPartitions());
+        assertEquals(8, all.size());
+    }
+
+    @Test
+    void testPartitionsOfADeadNodeMoveOnceItsLeasesExpire() {
+        PartitionLeaseManager a = node();
+        PartitionLeaseManager b = node();
+        a.tick();
+        b.tick();
+        a.tick();
+        b.tick();
+        Set<Integer> heldByA = a.heldPartitions();
+        assertEquals(4, heldByA.size());
+
+        // a stops renewing
+        now.addAndGet(10_000);
+        b.tick();
+        assertEquals(4, b.heldPartitions().size());
+
+        now.addAndGet(25_000);
+        assertEquals(heldByA, b.tick());
+        assertEquals(8, b.heldPartitions().size());
+
+        a.tick();
+        assertTrue(a.heldPartitions().isEmpty());
+    }
+}
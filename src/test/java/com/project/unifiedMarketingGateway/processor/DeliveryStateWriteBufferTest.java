@@ -0,0 +1,113 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import com.project.unifiedMarketingGateway.contexts.SendContext;
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateBatchRepository;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// write-behind flushes only when the test asks for them
+@SpringBootTest(properties = {
+        "deliveryState.writeBehind.flushIntervalMillis=600000",
+        "storage.writeBehind.flushIntervalMillis=600000"
+})
+class DeliveryStateWriteBufferTest {
+
+    @Autowired
+    private DeliveryStateService deliveryStateService;
+
+    @Autowired
+    private DeliveryStateWriteBuffer writeBuffer;
+
+    @Autowired
+    private DeliveryStateRepository repository;
+
+    @Autowired
+    private DeliveryStateBatchRepository batchRepository;
+
+    private SendContext ctx(String requestId, String recipient) {
+        return SendContext.builder()
+                .requestId(requestId)
+                .channel("whatsapp")
+                .recipient(recipient)
+                .method("text")
+                .build();
+    }
+
+    @Test
+    void transitionsOfOneSendAreCoalesced() {
+        String requestId = UUID.randomUUID().toString();
+        writeBuffer.flush();
+
+        deliveryStateService.markQueued(ctx(requestId, "111"));
+        deliveryStateService.markSent(ctx(requestId, "111"), "wamid.1");
+        deliveryStateService.markQueued(ctx(requestId, "222"));
+
+        assertEquals(2, writeBuffer.getPendingCount());
+        assertTrue(repository.findByRequestId(requestId).isEmpty());
+
+        assertEquals(2, writeBuffer.flush());
+        assertEquals(0, writeBuffer.getPendingCount());
+
+        List<DeliveryStateEntity> rows = repository.findByRequestId(requestId);
+        assertEquals(2, rows.size());
+        DeliveryStateEntity sent = rows.stream().filter(r -> r.getRecipient().equals("111")).findFirst().orElseThrow();
+        assertEquals(DeliveryStatus.SENT, sent.getStatus());
+        assertEquals("wamid.1", sent.getProviderMessageId());
+    }
+
+    @Test
+    void laterFlushUpdatesTheExistingRow() {
+        String requestId = UUID.randomUUID().toString();
+
+        deliveryStateService.markQueued(ctx(requestId, "111"));
+        writeBuffer.flush();
+        long createdAt = repository.findByRequestId(requestId).get(0).getCreatedAtEpochMillis();
+
+        deliveryStateService.markFailed(ctx(requestId, "111"), "timeout");
+        writeBuffer.flush();
+
+        List<DeliveryStateEntity> rows = repository.findByRequestId(requestId);
+        assertEquals(1, rows.size());
+        assertEquals(DeliveryStatus.FAILED, rows.get(0).getStatus());
+        assertEquals("timeout", rows.get(0).getFailureReason());
+        assertEquals(createdAt, rows.get(0).getCreatedAtEpochMillis());
+    }
+
+    @Test
+    void webhookFindsAStateThatIsStillBuffered() {
+        String requestId = UUID.randomUUID().toString();
+        String messageId = "wamid." + requestId;
+
+        deliveryStateService.markSent(ctx(requestId, "111"), messageId);
+        deliveryStateService.updateFromWebhook(messageId, DeliveryStatus.DELIVERED);
+
+        assertEquals(DeliveryStatus.DELIVERED, repository.findByProviderMessageId(messageId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void fallbackIsClaimedOnceEvenBeforeTheStateIsFlushed() {
+        String requestId = UUID.randomUUID().toString();
+
+        deliveryStateService.markFailed(ctx(requestId, "111"), "131026");
+        DeliveryStateBatchRepository.FallbackClaim claim =
+                new DeliveryStateBatchRepository.FallbackClaim(requestId, "whatsapp", "111", "text", "SMS");
+        assertEquals(List.of(claim), batchRepository.claimFallbackAll(List.of(claim, claim)));
+        assertTrue(batchRepository.claimFallbackAll(List.of(claim)).isEmpty());
+        writeBuffer.flush();
+
+        DeliveryStateEntity row = repository.findByRequestId(requestId).get(0);
+        assertEquals(DeliveryStatus.FAILED, row.getStatus());
+        assertEquals("131026", row.getFailureReason());
+        assertTrue(row.getFallbackTriggered());
+        assertEquals("SMS", row.getFallbackChannel());
+    }
+}
@@ -0,0 +1,187 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import com.project.unifiedMarketingGateway.configs.FallbackChain;
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateBatchRepository;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateBatchRepository.FallbackClaim;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.project.unifiedMarketingGateway.enums.ClientType.SMS;
+import static com.project.unifiedMarketingGateway.enums.ClientType.TELEGRAM;
+import static com.project.unifiedMarketingGateway.enums.ClientType.WHATSAPP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class FallbackRouterTest {
+
+    private final DeliveryStateBatchRepository batchRepository = mock(DeliveryStateBatchRepository.class);
+    private final FallbackPolicy policy = mock(FallbackPolicy.class);
+    private final FallbackSender smsSender = sender(SMS.getValue());
+    private final FallbackSender telegramSender = sender(TELEGRAM.getValue());
+    private FallbackRouter router;
+
+    private static FallbackSender sender(String channel) {
+        FallbackSender sender = mock(FallbackSender.class);
+        when(sender.fallbackChannel()).thenReturn(channel);
+        return sender;
+    }
+
+    // every request falls back along Whatsapp -> Telegram -> SMS
+    private void chain(String spec) {
+        FallbackChain chain = FallbackChain.parse(spec);
+        when(policy.allChains()).thenReturn(List.of(chain));
+        when(policy.shouldFallback(anyString(), anyString(), any())).thenAnswer(inv ->
+                !chain.after(inv.getArgument(1)).isEmpty());
+        when(policy.shouldFallback(any(DeliveryStateEntity.class))).thenAnswer(inv ->
+                !chain.after(inv.<DeliveryStateEntity>getArgument(0).getChannel()).isEmpty());
+        when(policy.nextHops(anyString(), anyString())).thenAnswer(inv -> chain.after(inv.getArgument(1)));
+    }
+
+    @BeforeEach
+    void setUp() {
+        chain("Whatsapp:30,SMS");
+        router = new FallbackRouter();
+        router.batchRepository = batchRepository;
+        router.policy = policy;
+        router.fallbackSenders = List.of(smsSender, telegramSender);
+        router.isFallBackRoutingEnabled = true;
+        router.maxBatchSize = 500;
+        router.windowMillis = 600_000; // flushed by the tests
+        router.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.stop();
+    }
+
+    private DeliveryFailedEvent failed(String requestId, String channel, String recipient) {
+        return new DeliveryFailedEvent(requestId, channel, recipient, "text", "131026");
+    }
+
+    @Test
+    void testFailuresOfOneRequestFallBackAsOneFanOut() {
+        when(batchRepository.claimFallbackAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        router.onDeliveryFailed(failed("req-1", WHATSAPP.getValue(), "+15550001"));
+        router.onDeliveryFailed(failed("req-2", WHATSAPP.getValue(), "+15550003"));
+        router.onDeliveryFailed(failed("req-1", WHATSAPP.getValue(), "+15550002"));
+
+        assertEquals(3, router.flush());
+        verify(batchRepository).claimFallbackAll(List.of(
+                new FallbackClaim("req-1", WHATSAPP.getValue(), "+15550001", "text", SMS.getValue()),
+                new FallbackClaim("req-2", WHATSAPP.getValue(), "+15550003", "text", SMS.getValue()),
+                new FallbackClaim("req-1", WHATSAPP.getValue(), "+15550002", "text", SMS.getValue())));
+        verify(smsSender).processFallback("req-1", List.of("+15550001", "+15550002"));
+        verify(smsSender).processFallback("req-2", List.of("+15550003"));
+    }
+
+    @Test
+    void testFallbackAlreadyClaimedIsNotSentAgain() {
+        when(batchRepository.claimFallbackAll(anyList())).thenReturn(List.of());
+
+        router.onDeliveryFailed(failed("req-1", WHATSAPP.getValue(), "+15550001"));
+        router.attemptFallback(DeliveryStateEntity.builder()
+                .requestId("req-1").channel(WHATSAPP.getValue()).recipient("+15550001").mediaType("text")
+                .status(DeliveryStatus.SENT).build());
+        router.flush();
+
+        verify(batchRepository).claimFallbackAll(anyList());
+        verify(smsSender, never()).processFallback(any(), any());
+    }
+
+    @Test
+    void testNoFallbackForSmsOrWhenDisabled() {
+        router.onDeliveryFailed(failed("req-1", SMS.getValue(), "+15550001"));
+        router.isFallBackRoutingEnabled = false;
+        router.onDeliveryFailed(failed("req-1", WHATSAPP.getValue(), "+15550001"));
+
+        assertEquals(0, router.flush());
+        verifyNoInteractions(batchRepository);
+        verify(smsSender, never()).processFallback(any(), any());
+    }
+
+    @Test
+    void testDegradedHopIsSkippedForTheNextOne() {
+        router.stop();
+        chain("Whatsapp:10,Telegram:5,SMS");
+        router.start();
+        when(batchRepository.claimFallbackAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(telegramSender.isDegraded()).thenReturn(true);
+
+        router.onDeliveryFailed(failed("req-1", WHATSAPP.getValue(), "+15550001"));
+        router.onDeliveryFailed(failed("req-2", TELEGRAM.getValue(), "+15550002"));
+        router.flush();
+
+        verify(batchRepository).claimFallbackAll(List.of(
+                new FallbackClaim("req-1", WHATSAPP.getValue(), "+15550001", "text", SMS.getValue()),
+                new FallbackClaim("req-2", TELEGRAM.getValue(), "+15550002", "text", SMS.getValue())));
+        verify(smsSender).processFallback("req-1", List.of("+15550001"));
+        verify(smsSender).processFallback("req-2", List.of("+15550002"));
+        verify(telegramSender, never()).processFallback(any(), any());
+    }
+
+    @Test
+    void testNextHopIsUsedWhenEveryHopIsDegraded() {
+        router.stop();
+        chain("Whatsapp:10,Telegram:5,SMS");
+        router.start();
+        when(batchRepository.claimFallbackAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(telegramSender.isDegraded()).thenReturn(true);
+        when(smsSender.isDegraded()).thenReturn(true);
+
+        router.onDeliveryFailed(failed("req-1", WHATSAPP.getValue(), "+15550001"));
+        router.flush();
+
+        verify(telegramSender).processFallback("req-1", List.of("+15550001"));
+    }
+
+    @Test
+    void testThreeHopChainAdvancesOneHopAtATime() {
+        router.stop();
+        chain("Whatsapp:10,Telegram:5,SMS");
+        router.start();
+        when(batchRepository.claimFallbackAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        router.onDeliveryFailed(failed("req-1", WHATSAPP.getValue(), "+15550001"));
+        router.flush();
+        verify(telegramSender).processFallback("req-1", List.of("+15550001"));
+        verify(smsSender, never()).processFallback(any(), any());
+
+        // the Telegram send is still only SENT when its hop times out
+        router.attemptFallback(DeliveryStateEntity.builder()
+                .requestId("req-1").channel(TELEGRAM.getValue()).recipient("+15550001").mediaType("text")
+                .status(DeliveryStatus.SENT).build());
+        router.flush();
+        verify(smsSender).processFallback("req-1", List.of("+15550001"));
+
+        // SMS is the last hop
+        router.onDeliveryFailed(failed("req-1", SMS.getValue(), "+15550001"));
+        assertEquals(0, router.flush());
+        verify(batchRepository).claimFallbackAll(List.of(
+                new FallbackClaim("req-1", WHATSAPP.getValue(), "+15550001", "text", TELEGRAM.getValue())));
+        verify(batchRepository).claimFallbackAll(List.of(
+                new FallbackClaim("req-1", TELEGRAM.getValue(), "+15550001", "text", SMS.getValue())));
+        verify(telegramSender, times(1)).processFallback(any(), any());
+        verify(smsSender, times(1)).processFallback(any(), any());
+    }
+
+    @Test
+    void testChainToAChannelWithoutSenderIsRejected() {
+        router.stop();
+        router.fallbackSenders = List.of(smsSender);
+        chain("Whatsapp:10,Telegram:5,SMS");
+
+        assertThrows(IllegalStateException.class, router::start);
+    }
+}
@@ -1,20 +1,40 @@
 package com.project.unifiedMarketingGateway.processor;
 
+import com.project.unifiedMarketingGateway.dispatch.DispatchEngine;
+import com.project.unifiedMarketingGateway.enums.IdempotencyStatus;
+import com.project.unifiedMarketingGateway.enums.Priority;
+import com.project.unifiedMarketingGateway.metrics.dto.SendResultDTO;
+import com.project.unifiedMarketingGateway.repository.IdempotencyRepository;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@SpringBootTest
+// write-behind flushes only when the test asks for them
+@SpringBootTest(properties = {
+        "deliveryState.writeBehind.flushIntervalMillis=600000",
+        "storage.writeBehind.flushIntervalMillis=600000"
+})
 @Transactional
 class IdempotencyServiceTest {
 
     @Autowired
     private IdempotencyService idempotencyService;
 
+    @Autowired
+    private IdempotencyRepository idempotencyRepository;
+
     @Test
     void firstAttempt_isAllowed() {
         boolean allowed = idempotencyService.tryStart(
@@ -43,5 +63,113 @@ class IdempotencyServiceTest {
 
         assertTrue(retry);
     }
-}
 
+    @Test
+    void failure_isWrittenWithoutWaitingForAFlush() {
+        idempotencyService.tryStart("req-1", "telegram", "123", "TEXT");
+        idempotencyService.markFailed("req-1", "telegram", "123", "TEXT");
+
+        assertEquals(IdempotencyStatus.FAILED, idempotencyRepository
+                .findByRequestIdAndChannelAndRecipientAndMediaType("req-1", "telegram", "123", "TEXT")
+                .orElseThrow().getStatus());
+    }
+
+    @Test
+    void completedAttempt_isNotRetried() {
+        idempotencyService.tryStart("req-1", "telegram", "123", "TEXT");
+        idempotencyService.markCompleted("req-1", "telegram", "123", "TEXT");
+        idempotencyService.markFailed("req-1", "telegram", "123", "TEXT");
+
+        boolean retry = idempotencyService.tryStart(
+                "req-1", "telegram", "123", "TEXT");
+
+        assertFalse(retry);
+    }
+
+    @Test
+    void reclaimedAttempt_isBlockedUntilItFailsAgain() {
+        idempotencyService.tryStart("req-1", "telegram", "123", "TEXT");
+        idempotencyService.markFailed("req-1", "telegram", "123", "TEXT");
+        idempotencyService.tryStart("req-1", "telegram", "123", "TEXT");
+
+        assertFalse(idempotencyService.tryStart("req-1", "telegram", "123", "TEXT"));
+        assertTrue(idempotencyService.tryStart("req-1", "telegram", "456", "TEXT"));
+    }
+
+    @Test
+    void chunkClaim_returnsOnlyNewAndFailedRecipients() {
+        idempotencyService.tryStart("req-1", "telegram", "1", "TEXT");
+        idempotencyService.tryStart("req-1", "telegram", "2", "TEXT");
+        idempotencyService.markFailed("req-1", "telegram", "2", "TEXT");
+        idempotencyService.tryStart("req-1", "telegram", "3", "TEXT");
+        idempotencyService.markCompleted("req-1", "telegram", "3", "TEXT");
+
+        List<String> claimed = idempotencyService.tryStartAll(
+                "req-1", "telegram", List.of("1", "2", "3", "4", "4"), "TEXT");
+
+        assertEquals(List.of("2", "4"), claimed);
+        assertFalse(idempotencyService.tryStart("req-1", "telegram", "4", "TEXT"));
+    }
+
+    @Test
+    void streamClaim_spansChunks() {
+        // claims run on another thread, outside the test transaction: use a request id of its own
+        int total = idempotencyService.getClaimChunkSize() + 5;
+        Flux<String> recipients = Flux.range(0, total).map(i -> "r" + i).concatWith(Flux.just("r3"));
+
+        List<String> claimed = idempotencyService.claimAll("req-stream", "sms", recipients, "sendSms")
+                .collectList()
+                .block();
+
+        assertEquals(total, claimed.size());
+        assertEquals(total, claimed.stream().distinct().count());
+    }
+
+    @Test
+    void bulkStreamCancelledMidWay_releasesTheClaimsThatWereNotSent() throws Exception {
+        // one worker, two queue slots: the first send hangs, two are queued, the rest of the chunk waits
+        DispatchEngine engine = new DispatchEngine("sms", 1, 2);
+        Sinks.Empty<Void> firstSend = Sinks.empty();
+        AtomicInteger sends = new AtomicInteger();
+        RecipientSender sender = new RecipientSender("sendSms", recipient -> {
+            sends.incrementAndGet();
+            return firstSend.asMono().thenReturn(new SendResultDTO(recipient, true, null, null));
+        });
+
+        PendingClaims claims = idempotencyService.pendingClaims("req-cancel", "sms");
+        // one chunk of recipients, then an upload that stalls
+        Flux<String> recipients = Flux.range(0, idempotencyService.getClaimChunkSize())
+                .map(i -> "r" + i)
+                .concatWith(Flux.never());
+        Disposable request = engine.submitAll(Priority.BULK, idempotencyService
+                        .claimAll("req-cancel", "sms", recipients, "sendSms", claims)
+                        .map(recipient -> claims.task(recipient, sender)))
+                .doOnCancel(claims::releaseUnstarted)
+                .subscribe();
+
+        for (int i = 0; i < 500 && (engine.getInFlight() < 1 || engine.getQueueDepth() < 2); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, engine.getInFlight());
+        assertEquals(2, engine.getQueueDepth());
+
+        request.dispose();
+
+        // the send in flight keeps its claim; queued and not yet queued ones can be claimed again
+        assertFalse(idempotencyService.tryStart("req-cancel", "sms", "r0", "sendSms"));
+        assertEquals(IdempotencyStatus.FAILED, idempotencyRepository
+                .findByRequestIdAndChannelAndRecipientAndMediaType("req-cancel", "sms", "r1", "sendSms")
+                .orElseThrow().getStatus());
+        assertEquals(IdempotencyStatus.FAILED, idempotencyRepository
+                .findByRequestIdAndChannelAndRecipientAndMediaType("req-cancel", "sms", "r499", "sendSms")
+                .orElseThrow().getStatus());
+
+        // the queued sends lost their claim and are skipped
+        firstSend.tryEmitEmpty();
+        for (int i = 0; i < 500 && (engine.getInFlight() > 0 || engine.getQueueDepth() > 0); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, engine.getQueueDepth());
+        assertEquals(1, sends.get());
+    }
+}
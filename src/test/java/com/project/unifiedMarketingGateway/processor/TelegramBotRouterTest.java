@@ -0,0 +1,105 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import com.project.unifiedMarketingGateway.cache.ExpiringCache;
+import com.project.unifiedMarketingGateway.entity.TelegramChatBinding;
+import com.project.unifiedMarketingGateway.processor.telegram.TelegramBotRouter;
+import com.project.unifiedMarketingGateway.rateLimiter.SendRateLimiter;
+import com.project.unifiedMarketingGateway.repository.TelegramChatBindingRepository;
+import com.project.unifiedMarketingGateway.senderPool.PooledSender;
+import com.project.unifiedMarketingGateway.senderPool.SenderPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TelegramBotRouterTest {
+
+    private final PooledSender bot1 = bot("111");
+    private final PooledSender bot2 = bot("222");
+    private final TelegramChatBindingRepository repository = mock(TelegramChatBindingRepository.class);
+    private final ExpiringCache<String, String> cache = new ExpiringCache<>("test", Duration.ofMinutes(5), 100);
+    private TelegramBotRouter router;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        router = new TelegramBotRouter();
+        setField(router, "botPool", new SenderPool("telegram", List.of(bot1, bot2)));
+        setField(router, "bindingRepository", repository);
+        setField(router, "bindingCache", cache);
+    }
+
+    @Test
+    void testBoundChatKeepsItsBotAndIsCached() {
+        when(repository.findById("42")).thenReturn(Optional.of(binding("42", "222")));
+
+        assertSame(bot2, router.botFor("42"));
+        assertSame(bot2, router.botFor("42"));
+
+        verify(repository, times(1)).findById("42");
+        verify(repository, never()).bind(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void testUnboundChatIsBoundToThePrimaryBotEvenWhenItIsBusier() {
+        when(repository.findById("42")).thenReturn(Optional.empty());
+        bot1.track(Mono.never()).subscribe();
+
+        assertSame(bot1, router.botFor("42"));
+        verify(repository).bind(eq("42"), eq("111"), anyLong());
+        assertEquals("111", cache.getIfPresent("42"));
+    }
+
+    @Test
+    void testUnboundChatIsBoundToTheConfiguredPrimaryBot() throws Exception {
+        setField(router, "primaryBotToken", "222:token");
+        when(repository.findById("42")).thenReturn(Optional.empty());
+
+        assertSame(bot2, router.botFor("42"));
+        verify(repository).bind(eq("42"), eq("222"), anyLong());
+    }
+
+    @Test
+    void testConcurrentBindUsesTheWinningBinding() {
+        when(repository.findById("42"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(binding("42", "222")));
+        when(repository.bind(eq("42"), eq("111"), anyLong()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertSame(bot2, router.botFor("42"));
+    }
+
+    @Test
+    void testChatOfRemovedBotIsUnreachable() {
+        when(repository.findById("42")).thenReturn(Optional.of(binding("42", "999")));
+
+        assertThrows(TelegramBotRouter.UnreachableChatException.class, () -> router.botFor("42"));
+        assertThrows(TelegramBotRouter.UnreachableChatException.class, () -> router.botFor("42"));
+
+        verify(repository, times(1)).findById("42");
+        verify(repository, never()).bind(anyString(), anyString(), anyLong());
+    }
+
+    private TelegramChatBinding binding(String chatId, String botId) {
+        return TelegramChatBinding.builder().chatId(chatId).botId(botId).boundAtEpochMillis(1L).build();
+    }
+
+    private PooledSender bot(String id) {
+        return new PooledSender("telegram", id, id + ":token", new SendRateLimiter("telegram/" + id, 30, 30, 1, 1));
+    }
+
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
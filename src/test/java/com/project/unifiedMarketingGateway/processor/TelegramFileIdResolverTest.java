@@ -0,0 +1,141 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.unifiedMarketingGateway.builders.PayloadTemplate;
+import com.project.unifiedMarketingGateway.cache.ExpiringCache;
+import com.project.unifiedMarketingGateway.connectors.TelegramHttpConnector;
+import com.project.unifiedMarketingGateway.processor.telegram.TelegramFileIdResolver;
+import com.project.unifiedMarketingGateway.retryHandler.TelegramReactiveRetryHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TelegramFileIdResolverTest {
+
+    private static final String PHOTO_RESPONSE =
+            "{\"ok\":true,\"result\":{\"photo\":[{\"file_id\":\"small\"},{\"file_id\":\"large\"}]}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TelegramHttpConnector connector = mock(TelegramHttpConnector.class);
+    private final ExpiringCache<String, String> cache = new ExpiringCache<>("test", Duration.ofMinutes(5), 100);
+    private static final String BOT_TOKEN = "111:secret";
+
+    private final List<String> sentMediaRefs = new CopyOnWriteArrayList<>();
+    private TelegramFileIdResolver resolver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        resolver = new TelegramFileIdResolver();
+        setField(resolver, "telegramHttpConnector", connector);
+        setField(resolver, "fileIdCache", cache);
+        setField(resolver, "objectMapper", objectMapper);
+        setField(resolver, "reactiveRetryHandler", new TelegramReactiveRetryHandler());
+    }
+
+    @Test
+    void testFirstSendUsesUrlAndLaterSendsUseFileId() throws Exception {
+        when(connector.sendMarketingRequest(eq(BOT_TOKEN), eq("sendPhoto"), any(PayloadTemplate.class), anyString()))
+                .thenAnswer(inv -> {
+                    String payload = ((PayloadTemplate) inv.getArgument(2)).render(inv.getArgument(3));
+                    sentMediaRefs.add(objectMapper.readTree(payload).get("photo").asText());
+                    return Mono.just(PHOTO_RESPONSE);
+                });
+
+        TelegramFileIdResolver.MediaSender sender = resolver.forMedia("sendPhoto", "photo", "https://cdn/img.png", this::template);
+        for (String chat : List.of("1", "2", "3")) {
+            assertEquals(PHOTO_RESPONSE, sender.send(BOT_TOKEN, chat).block(Duration.ofSeconds(1)));
+        }
+
+        assertEquals(List.of("https://cdn/img.png", "large", "large"), sentMediaRefs);
+        assertEquals("large", cache.getIfPresent("111|https://cdn/img.png"));
+    }
+
+    @Test
+    void testFailedFirstSendFailsOnlyItsOwnChat() {
+        when(connector.sendMarketingRequest(eq(BOT_TOKEN), eq("sendPhoto"), any(PayloadTemplate.class), eq("1")))
+                .thenReturn(Mono.error(new IllegalStateException("chat not found")));
+        when(connector.sendMarketingRequest(eq(BOT_TOKEN), eq("sendPhoto"), any(PayloadTemplate.class), eq("2")))
+                .thenReturn(Mono.just(PHOTO_RESPONSE));
+
+        TelegramFileIdResolver.MediaSender sender = resolver.forMedia("sendPhoto", "photo", "https://cdn/img.png", this::template);
+
+        assertThrows(IllegalStateException.class, () -> sender.send(BOT_TOKEN, "1").block(Duration.ofSeconds(1)));
+        assertEquals(PHOTO_RESPONSE, sender.send(BOT_TOKEN, "2").block(Duration.ofSeconds(1)));
+        assertEquals("large", cache.getIfPresent("111|https://cdn/img.png"));
+    }
+
+    @Test
+    void testThrottledFirstSendFailsWaitersInsteadOfUploadingByUrl() {
+        Sinks.One<String> firstSend = Sinks.one();
+        when(connector.sendMarketingRequest(eq(BOT_TOKEN), eq("sendPhoto"), any(PayloadTemplate.class), anyString()))
+                .thenAnswer(inv -> "1".equals(inv.getArgument(3)) ? firstSend.asMono() : Mono.just(PHOTO_RESPONSE));
+
+        TelegramFileIdResolver.MediaSender sender = resolver.forMedia("sendPhoto", "photo", "https://cdn/img.png", this::template);
+        List<CompletableFuture<String>> sends = List.of("1", "2", "3").stream()
+                .map(chat -> sender.send(BOT_TOKEN, chat).toFuture())
+                .toList();
+
+        firstSend.tryEmitError(WebClientResponseException.create(429, "Too Many Requests", HttpHeaders.EMPTY,
+                "{\"ok\":false,\"parameters\":{\"retry_after\":5}}".getBytes(), null));
+
+        // every send fails with the throttling error, so its own retry waits out the pause before loading again
+        for (CompletableFuture<String> send : sends) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> send.get(1, TimeUnit.SECONDS));
+            assertInstanceOf(WebClientResponseException.TooManyRequests.class, failure.getCause());
+        }
+        verify(connector, times(1)).sendMarketingRequest(any(), any(), any(PayloadTemplate.class), any());
+    }
+
+    @Test
+    void testWaiterLoadsAgainWhenFirstSendFailsOnItsOwnChat() throws Exception {
+        Sinks.One<String> firstSend = Sinks.one();
+        when(connector.sendMarketingRequest(eq(BOT_TOKEN), eq("sendPhoto"), any(PayloadTemplate.class), anyString()))
+                .thenAnswer(inv -> {
+                    if ("1".equals(inv.getArgument(3))) {
+                        return firstSend.asMono();
+                    }
+                    String payload = ((PayloadTemplate) inv.getArgument(2)).render(inv.getArgument(3));
+                    sentMediaRefs.add(objectMapper.readTree(payload).get("photo").asText());
+                    return Mono.just(PHOTO_RESPONSE);
+                });
+
+        TelegramFileIdResolver.MediaSender sender = resolver.forMedia("sendPhoto", "photo", "https://cdn/img.png", this::template);
+        CompletableFuture<String> first = sender.send(BOT_TOKEN, "1").toFuture();
+        CompletableFuture<String> second = sender.send(BOT_TOKEN, "2").toFuture();
+        CompletableFuture<String> third = sender.send(BOT_TOKEN, "3").toFuture();
+
+        firstSend.tryEmitError(new IllegalStateException("chat not found"));
+
+        assertThrows(ExecutionException.class, () -> first.get(1, TimeUnit.SECONDS));
+        assertEquals(PHOTO_RESPONSE, second.get(1, TimeUnit.SECONDS));
+        assertEquals(PHOTO_RESPONSE, third.get(1, TimeUnit.SECONDS));
+        // one of the waiters uploaded by url, the other one used its file id
+        assertEquals(List.of("https://cdn/img.png", "large"), sentMediaRefs.stream().sorted().toList());
+    }
+
+    private PayloadTemplate template(String mediaRef) {
+        return PayloadTemplate.compile(objectMapper, chatId -> Map.of("chat_id", chatId, "photo", mediaRef));
+    }
+
+    private void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
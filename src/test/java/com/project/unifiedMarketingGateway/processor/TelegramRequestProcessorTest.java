@@ -1,23 +1,31 @@
 package com.project.unifiedMarketingGateway.processor;
 
 import com.project.unifiedMarketingGateway.builders.TelegramPayloadBuilder;
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.connectors.TelegramHttpConnector;
+import com.project.unifiedMarketingGateway.dispatch.DispatchEngine;
 import com.project.unifiedMarketingGateway.enums.MediaType;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import com.project.unifiedMarketingGateway.models.SendNotificationResponse;
 import com.project.unifiedMarketingGateway.builders.SendNotificationResponseBuilder;
+import com.project.unifiedMarketingGateway.processor.telegram.TelegramFileIdResolver;
 import com.project.unifiedMarketingGateway.processor.telegram.TelegramRequestProcessor;
 import com.project.unifiedMarketingGateway.store.responseStore.TelegramResponseStore;
 import com.project.unifiedMarketingGateway.retryHandler.TelegramReactiveRetryHandler;
+import com.project.unifiedMarketingGateway.senderPool.SenderPool;
 import com.project.unifiedMarketingGateway.validators.TelegramSendNotificationRequestValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.lang.reflect.Field;
 import java.util.*;
 
+import static com.project.unifiedMarketingGateway.constants.Constants.FALLBACK_TEXT_MESSAGE;
+import static com.project.unifiedMarketingGateway.constants.Constants.TELEGRAM_SEND_MESSAGE_METHOD;
+import static com.project.unifiedMarketingGateway.enums.ClientType.TELEGRAM;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -44,6 +52,17 @@ public class TelegramRequestProcessorTest {
     @Mock
     TelegramPayloadBuilder payloadBuilder;
 
+    @Mock
+    TelegramFileIdResolver fileIdResolver;
+
+    @Mock
+    FallbackPolicy fallbackPolicy;
+
+    @Mock
+    IdempotencyService idempotencyService;
+
+    @Mock
+    SenderPool botPool;
 
     @BeforeEach
     void setUp() throws Exception {
@@ -56,7 +75,12 @@ public class TelegramRequestProcessorTest {
         setField(telegramRequestProcessor, "telegramResponseStore", telegramResponseStore);
         setField(telegramRequestProcessor, "responseBuilder", responseBuilder);
         setField(telegramRequestProcessor, "requestValidator", requestValidator);
-        setField(telegramRequestProcessor, "maxConcurrency", 3);
+        setField(telegramRequestProcessor, "payloadBuilder", payloadBuilder);
+        setField(telegramRequestProcessor, "fileIdResolver", fileIdResolver);
+        setField(telegramRequestProcessor, "fallbackPolicy", fallbackPolicy);
+        setField(telegramRequestProcessor, "idempotencyService", idempotencyService);
+        setField(telegramRequestProcessor, "botPool", botPool);
+        setField(telegramRequestProcessor, "dispatchEngine", new DispatchEngine("Telegram", 3, 100));
         setField(telegramRequestProcessor, "isTextEnabled", true);
         setField(telegramRequestProcessor, "isImageEnabled", true);
         setField(telegramRequestProcessor, "isVideoEnabled", true);
@@ -180,6 +204,28 @@ public class TelegramRequestProcessorTest {
 
     }
 
+    @Test
+    void testFallbackIsSentAsTextUnderTheOriginalRequest() {
+        // every chat already claimed: nothing reaches the provider
+        when(idempotencyService.claimAll(anyString(), anyString(), any(), anyString())).thenReturn(Flux.empty());
+
+        assertFalse(telegramRequestProcessor.isDegraded());
+        telegramRequestProcessor.processFallback("req-1", List.of("111", "222"));
+
+        verify(payloadBuilder).buildTextTemplate(FALLBACK_TEXT_MESSAGE);
+        verify(idempotencyService, timeout(1000)).claimAll(eq("req-1"), eq(TELEGRAM.getValue()), any(), eq(TELEGRAM_SEND_MESSAGE_METHOD));
+    }
+
+    @Test
+    void testFallbackHopIsDegradedWhileTextIsDisabled() throws Exception {
+        setField(telegramRequestProcessor, "isTextEnabled", false);
+
+        assertTrue(telegramRequestProcessor.isDegraded());
+        telegramRequestProcessor.processFallback("req-1", List.of("111"));
+
+        verifyNoInteractions(idempotencyService);
+    }
+
     private SendNotificationRequest getBaseRequest(List<MediaType> mediaTypeList)
     {
         return SendNotificationRequest.builder()
@@ -0,0 +1,130 @@
+package com.project.unifiedMarketingGateway.processor;
+
+import com.project.unifiedMarketingGateway.contexts.SendContext;
+import com.project.unifiedMarketingGateway.entity.DeliveryStateEntity;
+import com.project.unifiedMarketingGateway.entity.SmsMessageEntity;
+import com.project.unifiedMarketingGateway.enums.DeliveryStatus;
+import com.project.unifiedMarketingGateway.enums.IdempotencyStatus;
+import com.project.unifiedMarketingGateway.enums.SmsMessageStatus;
+import com.project.unifiedMarketingGateway.enums.WhatsappMessageStatus;
+import com.project.unifiedMarketingGateway.models.WhatsappMessage;
+import com.project.unifiedMarketingGateway.repository.DeliveryStateRepository;
+import com.project.unifiedMarketingGateway.repository.IdempotencyRepository;
+import com.project.unifiedMarketingGateway.store.messageStore.SmsMessageStore;
+import com.project.unifiedMarketingGateway.store.messageStore.WhatsappMessageStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "storage.mode=unified",
+        "deliveryState.writeBehind.flushIntervalMillis=600000"
+})
+class UnifiedStorageModeTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private DeliveryStateService deliveryStateService;
+
+    @Autowired
+    private DeliveryStateWriteBuffer writeBuffer;
+
+    @Autowired
+    private DeliveryStateRepository deliveryStateRepository;
+
+    @Autowired
+    private IdempotencyRepository idempotencyRepository;
+
+    @Autowired
+    private SmsMessageStore smsMessageStore;
+
+    @Autowired
+    private WhatsappMessageStore whatsappMessageStore;
+
+    private SendContext ctx(String requestId, String channel, String recipient, String method) {
+        return SendContext.builder()
+                .requestId(requestId)
+                .channel(channel)
+                .recipient(recipient)
+                .method(method)
+                .build();
+    }
+
+    private DeliveryStateEntity row(String requestId) {
+        return deliveryStateRepository.findByRequestId(requestId).get(0);
+    }
+
+    @Test
+    void claimWritesTheQueuedSendRowOnly() {
+        String requestId = UUID.randomUUID().toString();
+
+        assertTrue(idempotencyService.tryStart(requestId, "SMS", "+15550001", "sendSms"));
+        assertFalse(idempotencyService.tryStart(requestId, "SMS", "+15550001", "sendSms"));
+
+        assertEquals(1, deliveryStateRepository.findByRequestId(requestId).size());
+        assertEquals(DeliveryStatus.QUEUED, row(requestId).getStatus());
+        assertEquals(IdempotencyStatus.IN_PROGRESS, row(requestId).getIdempotencyStatus());
+        assertTrue(idempotencyRepository
+                .findByRequestIdAndChannelAndRecipientAndMediaType(requestId, "SMS", "+15550001", "sendSms")
+                .isEmpty());
+    }
+
+    @Test
+    void sentStateCompletesTheClaimAndServesTheSmsQuery() {
+        String requestId = UUID.randomUUID().toString();
+        String sid = "SM" + requestId;
+        SendContext ctx = ctx(requestId, "SMS", "+15550002", "sendSms");
+        idempotencyService.tryStart(requestId, "SMS", "+15550002", "sendSms");
+
+        deliveryStateService.markQueued(ctx);
+        deliveryStateService.markSent(ctx, sid);
+        idempotencyService.markCompleted(requestId, "SMS", "+15550002", "sendSms");
+
+        SmsMessageEntity sms = smsMessageStore.findBySid(sid).orElseThrow();
+        assertEquals(SmsMessageStatus.SENT, sms.getStatus());
+        assertEquals("+15550002", sms.getRecipient());
+        assertEquals(IdempotencyStatus.COMPLETED, row(requestId).getIdempotencyStatus());
+        assertFalse(idempotencyService.tryStart(requestId, "SMS", "+15550002", "sendSms"));
+    }
+
+    @Test
+    void failedStateReleasesTheClaimForARetry() {
+        String requestId = UUID.randomUUID().toString();
+        SendContext ctx = ctx(requestId, "Whatsapp", "15550003", "text");
+        idempotencyService.tryStart(requestId, "Whatsapp", "15550003", "text");
+
+        deliveryStateService.markFailed(ctx, "timeout");
+        writeBuffer.flush();
+
+        assertEquals(IdempotencyStatus.FAILED, row(requestId).getIdempotencyStatus());
+        assertTrue(idempotencyService.tryStart(requestId, "Whatsapp", "15550003", "text"));
+        assertEquals(DeliveryStatus.QUEUED, row(requestId).getStatus());
+        assertNull(row(requestId).getFailureReason());
+    }
+
+    @Test
+    void whatsappQueryAndWebhookUseTheSendRow() {
+        String requestId = UUID.randomUUID().toString();
+        String wamid = "wamid." + requestId;
+        SendContext ctx = ctx(requestId, "Whatsapp", "15550004", "text");
+        idempotencyService.tryStart(requestId, "Whatsapp", "15550004", "text");
+        deliveryStateService.markSent(ctx, wamid);
+        writeBuffer.flush();
+
+        whatsappMessageStore.updateStatus(wamid, "15550004", WhatsappMessageStatus.FAILED, "131026", "undeliverable");
+        deliveryStateService.markFailedByProviderMessageId(wamid, "undeliverable");
+
+        WhatsappMessage message = whatsappMessageStore.findByWaMessageId(wamid).orElseThrow();
+        assertEquals(WhatsappMessageStatus.FAILED, message.getStatus());
+        assertEquals("131026", message.getErrorCode());
+        assertEquals("undeliverable", message.getErrorDetails());
+        assertEquals(requestId, message.getRequestId());
+        assertEquals(IdempotencyStatus.COMPLETED, row(requestId).getIdempotencyStatus());
+    }
+}
@@ -0,0 +1,100 @@
+package com.project.unifiedMarketingGateway.rateLimiter;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SendRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testBucketAllowsBurstThenSpacesPermits() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0L);
+
+        assertEquals(0L, bucket.reserve(0L));
+        assertEquals(0L, bucket.reserve(0L));
+        assertEquals(0L, bucket.reserve(0L));
+        assertEquals(SECOND / 10, bucket.reserve(0L));
+        assertEquals(2 * SECOND / 10, bucket.reserve(0L));
+    }
+
+    @Test
+    void testBucketRefillsWhileIdle() {
+        TokenBucket bucket = new TokenBucket(1, 1, 0L);
+
+        assertEquals(0L, bucket.reserve(0L));
+        assertFalse(bucket.isIdle(SECOND / 2));
+        assertTrue(bucket.isIdle(SECOND));
+        assertEquals(0L, bucket.reserve(2 * SECOND));
+    }
+
+    @Test
+    void testPerRecipientLimitDoesNotThrottleOtherRecipients() {
+        AtomicLong clock = new AtomicLong();
+        SendRateLimiter limiter = new SendRateLimiter("telegram", 0, 1, 1, 1, Duration.ZERO, 1.0, clock::get);
+
+        assertNull(limiter.acquire("chat-1").block(Duration.ofMillis(100)));
+        assertNull(limiter.acquire("chat-2").block(Duration.ofMillis(100)));
+        // the second send to chat-1 has to wait a full second
+        assertThrows(IllegalStateException.class, () -> limiter.acquire("chat-1").block(Duration.ofMillis(100)));
+        assertEquals(2, limiter.getTrackedRecipients());
+    }
+
+    @Test
+    void testGlobalLimitIsSharedAcrossRecipients() {
+        SendRateLimiter limiter = new SendRateLimiter("telegram", 20, 1, 0, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("chat-" + i).block();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 5 permits at 20/s with no burst: the last one is released after ~200 ms
+        assertTrue(elapsedMillis >= 180, "acquired too fast: " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testPauseHoldsEverySenderUntilDeadline() {
+        SendRateLimiter limiter = new SendRateLimiter("telegram", 100, 100, 0, 1);
+        limiter.pause(Duration.ofMillis(200));
+        assertTrue(limiter.isPaused());
+
+        long start = System.nanoTime();
+        Flux.range(0, 5).flatMap(i -> limiter.acquire("chat-" + i)).blockLast(Duration.ofSeconds(5));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis >= 180, "acquired during pause after " + elapsedMillis + " ms");
+        assertFalse(limiter.isPaused());
+    }
+
+    @Test
+    void testRateRampsUpAfterPause() {
+        AtomicLong clock = new AtomicLong();
+        SendRateLimiter limiter = new SendRateLimiter("whatsapp", 20, 5, 0, 1,
+                Duration.ofSeconds(10), 0.1, clock::get);
+        limiter.pause(Duration.ZERO);
+
+        assertNull(limiter.acquire("a").block(Duration.ofMillis(100)));
+        // at 10% of 20/s the next slot is 500 ms away instead of 50 ms, and the burst is gone
+        assertThrows(IllegalStateException.class, () -> limiter.acquire("b").block(Duration.ofMillis(200)));
+    }
+
+    @Test
+    void testNewLimiterRunsAtFullRateWithoutRamp() {
+        AtomicLong clock = new AtomicLong();
+        SendRateLimiter limiter = new SendRateLimiter("whatsapp", 20, 5, 0, 1,
+                Duration.ofSeconds(10), 0.1, clock::get);
+
+        assertFalse(limiter.isPaused());
+        // the whole burst is there straight away, no ramp after startup
+        for (int i = 0; i < 5; i++) {
+            assertNull(limiter.acquire("chat-" + i).block(Duration.ofMillis(100)));
+        }
+    }
+}
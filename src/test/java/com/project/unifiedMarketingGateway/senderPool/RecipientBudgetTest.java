@@ -0,0 +1,57 @@
+package com.project.unifiedMarketingGateway.senderPool;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecipientBudgetTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void testCountsUniqueRecipientsUpToLimit() {
+        AtomicLong clock = new AtomicLong();
+        RecipientBudget budget = new RecipientBudget(2, Duration.ofHours(24), clock::get);
+
+        assertTrue(budget.tryAdmit("a"));
+        assertTrue(budget.tryAdmit("b"));
+        assertTrue(budget.tryAdmit("a"));
+        assertFalse(budget.tryAdmit("c"));
+        assertEquals(2, budget.getUsed());
+    }
+
+    @Test
+    void testRecipientsExpireAfterWindow() {
+        AtomicLong clock = new AtomicLong();
+        RecipientBudget budget = new RecipientBudget(2, Duration.ofHours(24), clock::get);
+
+        budget.tryAdmit("a");
+        clock.set(12 * HOUR);
+        budget.tryAdmit("b");
+        assertFalse(budget.tryAdmit("c"));
+
+        clock.set(24 * HOUR);
+        assertTrue(budget.tryAdmit("c"));
+        assertFalse(budget.tryAdmit("d"));
+
+        clock.set(36 * HOUR);
+        assertTrue(budget.tryAdmit("d"));
+    }
+
+    @Test
+    void testUsedDoesNotCountRecipientsPastTheWindow() {
+        AtomicLong clock = new AtomicLong();
+        RecipientBudget budget = new RecipientBudget(5, Duration.ofHours(24), clock::get);
+        budget.tryAdmit("a");
+        clock.set(HOUR);
+        budget.tryAdmit("b");
+
+        clock.set(24 * HOUR);
+        assertEquals(1, budget.getUsed());
+        clock.set(25 * HOUR);
+        assertEquals(0, budget.getUsed());
+    }
+}
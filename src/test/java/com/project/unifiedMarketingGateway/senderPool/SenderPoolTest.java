@@ -0,0 +1,175 @@
+package com.project.unifiedMarketingGateway.senderPool;
+
+import com.project.unifiedMarketingGateway.rateLimiter.SendRateLimiter;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SenderPoolTest {
+
+    @Test
+    void testIdlePoolRotatesBetweenSenders() {
+        SenderPool pool = new SenderPool("telegram", List.of(sender("a"), sender("b"), sender("c")));
+
+        Set<String> picked = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            picked.add(pool.leastLoaded().getId());
+        }
+
+        assertEquals(Set.of("a", "b", "c"), picked);
+    }
+
+    @Test
+    void testPicksSenderWithFewestSendsInFlight() {
+        PooledSender busy = sender("busy");
+        PooledSender idle = sender("idle");
+        SenderPool pool = new SenderPool("telegram", List.of(busy, idle));
+
+        Sinks.One<String> pending = Sinks.one();
+        busy.track(pending.asMono()).subscribe();
+        assertEquals(1, busy.getInFlight());
+
+        for (int i = 0; i < 4; i++) {
+            assertSame(idle, pool.leastLoaded());
+        }
+
+        pending.tryEmitValue("done");
+        assertEquals(0, busy.getInFlight());
+    }
+
+    @Test
+    void testThrottledSenderIsSkippedUnlessAllAreThrottled() {
+        PooledSender throttled = sender("throttled");
+        PooledSender other = sender("other");
+        SenderPool pool = new SenderPool("telegram", List.of(throttled, other));
+
+        other.track(Mono.never()).subscribe();
+        throttled.getRateLimiter().pause(Duration.ofMinutes(1));
+        assertSame(other, pool.leastLoaded());
+
+        other.getRateLimiter().pause(Duration.ofMinutes(1));
+        assertSame(throttled, pool.leastLoaded());
+    }
+
+    @Test
+    void testRecipientSticksToOneSender() {
+        SenderPool pool = new SenderPool("whatsapp", List.of(sender("a"), sender("b"), sender("c")));
+        SenderPool sameNumbersElsewhere = new SenderPool("whatsapp", List.of(sender("c"), sender("a"), sender("b")));
+
+        Set<String> used = new HashSet<>();
+        for (int r = 0; r < 50; r++) {
+            PooledSender first = pool.stickyFor("r" + r).orElseThrow();
+            first.track(Mono.never()).subscribe(); // load does not move a recipient
+            assertSame(first, pool.stickyFor("r" + r).orElseThrow());
+            assertEquals(first.getId(), sameNumbersElsewhere.stickyFor("r" + r).orElseThrow().getId());
+            used.add(first.getId());
+        }
+        assertEquals(3, used.size());
+    }
+
+    @Test
+    void testRecipientMovesOnlyWhileItsSenderIsUnavailable() {
+        PooledSender a = sender("a");
+        PooledSender b = sender("b");
+        SenderPool pool = new SenderPool("whatsapp", List.of(a, b));
+        PooledSender home = pool.stickyFor("r1").orElseThrow();
+        PooledSender other = home == a ? b : a;
+
+        home.getRateLimiter().pause(Duration.ofMinutes(1));
+        assertSame(other, pool.stickyFor("r1").orElseThrow());
+
+        other.getRateLimiter().pause(Duration.ofMinutes(1));
+        assertSame(home, pool.stickyFor("r1").orElseThrow());
+    }
+
+    @Test
+    void testSenderWithoutBudgetLeftIsSkipped() {
+        PooledSender small = new PooledSender("whatsapp", "small", "small", limiter("small"),
+                new RecipientBudget(1, Duration.ofHours(24)), 0, Duration.ZERO);
+        PooledSender other = sender("other");
+        SenderPool pool = new SenderPool("whatsapp", List.of(small, other));
+        // one recipient that prefers the small sender fills its budget
+        String first = IntStream.range(0, 100).mapToObj(i -> "r" + i)
+                .filter(r -> pool.stickyFor(r).orElseThrow() == small)
+                .findFirst().orElseThrow();
+
+        assertSame(small, pool.stickyFor(first).orElseThrow());
+        IntStream.range(100, 200).mapToObj(i -> "r" + i)
+                .forEach(r -> assertSame(other, pool.stickyFor(r).orElseThrow()));
+    }
+
+    @Test
+    void testNoSenderWhenEveryBudgetIsUsedUp() {
+        PooledSender only = new PooledSender("whatsapp", "only", "only", limiter("only"),
+                new RecipientBudget(1, Duration.ofHours(24)), 0, Duration.ZERO);
+        SenderPool pool = new SenderPool("whatsapp", List.of(only));
+
+        assertTrue(pool.stickyFor("r1").isPresent());
+        assertTrue(pool.stickyFor("r2").isEmpty());
+    }
+
+    @Test
+    void testRepeatedFailuresTakeSenderOutOfRotation() {
+        PooledSender flaky = new PooledSender("whatsapp", "flaky", "flaky", limiter("flaky"),
+                null, 2, Duration.ofMinutes(1));
+        PooledSender other = sender("other");
+        other.track(Mono.never()).subscribe();
+        SenderPool pool = new SenderPool("whatsapp", List.of(flaky, other));
+
+        flaky.recordFailure();
+        flaky.recordSuccess();
+        flaky.recordFailure();
+        assertTrue(flaky.isHealthy());
+        assertSame(flaky, pool.leastLoaded());
+
+        flaky.recordFailure();
+        assertFalse(flaky.isHealthy());
+        assertSame(other, pool.leastLoaded());
+    }
+
+    @Test
+    void testPacedSendsSpreadEvenlySoThroughputScalesWithPoolSize() {
+        List<PooledSender> numbers = List.of(paced("n1"), paced("n2"), paced("n3"));
+        SenderPool pool = new SenderPool("sms", numbers);
+        Map<String, Integer> sendsPerNumber = new ConcurrentHashMap<>();
+
+        Flux.range(0, 30)
+                .flatMap(i -> Mono.fromCallable(pool::leastLoaded)
+                        .flatMap(number -> number.track(number.getRateLimiter().acquire("r" + i)
+                                .then(Mono.fromRunnable(() -> sendsPerNumber.merge(number.getId(), 1, Integer::sum))))))
+                .blockLast(Duration.ofSeconds(5));
+
+        assertEquals(Map.of("n1", 10, "n2", 10, "n3", 10), sendsPerNumber);
+    }
+
+    @Test
+    void testRejectsEmptyAndDuplicateSenders() {
+        assertThrows(IllegalArgumentException.class, () -> new SenderPool("telegram", List.of()));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SenderPool("telegram", List.of(sender("a"), sender("a"))));
+    }
+
+    private PooledSender sender(String id) {
+        return new PooledSender("telegram", id, id + ":token", limiter(id));
+    }
+
+    private PooledSender paced(String id) {
+        // slow enough that no paced send completes while the test is still handing sends out
+        return new PooledSender("sms", id, id, new SendRateLimiter("sms/" + id, 5, 1, 0, 1));
+    }
+
+    private SendRateLimiter limiter(String id) {
+        return new SendRateLimiter("test/" + id, 30, 30, 1, 1);
+    }
+}
@@ -0,0 +1,108 @@
+package com.project.unifiedMarketingGateway.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+
+    @Test
+    void testFlushWritesInBatchesInOrder() {
+        List<List<Integer>> batches = new ArrayList<>();
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", batches::add, 2, Duration.ofHours(1));
+
+        for (int i = 0; i < 5; i++) {
+            queue.add(i);
+        }
+        assertEquals(5, queue.getPendingCount());
+
+        assertEquals(5, queue.flush());
+        assertEquals(List.of(List.of(0, 1), List.of(2, 3), List.of(4)), batches);
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    void testFullBatchIsFlushedWithoutWaitingForTheInterval() throws InterruptedException {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", batches::add, 3, Duration.ofHours(1));
+        queue.start();
+        try {
+            queue.add(1);
+            queue.add(2);
+            queue.add(3);
+            for (int i = 0; i < 100 && batches.isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of(List.of(1, 2, 3)), batches);
+        } finally {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void testFailedBatchIsKeptForTheNextFlush() {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        List<Integer> written = new ArrayList<>();
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", batch -> {
+            if (fail.get()) throw new IllegalStateException("database down");
+            written.addAll(batch);
+        }, 10, Duration.ofHours(1));
+
+        queue.add(1);
+        queue.add(2);
+        assertThrows(IllegalStateException.class, queue::flush);
+        assertEquals(2, queue.getPendingCount());
+
+        fail.set(false);
+        queue.stop();
+        assertEquals(List.of(1, 2), written);
+    }
+
+    @Test
+    void testRowThatCannotBeWrittenIsIsolatedAndDroppedAfterMaxAttempts() {
+        List<Integer> written = new ArrayList<>();
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", batch -> {
+            if (batch.contains(3)) throw new IllegalStateException("constraint violation");
+            written.addAll(batch);
+        }, 10, Duration.ofHours(1), 2);
+
+        for (int i = 0; i < 6; i++) {
+            queue.add(i);
+        }
+        assertThrows(IllegalStateException.class, queue::flush);
+        assertEquals(6, queue.getPendingCount());
+
+        assertEquals(5, queue.flush());
+        assertEquals(List.of(0, 1, 2, 4, 5), written.stream().sorted().toList());
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    void testNothingIsDroppedWhileNoRowCanBeWritten() {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        List<Integer> written = new ArrayList<>();
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", batch -> {
+            if (fail.get()) throw new IllegalStateException("database down");
+            written.addAll(batch);
+        }, 10, Duration.ofHours(1), 2);
+
+        queue.add(1);
+        queue.add(2);
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalStateException.class, queue::flush);
+        }
+        assertEquals(2, queue.getPendingCount());
+        assertEquals(0, queue.getDroppedCount());
+
+        fail.set(false);
+        assertEquals(2, queue.flush());
+        assertEquals(List.of(1, 2), written);
+    }
+}
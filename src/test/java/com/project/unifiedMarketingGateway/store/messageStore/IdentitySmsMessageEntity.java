@@ -0,0 +1,40 @@
+package com.project.unifiedMarketingGateway.store.messageStore;
+
+import com.project.unifiedMarketingGateway.enums.SmsMessageStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * sms_message as it was mapped before the pooled sequences: IDENTITY ids, which make
+ * Hibernate insert row by row. Only the insert benchmark uses it.
+ */
+@Entity
+@Table(name = "sms_message_identity")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdentitySmsMessageEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sid", unique = true)
+    private String sid;
+
+    @Column(name = "recipient", nullable = false)
+    private String recipient;
+
+    @Enumerated(EnumType.STRING)
+    private SmsMessageStatus status;
+
+    @Column(name = "error_message", length = 1024)
+    private String errorMessage;
+
+    private long createdAtEpochMillis;
+    private Long lastUpdatedEpochMillis;
+}
@@ -0,0 +1,6 @@
+package com.project.unifiedMarketingGateway.store.messageStore;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface IdentitySmsMessageRepository extends JpaRepository<IdentitySmsMessageEntity, Long> {
+}
@@ -0,0 +1,97 @@
+package com.project.unifiedMarketingGateway.store.messageStore;
+
+import com.project.unifiedMarketingGateway.entity.WhatsappMessageEntity;
+import com.project.unifiedMarketingGateway.enums.WhatsappMessageStatus;
+import com.project.unifiedMarketingGateway.metrics.MetricsService;
+import com.project.unifiedMarketingGateway.models.WhatsappMessage;
+import com.project.unifiedMarketingGateway.repository.WhatsappMessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class JpaWhatsappMessageStoreTest {
+
+    private final Map<String, WhatsappMessageEntity> table = new ConcurrentHashMap<>();
+    private final WhatsappMessageRepository repository = mock(WhatsappMessageRepository.class);
+    private final CountDownLatch batchWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseBatchWrite = new CountDownLatch(1);
+    private JpaWhatsappMessageStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findByWaMessageId(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(table.get(inv.<String>getArgument(0))));
+        when(repository.saveAll(anyList())).thenAnswer(inv -> {
+            batchWriteStarted.countDown();
+            assertTrue(releaseBatchWrite.await(5, TimeUnit.SECONDS));
+            List<WhatsappMessageEntity> rows = inv.getArgument(0);
+            rows.forEach(row -> insert(row));
+            return rows;
+        });
+        when(repository.save(any(WhatsappMessageEntity.class))).thenAnswer(inv -> {
+            WhatsappMessageEntity row = inv.getArgument(0);
+            if (row.getId() == null) {
+                insert(row);
+            }
+            return row;
+        });
+
+        store = new JpaWhatsappMessageStore(repository, mock(MetricsService.class));
+        store.maxBatchSize = 500;
+        store.flushIntervalMillis = 3_600_000;
+        store.maxAttempts = 5;
+        store.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseBatchWrite.countDown();
+        store.stop();
+    }
+
+    private void insert(WhatsappMessageEntity row) {
+        // wa_message_id is unique
+        if (table.putIfAbsent(row.getWaMessageId(), row) != null) {
+            throw new IllegalStateException("duplicate wa_message_id " + row.getWaMessageId());
+        }
+        row.setId((long) table.size());
+    }
+
+    @Test
+    void testStatusUpdateWaitsForTheBatchBeingWritten() throws Exception {
+        store.saveOutbound(WhatsappMessage.builder()
+                .waMessageId("wamid-1")
+                .recipient("+15550001")
+                .status(WhatsappMessageStatus.SENT)
+                .build());
+
+        // another lookup misses and starts writing the batch, which is not committed yet
+        CompletableFuture<Optional<WhatsappMessage>> flushing =
+                CompletableFuture.supplyAsync(() -> store.findByWaMessageId("wamid-other"));
+        assertTrue(batchWriteStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> webhook = CompletableFuture.runAsync(() ->
+                store.updateStatus("wamid-1", "+15550001", WhatsappMessageStatus.DELIVERED, null, null));
+        Thread.sleep(100);
+        assertFalse(webhook.isDone(), "status update did not wait for the batch in progress");
+
+        releaseBatchWrite.countDown();
+        webhook.get(5, TimeUnit.SECONDS);
+        flushing.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, table.size());
+        assertEquals(WhatsappMessageStatus.DELIVERED, table.get("wamid-1").getStatus());
+    }
+}
@@ -0,0 +1,95 @@
+package com.project.unifiedMarketingGateway.store.messageStore;
+
+import com.project.unifiedMarketingGateway.entity.SmsMessageEntity;
+import com.project.unifiedMarketingGateway.enums.SmsMessageStatus;
+import com.project.unifiedMarketingGateway.repository.SmsMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Insert throughput of sms_message rows against the in-memory H2 database: the former mapping
+ * (IDENTITY ids, one save per row, see {@link IdentitySmsMessageEntity}) against the current one
+ * (pooled sequence ids) saved per row and in batches (the write-behind path). Run with
+ * {@code mvn test -Dtest=MessageStoreInsertBenchmarkTest -Dbenchmark=true}.
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MessageStoreInsertBenchmarkTest {
+
+    private static final int ROWS = 20_000;
+    private static final int BATCH = 500;
+
+    @Autowired
+    private SmsMessageRepository repository;
+
+    @Autowired
+    private IdentitySmsMessageRepository identityRepository;
+
+    @Test
+    void testInsertThroughput() {
+        // warm up the persistence context, statement cache and JIT
+        run("warm-up", ROWS / 4, identityRepository, this::identityRow, rows -> rows.forEach(identityRepository::save));
+        run("warm-up", ROWS / 4, repository, this::row, rows -> rows.forEach(repository::save));
+        run("warm-up", ROWS / 4, repository, this::row, this::saveInBatches);
+
+        double identity = run("IDENTITY, save per row", ROWS, identityRepository, this::identityRow,
+                rows -> rows.forEach(identityRepository::save));
+        double perRow = run("sequence, save per row", ROWS, repository, this::row,
+                rows -> rows.forEach(repository::save));
+        double batched = run("sequence, saveAll per " + BATCH, ROWS, repository, this::row, this::saveInBatches);
+
+        log.info("sms_message inserts: IDENTITY per row {} rows/s, sequence per row {} rows/s, sequence batched {} rows/s ({}x)",
+                Math.round(identity), Math.round(perRow), Math.round(batched), String.format("%.1f", batched / identity));
+    }
+
+    private SmsMessageEntity row(int i) {
+        return SmsMessageEntity.builder()
+                .recipient("+1555" + i)
+                .status(SmsMessageStatus.QUEUED)
+                .createdAtEpochMillis(System.currentTimeMillis())
+                .build();
+    }
+
+    private IdentitySmsMessageEntity identityRow(int i) {
+        return IdentitySmsMessageEntity.builder()
+                .recipient("+1555" + i)
+                .status(SmsMessageStatus.QUEUED)
+                .createdAtEpochMillis(System.currentTimeMillis())
+                .build();
+    }
+
+    private void saveInBatches(List<SmsMessageEntity> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH) {
+            repository.saveAll(rows.subList(from, Math.min(rows.size(), from + BATCH)));
+        }
+    }
+
+    private <T> double run(String name, int count, JpaRepository<T, Long> target, IntFunction<T> row,
+            Consumer<List<T>> insert) {
+        List<T> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(row.apply(i));
+        }
+        long before = target.count();
+        long start = System.nanoTime();
+        insert.accept(rows);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(before + count, target.count());
+
+        double rate = count / seconds;
+        log.info("{}: {} rows in {} ms, {} rows/s", name, count, Math.round(seconds * 1000), Math.round(rate));
+        return rate;
+    }
+}
@@ -1,5 +1,6 @@
 package com.project.unifiedMarketingGateway.validators;
 
+import com.project.unifiedMarketingGateway.configs.FallbackPolicy;
 import com.project.unifiedMarketingGateway.enums.MediaType;
 import com.project.unifiedMarketingGateway.models.SendNotificationRequest;
 import com.project.unifiedMarketingGateway.constants.Constants;
@@ -12,6 +13,11 @@ public class TelegramSendNotificationRequestValidatorTest {
 
     private final TelegramSendNotificationRequestValidator validator = new TelegramSendNotificationRequestValidator();
 
+    {
+        // no chains configured: only requests without a chain name pass
+        validator.fallbackPolicy = new FallbackPolicy();
+    }
+
     @Test
     public void testEmptyRecipientList() {
         SendNotificationRequest request = new SendNotificationRequest();
@@ -108,4 +114,17 @@ public class TelegramSendNotificationRequestValidatorTest {
 
         assertTrue(errors.isEmpty());
     }
+
+    @Test
+    public void testUnknownFallbackChain() {
+        SendNotificationRequest request = new SendNotificationRequest();
+        request.setRecipientList(List.of("123456"));
+        request.setMediaTypeList(List.of(MediaType.TEXT));
+        request.setTextMessage("hello");
+        request.setFallbackChain("missing");
+
+        List<String> errors = validator.validateSendNotificationRequest(request);
+
+        assertEquals(List.of(Constants.ERROR_UNKNOWN_FALLBACK_CHAIN), errors);
+    }
 }